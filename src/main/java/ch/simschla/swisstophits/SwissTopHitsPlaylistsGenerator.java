@@ -2,19 +2,40 @@ package ch.simschla.swisstophits;
 
 import static ch.simschla.swisstophits.spotify.ListManager.nameForYear;
 
+import ch.simschla.swisstophits.archive.ChartArchive;
+import ch.simschla.swisstophits.daemon.RefreshDaemon;
+import ch.simschla.swisstophits.history.AggregatePlaylist;
+import ch.simschla.swisstophits.history.ChartHistory;
+import ch.simschla.swisstophits.metrics.Metrics;
+import ch.simschla.swisstophits.metrics.MetricsEndpoint;
+import ch.simschla.swisstophits.metrics.RunProgress;
 import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
 import ch.simschla.swisstophits.model.ChartInfo;
 import ch.simschla.swisstophits.normalizer.SongInfoNormalizer;
 import ch.simschla.swisstophits.scraper.ChartSongsScraper;
+import ch.simschla.swisstophits.scraper.WeeklyChartRanking;
+import ch.simschla.swisstophits.scraper.WeeklyChartsScraper;
+import ch.simschla.swisstophits.service.MatchingService;
+import ch.simschla.swisstophits.spotify.ArtistCatalogPrefetcher;
+import ch.simschla.swisstophits.spotify.CallBudgetPlanner;
+import ch.simschla.swisstophits.spotify.CallBudgetPlanner.YearEstimate;
+import ch.simschla.swisstophits.spotify.CoverManager;
 import ch.simschla.swisstophits.spotify.ListManager;
+import ch.simschla.swisstophits.spotify.Rematcher;
 import ch.simschla.swisstophits.spotify.SongManager;
+import ch.simschla.swisstophits.spotify.TrackCandidate;
 import ch.simschla.swisstophits.spotify.auth.SpotifyAuth;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -27,25 +48,40 @@ public class SwissTopHitsPlaylistsGenerator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SwissTopHitsPlaylistsGenerator.class);
 
+    // waits for running requests to finish, when the service is stopped
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30_000L;
+
+    @Getter(lazy = true, value = AccessLevel.PRIVATE)
+    private final SpotifyAuth spotifyAuth = new SpotifyAuth();
+
     @Getter(lazy = true, value = AccessLevel.PRIVATE)
     private final SpotifyApi spotifyApi = createSpotifyApi();
 
-    private static SpotifyApi createSpotifyApi() {
+    private SpotifyApi createSpotifyApi() {
         try {
             final SpotifyApi spotifyApi = new SpotifyApi.Builder()
                     .setClientId(System.getProperty("spotify.client_id"))
                     .setClientSecret(System.getProperty("spotify.client_secret"))
                     .setRedirectUri(new URI("http://localhost:4567/spotify-auth-redir"))
                     .build();
-            SpotifyAuth auth = new SpotifyAuth();
-            auth.authorized(spotifyApi);
+            getSpotifyAuth().authorized(spotifyApi);
             return spotifyApi;
         } catch (URISyntaxException e) {
             throw new TopHitsGeneratorException(e);
         }
     }
 
-    private void generate() {
+    /**
+     * The access token expires after an hour, so a long running service refreshes it before using the api. Access is
+     * only granted interactively on start, when the api is created, never from a request or daemon thread.
+     */
+    private synchronized SpotifyApi authorizedSpotifyApi() {
+        SpotifyApi spotifyApi = getSpotifyApi();
+        getSpotifyAuth().authorizedWithoutUser(spotifyApi);
+        return spotifyApi;
+    }
+
+    private int[] years() {
         // 1994/2003/2004
         String specificYears = System.getProperty("years");
         String rangeValueLowerBound = System.getProperty("fromYear", "1968");
@@ -59,10 +95,135 @@ public class SwissTopHitsPlaylistsGenerator {
             yearsStream =
                     IntStream.range(Integer.parseInt(rangeValueLowerBound), Integer.parseInt(rangeValueUpperBound));
         }
-        int[] years = yearsStream.toArray();
+        return yearsStream.toArray();
+    }
+
+    private void generate() {
+        int[] years = years();
+
+        // plan
+        long callBudget = TopHitsGeneratorMode.INSTANCE.getCallBudget();
+        Map<Integer, YearEstimate> estimates = Map.of();
+        if (TopHitsGeneratorMode.INSTANCE.isPlanOnlyEnabled() || callBudget > 0) {
+            List<YearEstimate> plan = new CallBudgetPlanner().plan(years);
+            LOGGER.info("Estimated api calls:\n{}", CallBudgetPlanner.printPlan(plan));
+            if (TopHitsGeneratorMode.INSTANCE.isPlanOnlyEnabled()) {
+                return;
+            }
+            List<Integer> selected = CallBudgetPlanner.selectWithinBudget(plan, callBudget);
+            if (selected.size() < years.length) {
+                LOGGER.warn(
+                        "Call budget of {} only covers {} of {} years: {}",
+                        callBudget,
+                        selected.size(),
+                        years.length,
+                        selected);
+            }
+            years = selected.stream().mapToInt(Integer::intValue).toArray();
+            estimates = CallBudgetPlanner.byYear(plan);
+        }
+
         LOGGER.info("Fetching / Creating charts for {}", Arrays.toString(years));
-        for (int year : years) {
-            generate(year);
+        RunProgress.INSTANCE.start(years);
+        boolean rematch = TopHitsGeneratorMode.INSTANCE.isRematchEnabled();
+        Map<Integer, ChartInfo> scrapedInfoByYear = new TreeMap<>();
+        if (TopHitsGeneratorMode.INSTANCE.isArtistPrefetchEnabled() && !rematch) {
+            // all years are needed up front to know which artists have several songs
+            for (int year : years) {
+                scrapedInfoByYear.put(year, scrape(year));
+            }
+            LOGGER.info("Prefetching artists with several songs in {}", scrapedInfoByYear.keySet());
+            long start = System.nanoTime();
+            SongInfoNormalizer normalizer = new SongInfoNormalizer();
+            new ArtistCatalogPrefetcher(getSpotifyApi())
+                    .prefetch(scrapedInfoByYear.values().stream()
+                            .map(normalizer::normalize)
+                            .toList());
+            Metrics.INSTANCE.histogram("stage_seconds", "stage", "prefetch").observeSince(start);
+        }
+
+        Map<Integer, Playlist> playlistsByYear = new TreeMap<>();
+        try {
+            for (int year : years) {
+                if (!isWithinBudget(year, callBudget, estimates)) {
+                    RunProgress.INSTANCE.stage(year, RunProgress.Stage.SKIPPED);
+                    continue;
+                }
+                if (rematch) {
+                    rematch(year).ifPresent(playlist -> playlistsByYear.put(year, playlist));
+                } else {
+                    ChartInfo scrapedInfo = scrapedInfoByYear.computeIfAbsent(year, this::scrape);
+                    generate(scrapedInfo).ifPresent(playlist -> playlistsByYear.put(year, playlist));
+                }
+            }
+        } finally {
+            // the years synced so far, also if a later one failed
+            ChartArchive.flush();
+        }
+
+        if (TopHitsGeneratorMode.INSTANCE.isAggregatePlaylistsEnabled()) {
+            syncAggregatePlaylists();
+        }
+        updateCovers(playlistsByYear);
+    }
+
+    /**
+     * Builds the playlists over several years from the archived matches, without searching.
+     */
+    private void syncAggregatePlaylists() {
+        Optional<ChartHistory> history = ChartHistory.load();
+        if (history.isEmpty()) {
+            LOGGER.warn("No chart archive, skipping aggregate playlists.");
+            return;
+        }
+        long start = System.nanoTime();
+        ListManager listManager = new ListManager(getSpotifyApi());
+        for (AggregatePlaylist aggregate : AggregatePlaylist.all(history.get())) {
+            List<TrackCandidate> tracks = aggregate.tracks(history.get());
+            if (tracks.isEmpty()) {
+                LOGGER.info("No matched tracks for {}, skipping.", aggregate.getName());
+                continue;
+            }
+            LOGGER.info("{} - updating playlist with {} tracks", aggregate.getName(), tracks.size());
+            Playlist playlist;
+            if (TopHitsGeneratorMode.INSTANCE.isDryRunEnabled()) {
+                LOGGER.info("DRY-RUN. Not fetching playlist {}", aggregate.getName());
+                playlist = new Playlist.Builder()
+                        .setId(UUID.randomUUID().toString())
+                        .setName(aggregate.getName())
+                        .build();
+            } else {
+                playlist = listManager
+                        .fetchPlaylist(aggregate.getName())
+                        .orElseGet(() -> listManager.createPlaylist(aggregate.getName(), aggregate.getDescription()));
+            }
+            new SongManager(getSpotifyApi(), playlist).replaceTrackList(tracks);
+        }
+        Metrics.INSTANCE.histogram("stage_seconds", "stage", "aggregates").observeSince(start);
+    }
+
+    /**
+     * The estimates are not exact, so the calls actually made are checked before each year.
+     */
+    private static boolean isWithinBudget(int year, long callBudget, Map<Integer, YearEstimate> estimates) {
+        if (callBudget <= 0 || !estimates.containsKey(year)) {
+            return true;
+        }
+        long calls = Metrics.INSTANCE.sum("spotify_calls_total");
+        long estimate = estimates.get(year).totalCalls();
+        if (calls + estimate > callBudget) {
+            LOGGER.warn("{} - skipping, {} api calls made so far, estimated {} more.", year, calls, estimate);
+            return false;
+        }
+        return true;
+    }
+
+    private void updateCovers(Map<Integer, Playlist> playlistsByYear) {
+        if (TopHitsGeneratorMode.INSTANCE.isCoverUploadEnabled() && !playlistsByYear.isEmpty()) {
+            LOGGER.info("Updating covers for {}", playlistsByYear.keySet());
+            long start = System.nanoTime();
+            new CoverManager(getSpotifyApi()).updateCovers(playlistsByYear);
+            Metrics.INSTANCE.histogram("stage_seconds", "stage", "covers").observeSince(start);
         }
     }
 
@@ -74,41 +235,258 @@ public class SwissTopHitsPlaylistsGenerator {
                 .toArray();
     }
 
-    private void generate(int year) {
-        LOGGER.info("Handling year: {}", year);
-        // scrape
+    /**
+     * Scrapes the weekly charts of each year and logs them aggregated by the ranking, nothing is synced.
+     */
+    private void aggregateWeekly(WeeklyChartRanking ranking) {
+        int limit = TopHitsGeneratorMode.INSTANCE.getWeeklyLimit();
+        for (int year : years()) {
+            ChartInfo chartInfo = new WeeklyChartsScraper(year).fetchChartInfo(ranking, limit);
+            LOGGER.info(
+                    "{} - weekly charts by {}:\n{}",
+                    year,
+                    ranking,
+                    chartInfo.getChartSongs().stream()
+                            .map(song -> song.getPosition() + ". " + song.toShortDesc())
+                            .collect(Collectors.joining("\n")));
+        }
+    }
+
+    /**
+     * Keeps serving matching until the jvm is shut down.
+     */
+    private void serve(int port) {
+        getSpotifyApi(); // grants access before serving, if needed
+        MatchingService matchingService = new MatchingService(port, this::authorizedSpotifyApi, this::syncYear);
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            matchingService.stop();
+            try {
+                mainThread.join(SHUTDOWN_TIMEOUT_MILLIS); // let main write the metrics summary
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        matchingService.start();
+        try {
+            matchingService.awaitStop();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            matchingService.stop();
+        }
+    }
+
+    /**
+     * Re-checks the charts until the jvm is shut down, syncing the years whose chart changed.
+     */
+    private void runDaemon() {
+        getSpotifyApi(); // grants access before running, if needed
+        int fromYear = Integer.parseInt(System.getProperty("fromYear", "1968"));
+        RefreshDaemon daemon = new RefreshDaemon(fromYear, new RefreshDaemon.YearRefresher() {
+            @Override
+            public ChartInfo scrape(int year) {
+                return SwissTopHitsPlaylistsGenerator.this.scrape(year);
+            }
+
+            @Override
+            public boolean sync(ChartInfo scrapedInfo) {
+                authorizedSpotifyApi();
+                RunProgress.INSTANCE.start(scrapedInfo.getChartYear());
+                Optional<Playlist> playlist;
+                try {
+                    playlist = generate(scrapedInfo);
+                } finally {
+                    ChartArchive.flush();
+                }
+                playlist.ifPresent(p -> updateCovers(Map.of(scrapedInfo.getChartYear(), p)));
+                return playlist.isPresent();
+            }
+
+            @Override
+            public Optional<List<String>> syncedChartEntries(int year) {
+                // the archive has the chart as scraped, the match results have it as matched (maybe normalized)
+                Optional<ChartInfo> archived = ChartArchive.open().flatMap(archive -> archive.chartInfo(year));
+                if (archived.isPresent()) {
+                    return archived.map(RefreshDaemon::chartEntries);
+                }
+                return SongManager.matchedSongDescs(year).map(songDescs -> songDescs.entrySet().stream()
+                        .map(songDesc -> RefreshDaemon.chartEntry(songDesc.getKey(), songDesc.getValue()))
+                        .toList());
+            }
+        });
+        Thread mainThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            mainThread.interrupt();
+            try {
+                mainThread.join(SHUTDOWN_TIMEOUT_MILLIS); // let main write the metrics summary
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        daemon.run();
+    }
+
+    private Optional<Playlist> syncYear(int year) {
+        authorizedSpotifyApi();
+        RunProgress.INSTANCE.start(year);
+        try {
+            if (TopHitsGeneratorMode.INSTANCE.isRematchEnabled()) {
+                return rematch(year);
+            }
+            return generate(scrape(year));
+        } finally {
+            ChartArchive.flush();
+        }
+    }
+
+    private ChartInfo scrape(int year) {
         LOGGER.info("{} - scraping", year);
-        ChartSongsScraper scraper = new ChartSongsScraper(year);
-        ChartInfo info = scraper.fetchChartInfo();
+        RunProgress.INSTANCE.stage(year, RunProgress.Stage.SCRAPING);
+        long start = System.nanoTime();
+        Optional<ChartInfo> archivedInfo = readFromArchive(year);
+        ChartInfo chartInfo = archivedInfo.orElseGet(() -> new ChartSongsScraper(year).fetchChartInfo());
+        double seconds = (System.nanoTime() - start) / 1e9d;
+        Metrics.INSTANCE.histogram("stage_seconds", "stage", "scrape").observe(seconds);
+        Metrics.INSTANCE.gauge("scrape_seconds", "year", String.valueOf(year)).set(seconds);
+        RunProgress.INSTANCE.songs(year, chartInfo.getChartSongs().size());
+        RunProgress.INSTANCE.stage(year, RunProgress.Stage.SCRAPED);
+        return chartInfo;
+    }
+
+    /**
+     * @return the playlist, if its tracks have been set
+     */
+    private Optional<Playlist> generate(ChartInfo scrapedInfo) {
+        int year = scrapedInfo.getChartYear();
+        LOGGER.info("Handling year: {}", year);
 
         // normalize
-        info = new SongInfoNormalizer().normalize(info);
+        long start = System.nanoTime();
+        ChartInfo info = new SongInfoNormalizer().normalize(scrapedInfo);
+        Metrics.INSTANCE.histogram("stage_seconds", "stage", "normalize").observeSince(start);
+        RunProgress.INSTANCE.stage(year, RunProgress.Stage.NORMALIZED);
 
         // search + create
         SpotifyApi spotifyApi = getSpotifyApi();
 
         // assert list
+        Playlist playlist = assertPlaylist(year);
+
+        // add songs
+        LOGGER.info("{} - searching songs and updating playlist if needed", year);
+        start = System.nanoTime();
+        SongManager songManager = new SongManager(spotifyApi, playlist);
+        List<TrackCandidate> tracks = songManager.setTrackList(scrapedInfo, info, true);
+        Metrics.INSTANCE.histogram("stage_seconds", "stage", "songs").observeSince(start);
+        archive(scrapedInfo, tracks);
+        RunProgress.INSTANCE.stage(year, RunProgress.Stage.SYNCED);
+        return tracks.isEmpty() ? Optional.empty() : Optional.of(playlist);
+    }
+
+    /**
+     * Normalizes and matches from the candidates recorded by an earlier run, without scraping or searching.
+     *
+     * @return the playlist, if it has been updated
+     */
+    private Optional<Playlist> rematch(int year) {
+        LOGGER.info("{} - rematching from recorded candidates", year);
+        Optional<Rematcher> rematcher = Rematcher.forYear(year);
+        if (rematcher.isEmpty()) {
+            LOGGER.warn("No recorded candidates for {}, skipping.", year);
+            RunProgress.INSTANCE.stage(year, RunProgress.Stage.SKIPPED);
+            return Optional.empty();
+        }
+
+        // normalize
+        ChartInfo info = new SongInfoNormalizer().normalize(rematcher.get().getScrapedChartInfo());
+
+        // match
+        RunProgress.INSTANCE.songs(year, info.getChartSongs().size());
+        RunProgress.INSTANCE.stage(year, RunProgress.Stage.MATCHING);
+        long start = System.nanoTime();
+        List<TrackCandidate> tracks = rematcher.get().rematch(info);
+        Metrics.INSTANCE.histogram("stage_seconds", "stage", "rematch").observeSince(start);
+        if (!TopHitsGeneratorMode.INSTANCE.isRematchSyncEnabled()) {
+            RunProgress.INSTANCE.stage(year, RunProgress.Stage.REMATCHED);
+            return Optional.empty();
+        }
+
+        // sync
+        RunProgress.INSTANCE.stage(year, RunProgress.Stage.MATCHED);
+        Playlist playlist = assertPlaylist(year);
+        LOGGER.info("{} - updating playlist with rematched songs", year);
+        boolean changed = new SongManager(getSpotifyApi(), playlist).replaceTrackList(tracks);
+        archive(rematcher.get().getScrapedChartInfo(), tracks);
+        RunProgress.INSTANCE.stage(year, RunProgress.Stage.SYNCED);
+        return changed ? Optional.of(playlist) : Optional.empty();
+    }
+
+    /**
+     * The chart of the current year still changes, so it is always scraped.
+     */
+    private static Optional<ChartInfo> readFromArchive(int year) {
+        if (!TopHitsGeneratorMode.INSTANCE.isFromArchiveEnabled() || year >= LocalDate.now().getYear()) {
+            return Optional.empty();
+        }
+        Optional<ChartInfo> chartInfo = ChartArchive.open().flatMap(archive -> archive.chartInfo(year));
+        if (chartInfo.isPresent()) {
+            LOGGER.info("{} - read from chart archive", year);
+        }
+        return chartInfo;
+    }
+
+    /**
+     * Only synced matches are archived, the aggregate playlists are built from them.
+     */
+    private static void archive(ChartInfo scrapedInfo, List<TrackCandidate> tracks) {
+        if (!TopHitsGeneratorMode.INSTANCE.isChartArchiveEnabled() || tracks.isEmpty()) {
+            return;
+        }
+        if (TopHitsGeneratorMode.INSTANCE.isDryRunEnabled()) {
+            LOGGER.info("DRY-RUN. Not archiving {}", scrapedInfo.getChartYear());
+            return;
+        }
+        ChartArchive.update(scrapedInfo, tracks);
+    }
+
+    private Playlist assertPlaylist(int year) {
         LOGGER.info("{} - asserting playlist exists", year);
-        Playlist playlist;
         if (TopHitsGeneratorMode.INSTANCE.isDryRunEnabled()) {
             LOGGER.info("DRY-RUN. Not fetching playlist {}", year);
-            playlist = new Playlist.Builder()
+            return new Playlist.Builder()
                     .setId(UUID.randomUUID().toString())
                     .setName(nameForYear(year))
                     .build();
-        } else {
-            ListManager listManager = new ListManager(spotifyApi);
-            playlist = listManager.fetchPlaylist(year).orElseGet(() -> listManager.createPlaylist(year));
         }
-
-        // add songs
-        LOGGER.info("{} - searching songs and updating playlist if needed", year);
-        SongManager songManager = new SongManager(spotifyApi, playlist);
-        songManager.setTrackList(info, true);
+        ListManager listManager = new ListManager(getSpotifyApi());
+        return listManager.fetchPlaylist(year).orElseGet(() -> listManager.createPlaylist(year));
     }
 
     public static void main(String[] args) {
-        SwissTopHitsPlaylistsGenerator generator = new SwissTopHitsPlaylistsGenerator();
-        generator.generate();
+        int metricsPort = TopHitsGeneratorMode.INSTANCE.getMetricsPort();
+        Optional<MetricsEndpoint> metricsEndpoint =
+                metricsPort > 0 ? Optional.of(MetricsEndpoint.start(metricsPort)) : Optional.empty();
+        int servicePort = TopHitsGeneratorMode.INSTANCE.getServicePort();
+        String weeklyRanking = TopHitsGeneratorMode.INSTANCE.getWeeklyRanking();
+        try {
+            SwissTopHitsPlaylistsGenerator generator = new SwissTopHitsPlaylistsGenerator();
+            if (weeklyRanking != null) {
+                generator.aggregateWeekly(WeeklyChartRanking.valueOf(weeklyRanking));
+            } else if (servicePort > 0) {
+                generator.serve(servicePort);
+            } else if (TopHitsGeneratorMode.INSTANCE.isDaemonEnabled()) {
+                generator.runDaemon();
+            } else {
+                generator.generate();
+            }
+        } finally {
+            try {
+                Metrics.INSTANCE.writeSummary();
+            } catch (RuntimeException e) {
+                // must not hide what ended the run
+                LOGGER.error("Could not write the metrics summary.", e);
+            }
+            metricsEndpoint.ifPresent(MetricsEndpoint::stop);
+        }
     }
 }
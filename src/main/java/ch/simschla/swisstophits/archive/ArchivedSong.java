@@ -0,0 +1,36 @@
+package ch.simschla.swisstophits.archive;
+
+import ch.simschla.swisstophits.model.CompactSongInfo;
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.TrackCandidate;
+import java.util.Optional;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * A chart entry as scraped, with the track it has been matched to. Kept compact, since all years are held at once.
+ */
+@Value
+public class ArchivedSong {
+
+    @NonNull
+    CompactSongInfo song;
+
+    // null if no track matched
+    TrackCandidate track;
+
+    public static ArchivedSong of(@NonNull SongInfo songInfo, TrackCandidate track) {
+        return new ArchivedSong(CompactSongInfo.of(songInfo), track);
+    }
+
+    /**
+     * @return the song, converted on every call
+     */
+    public SongInfo getSongInfo() {
+        return song.toSongInfo();
+    }
+
+    public Optional<TrackCandidate> matchedTrack() {
+        return Optional.ofNullable(track);
+    }
+}
@@ -0,0 +1,333 @@
+package ch.simschla.swisstophits.archive;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import ch.simschla.swisstophits.model.ChartInfo;
+import ch.simschla.swisstophits.model.CompactSongInfo;
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.TrackCandidate;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The charts of all years as scraped, with the tracks they have been matched to, in one binary file read through a
+ * memory mapping. Opening only maps the file, entries and strings are decoded when asked for.
+ *
+ * <p>Layout, all ints big endian:
+ *
+ * <ul>
+ *   <li>header: magic, version, count of years, entries, artist references and strings
+ *   <li>years, ascending: year, first entry, count of entries
+ *   <li>entries of {@value #ENTRY_INTS} ints each, see the field offsets below
+ *   <li>artist references: string ids, an entry refers to its first artist and the count of artists
+ *   <li>string offsets: one per string and one for the end, relative to the start of the strings
+ *   <li>strings: utf-8, each distinct string only once
+ * </ul>
+ */
+public final class ChartArchive {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChartArchive.class);
+
+    private static final Path PATH = Paths.get("chart-archive", "charts.bin");
+
+    static final int MAGIC = 0x53544841; // STHA
+
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    static final int YEAR_BYTES = 3 * Integer.BYTES;
+
+    static final int ENTRY_INTS = 14;
+
+    static final int ENTRY_BYTES = ENTRY_INTS * Integer.BYTES;
+
+    // for strings and tracks not given
+    static final int NONE = -1;
+
+    // field offsets of an entry, in ints
+    static final int POSITION = 0;
+    static final int FLAGS = 1;
+    static final int SONG = 2;
+    static final int ARTISTS = 3;
+    static final int ARTIST_COUNT = 4;
+    static final int COVER_IMAGE_URL = 5;
+    static final int TRACK_ID = 6;
+    static final int TRACK_URI = 7;
+    static final int TRACK_NAME = 8;
+    static final int TRACK_ARTISTS = 9;
+    static final int TRACK_ARTIST_COUNT = 10;
+    static final int TRACK_ALBUM = 11;
+    static final int TRACK_RELEASE_DATE = 12;
+    static final int TRACK_DURATION_MS = 13;
+
+    static final int FLAG_SWISS_ACT = 1;
+
+    private final ByteBuffer buffer;
+
+    private final int yearCount;
+
+    private final int entryCount;
+
+    private final int entriesOffset;
+
+    private final int artistRefsOffset;
+
+    private final int stringOffsetsOffset;
+
+    private final int stringsOffset;
+
+    // decoded on first use, racing threads decode the same string
+    private final String[] strings;
+
+    private ChartArchive(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new ArchiveException("Not a chart archive.");
+        }
+        if (buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new ArchiveException("Unsupported chart archive version " + buffer.getInt(Integer.BYTES));
+        }
+        this.yearCount = buffer.getInt(2 * Integer.BYTES);
+        this.entryCount = buffer.getInt(3 * Integer.BYTES);
+        int artistRefCount = buffer.getInt(4 * Integer.BYTES);
+        int stringCount = buffer.getInt(5 * Integer.BYTES);
+        this.entriesOffset = HEADER_BYTES + yearCount * YEAR_BYTES;
+        this.artistRefsOffset = entriesOffset + entryCount * ENTRY_BYTES;
+        this.stringOffsetsOffset = artistRefsOffset + artistRefCount * Integer.BYTES;
+        this.stringsOffset = stringOffsetsOffset + (stringCount + 1) * Integer.BYTES;
+        if (stringsOffset > buffer.capacity()
+                || stringsOffset + buffer.getInt(stringOffsetsOffset + stringCount * Integer.BYTES)
+                        != buffer.capacity()) {
+            throw new ArchiveException("Chart archive is truncated.");
+        }
+        this.strings = new String[stringCount];
+    }
+
+    /**
+     * @return the archive written by earlier runs, if any
+     */
+    public static Optional<ChartArchive> open() {
+        return open(PATH);
+    }
+
+    public static Optional<ChartArchive> open(@NonNull Path path) {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // the mapping stays valid after closing the channel
+            ChartArchive archive = new ChartArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            LOGGER.debug(
+                    "Opened chart archive {} with {} years and {} songs in {} ms.",
+                    path,
+                    archive.yearCount,
+                    archive.entryCount,
+                    (System.nanoTime() - start) / 1_000_000d);
+            return Optional.of(archive);
+        } catch (IOException e) {
+            throw new ArchiveException("Could not open chart archive " + path, e);
+        }
+    }
+
+    // ---- reading
+
+    /**
+     * @return the archived years, ascending
+     */
+    public int[] years() {
+        int[] years = new int[yearCount];
+        for (int i = 0; i < yearCount; i++) {
+            years[i] = buffer.getInt(HEADER_BYTES + i * YEAR_BYTES);
+        }
+        return years;
+    }
+
+    public boolean contains(int year) {
+        return yearSlot(year) >= 0;
+    }
+
+    /**
+     * @return the count of songs of all years
+     */
+    public int songCount() {
+        return entryCount;
+    }
+
+    /**
+     * @return the chart as scraped, if archived
+     */
+    public Optional<ChartInfo> chartInfo(int year) {
+        if (!contains(year)) {
+            return Optional.empty();
+        }
+        return Optional.of(ChartInfo.builder()
+                .chartYear(year)
+                .chartSongs(songs(year).stream().map(ArchivedSong::getSongInfo).toList())
+                .build());
+    }
+
+    /**
+     * @return the songs of the year in chart order, empty if not archived
+     */
+    public List<ArchivedSong> songs(int year) {
+        int slot = yearSlot(year);
+        if (slot < 0) {
+            return List.of();
+        }
+        int yearOffset = HEADER_BYTES + slot * YEAR_BYTES;
+        int firstEntry = buffer.getInt(yearOffset + Integer.BYTES);
+        int count = buffer.getInt(yearOffset + 2 * Integer.BYTES);
+        List<ArchivedSong> songs = new ArrayList<>(count);
+        for (int entry = firstEntry; entry < firstEntry + count; entry++) {
+            songs.add(new ArchivedSong(song(year, entry), track(entry)));
+        }
+        return songs;
+    }
+
+    private int yearSlot(int year) {
+        int low = 0;
+        int high = yearCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleYear = buffer.getInt(HEADER_BYTES + middle * YEAR_BYTES);
+            if (middleYear < year) {
+                low = middle + 1;
+            } else if (middleYear > year) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private CompactSongInfo song(int year, int entry) {
+        return CompactSongInfo.of(
+                field(entry, POSITION),
+                year,
+                (field(entry, FLAGS) & FLAG_SWISS_ACT) != 0,
+                string(field(entry, SONG)),
+                strings(field(entry, ARTISTS), field(entry, ARTIST_COUNT)),
+                string(field(entry, COVER_IMAGE_URL)));
+    }
+
+    private TrackCandidate track(int entry) {
+        String name = string(field(entry, TRACK_NAME));
+        if (name == null) {
+            return null;
+        }
+        String releaseDate = string(field(entry, TRACK_RELEASE_DATE));
+        return TrackCandidate.builder()
+                .id(string(field(entry, TRACK_ID)))
+                .uri(string(field(entry, TRACK_URI)))
+                .name(name)
+                .artistNames(strings(field(entry, TRACK_ARTISTS), field(entry, TRACK_ARTIST_COUNT)))
+                .albumName(string(field(entry, TRACK_ALBUM)))
+                .releaseDate(releaseDate)
+                .releaseYear(TrackCandidate.parseReleaseYear(releaseDate))
+                .durationMs(field(entry, TRACK_DURATION_MS))
+                .build();
+    }
+
+    private int field(int entry, int field) {
+        return buffer.getInt(entriesOffset + entry * ENTRY_BYTES + field * Integer.BYTES);
+    }
+
+    private List<String> strings(int firstRef, int count) {
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = string(buffer.getInt(artistRefsOffset + (firstRef + i) * Integer.BYTES));
+        }
+        return Arrays.asList(values);
+    }
+
+    private String string(int id) {
+        if (id == NONE) {
+            return null;
+        }
+        String string = strings[id];
+        if (string == null) {
+            int start = buffer.getInt(stringOffsetsOffset + id * Integer.BYTES);
+            int end = buffer.getInt(stringOffsetsOffset + (id + 1) * Integer.BYTES);
+            byte[] bytes = new byte[end - start];
+            buffer.get(stringsOffset + start, bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            strings[id] = string;
+        }
+        return string;
+    }
+
+    // ---- writing
+
+    // years updated, but not written yet
+    private static final SortedMap<Integer, List<ArchivedSong>> PENDING_YEARS = new TreeMap<>();
+
+    /**
+     * Archives the chart of a year with its matched tracks, replacing what has been archived for the year before. The
+     * archive is only rewritten on {@link #flush()}, so a run over many years rewrites it once.
+     *
+     * @param tracks the matched tracks in chart order, {@code null} for songs without a match
+     */
+    public static synchronized void update(@NonNull ChartInfo scrapedChartInfo, @NonNull List<TrackCandidate> tracks) {
+        List<SongInfo> chartSongs = scrapedChartInfo.getChartSongs();
+        if (chartSongs.size() != tracks.size()) {
+            throw new ArchiveException("Chart of " + scrapedChartInfo.getChartYear() + " has " + chartSongs.size()
+                    + " songs, but " + tracks.size() + " tracks are given.");
+        }
+        List<ArchivedSong> songs = new ArrayList<>(chartSongs.size());
+        for (int i = 0; i < chartSongs.size(); i++) {
+            songs.add(ArchivedSong.of(chartSongs.get(i), tracks.get(i)));
+        }
+        PENDING_YEARS.put(scrapedChartInfo.getChartYear(), songs);
+    }
+
+    /**
+     * Writes the years updated since the last flush, in one rewrite of the archive.
+     */
+    public static synchronized void flush() {
+        flush(PATH);
+    }
+
+    static synchronized void flush(@NonNull Path path) {
+        if (PENDING_YEARS.isEmpty()) {
+            return;
+        }
+        SortedMap<Integer, List<ArchivedSong>> songsByYear = new TreeMap<>();
+        open(path).ifPresent(archive -> {
+            for (int year : archive.years()) {
+                songsByYear.put(year, archive.songs(year));
+            }
+        });
+        songsByYear.putAll(PENDING_YEARS);
+
+        path.toAbsolutePath().getParent().toFile().mkdirs();
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        new ChartArchiveWriter().write(tempPath, songsByYear);
+        try {
+            // readers keep their mapping of the replaced file
+            Files.move(tempPath, path, REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new ArchiveException("Could not replace chart archive " + path, e);
+        }
+        LOGGER.info("Archived the charts of {} in {}", PENDING_YEARS.keySet(), path);
+        PENDING_YEARS.clear();
+    }
+}
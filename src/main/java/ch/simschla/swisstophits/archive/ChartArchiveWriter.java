@@ -0,0 +1,133 @@
+package ch.simschla.swisstophits.archive;
+
+import static ch.simschla.swisstophits.archive.ChartArchive.ARTISTS;
+import static ch.simschla.swisstophits.archive.ChartArchive.ARTIST_COUNT;
+import static ch.simschla.swisstophits.archive.ChartArchive.COVER_IMAGE_URL;
+import static ch.simschla.swisstophits.archive.ChartArchive.ENTRY_INTS;
+import static ch.simschla.swisstophits.archive.ChartArchive.FLAGS;
+import static ch.simschla.swisstophits.archive.ChartArchive.FLAG_SWISS_ACT;
+import static ch.simschla.swisstophits.archive.ChartArchive.NONE;
+import static ch.simschla.swisstophits.archive.ChartArchive.POSITION;
+import static ch.simschla.swisstophits.archive.ChartArchive.SONG;
+import static ch.simschla.swisstophits.archive.ChartArchive.TRACK_ALBUM;
+import static ch.simschla.swisstophits.archive.ChartArchive.TRACK_ARTISTS;
+import static ch.simschla.swisstophits.archive.ChartArchive.TRACK_ARTIST_COUNT;
+import static ch.simschla.swisstophits.archive.ChartArchive.TRACK_DURATION_MS;
+import static ch.simschla.swisstophits.archive.ChartArchive.TRACK_ID;
+import static ch.simschla.swisstophits.archive.ChartArchive.TRACK_NAME;
+import static ch.simschla.swisstophits.archive.ChartArchive.TRACK_RELEASE_DATE;
+import static ch.simschla.swisstophits.archive.ChartArchive.TRACK_URI;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import ch.simschla.swisstophits.model.CompactSongInfo;
+import ch.simschla.swisstophits.spotify.TrackCandidate;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Writes the layout described in {@link ChartArchive}.
+ */
+class ChartArchiveWriter {
+
+    private final Map<String, Integer> stringIds = new HashMap<>();
+
+    private final List<byte[]> strings = new ArrayList<>();
+
+    private final List<Integer> artistRefs = new ArrayList<>();
+
+    private final List<int[]> entries = new ArrayList<>();
+
+    void write(Path path, SortedMap<Integer, List<ArchivedSong>> songsByYear) {
+        List<int[]> years = new ArrayList<>(songsByYear.size());
+        songsByYear.forEach((year, songs) -> {
+            years.add(new int[] {year, entries.size(), songs.size()});
+            songs.forEach(song -> entries.add(entry(song)));
+        });
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path, CREATE, WRITE, TRUNCATE_EXISTING)))) {
+            out.writeInt(ChartArchive.MAGIC);
+            out.writeInt(ChartArchive.VERSION);
+            out.writeInt(years.size());
+            out.writeInt(entries.size());
+            out.writeInt(artistRefs.size());
+            out.writeInt(strings.size());
+            for (int[] year : years) {
+                for (int value : year) {
+                    out.writeInt(value);
+                }
+            }
+            for (int[] entry : entries) {
+                for (int value : entry) {
+                    out.writeInt(value);
+                }
+            }
+            for (int artistRef : artistRefs) {
+                out.writeInt(artistRef);
+            }
+            int offset = 0;
+            out.writeInt(offset);
+            for (byte[] string : strings) {
+                offset += string.length;
+                out.writeInt(offset);
+            }
+            for (byte[] string : strings) {
+                out.write(string);
+            }
+        } catch (IOException e) {
+            throw new ArchiveException("Could not write chart archive " + path, e);
+        }
+    }
+
+    private int[] entry(ArchivedSong song) {
+        CompactSongInfo songInfo = song.getSong();
+        int[] entry = new int[ENTRY_INTS];
+        entry[POSITION] = songInfo.getPosition();
+        entry[FLAGS] = songInfo.isSwissAct() ? FLAG_SWISS_ACT : 0;
+        entry[SONG] = stringId(songInfo.getSong());
+        entry[ARTISTS] = artistRefs(songInfo.getArtists());
+        entry[ARTIST_COUNT] = songInfo.getArtists().size();
+        entry[COVER_IMAGE_URL] = stringId(songInfo.getCoverImageUrl());
+
+        TrackCandidate track = song.getTrack();
+        entry[TRACK_ID] = stringId(track != null ? track.getId() : null);
+        entry[TRACK_URI] = stringId(track != null ? track.getUri() : null);
+        entry[TRACK_NAME] = stringId(track != null ? track.getName() : null);
+        entry[TRACK_ARTISTS] = track != null ? artistRefs(track.getArtistNames()) : NONE;
+        entry[TRACK_ARTIST_COUNT] = track != null ? track.getArtistNames().size() : 0;
+        entry[TRACK_ALBUM] = stringId(track != null ? track.getAlbumName() : null);
+        entry[TRACK_RELEASE_DATE] = stringId(track != null ? track.getReleaseDate() : null);
+        entry[TRACK_DURATION_MS] = track != null ? track.getDurationMs() : 0;
+        return entry;
+    }
+
+    /**
+     * @return the first of the references added
+     */
+    private int artistRefs(List<String> artists) {
+        int first = artistRefs.size();
+        artists.forEach(artist -> artistRefs.add(stringId(artist)));
+        return first;
+    }
+
+    private int stringId(String string) {
+        if (string == null) {
+            return NONE;
+        }
+        return stringIds.computeIfAbsent(string, s -> {
+            strings.add(s.getBytes(StandardCharsets.UTF_8));
+            return strings.size() - 1;
+        });
+    }
+}
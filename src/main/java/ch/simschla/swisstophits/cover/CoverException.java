@@ -0,0 +1,11 @@
+package ch.simschla.swisstophits.cover;
+
+public class CoverException extends RuntimeException {
+    public CoverException(String message) {
+        super(message);
+    }
+
+    public CoverException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,64 @@
+package ch.simschla.swisstophits.cover;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Properties;
+import lombok.NonNull;
+
+/**
+ * Remembers the content hash of the cover last uploaded per playlist id.
+ */
+public class CoverHashPersist {
+
+    private static final String FILE_NAME = "covers.hashes";
+
+    private final Properties hashes = new Properties();
+
+    private CoverHashPersist() {}
+
+    public synchronized boolean isUpToDate(@NonNull String playlistId, @NonNull String contentHash) {
+        return contentHash.equals(hashes.getProperty(playlistId));
+    }
+
+    public synchronized void setContentHash(@NonNull String playlistId, @NonNull String contentHash) {
+        final Object before = hashes.setProperty(playlistId, contentHash);
+        if (!Objects.equals(before, contentHash)) {
+            save();
+        }
+    }
+
+    // ---- persisting
+
+    private synchronized void save() {
+        try (OutputStream out = new FileOutputStream(FILE_NAME)) {
+            hashes.storeToXML(out, "CoverHashes", StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new CoverException(e);
+        }
+    }
+
+    private synchronized void load() {
+        if (!new File(FILE_NAME).exists()) {
+            return; // nothing to load
+        }
+        try (InputStream in = new FileInputStream(FILE_NAME)) {
+            hashes.loadFromXML(in);
+        } catch (IOException e) {
+            throw new CoverException(e);
+        }
+    }
+
+    // ---- create
+
+    public static CoverHashPersist open() {
+        CoverHashPersist coverHashPersist = new CoverHashPersist();
+        coverHashPersist.load();
+        return coverHashPersist;
+    }
+}
@@ -0,0 +1,52 @@
+package ch.simschla.swisstophits.cover;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import lombok.NonNull;
+import lombok.Value;
+
+@Value
+public class CoverImage {
+
+    public static final Path COVERS_DIR = Paths.get("covers");
+
+    @NonNull
+    Integer year;
+
+    @NonNull
+    Path path;
+
+    @NonNull
+    byte[] content;
+
+    @NonNull
+    String contentHash;
+
+    public static Optional<CoverImage> forYear(@NonNull Integer year) {
+        Path path = COVERS_DIR.resolve("Top-Hits-Schweiz-" + year + "-cover.jpg");
+        if (!Files.isRegularFile(path)) {
+            return Optional.empty();
+        }
+        try {
+            byte[] content = Files.readAllBytes(path);
+            return Optional.of(new CoverImage(year, path, content, sha256(content)));
+        } catch (IOException e) {
+            throw new CoverException(e);
+        }
+    }
+
+    private static String sha256(byte[] content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new CoverException(e);
+        }
+    }
+}
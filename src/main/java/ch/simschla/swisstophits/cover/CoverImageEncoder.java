@@ -0,0 +1,103 @@
+package ch.simschla.swisstophits.cover;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-encodes cover images so that their base64 representation fits into the upload limit of the spotify api.
+ */
+public class CoverImageEncoder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoverImageEncoder.class);
+
+    public static final int MAX_BASE64_LENGTH = 256 * 1024;
+
+    private static final int INITIAL_MAX_DIMENSION = 640;
+
+    private static final int MIN_DIMENSION = 64;
+
+    private static final float[] QUALITIES = {0.9f, 0.8f, 0.7f, 0.6f, 0.5f};
+
+    public String encodeBase64(@NonNull CoverImage coverImage) {
+        BufferedImage original = read(coverImage);
+        int dimension = Math.min(INITIAL_MAX_DIMENSION, Math.max(original.getWidth(), original.getHeight()));
+        while (dimension >= MIN_DIMENSION) {
+            BufferedImage scaled = scaleToFit(original, dimension);
+            for (float quality : QUALITIES) {
+                String base64 = Base64.getEncoder().encodeToString(writeJpeg(scaled, quality));
+                if (base64.length() <= MAX_BASE64_LENGTH) {
+                    LOGGER.debug(
+                            "{} - encoded cover with {}px and quality {}: {} bytes (base64)",
+                            coverImage.getYear(),
+                            dimension,
+                            quality,
+                            base64.length());
+                    return base64;
+                }
+            }
+            dimension = (int) (dimension * 0.8d);
+        }
+        throw new CoverException(
+                "Could not encode " + coverImage.getPath() + " within " + MAX_BASE64_LENGTH + " bytes");
+    }
+
+    private BufferedImage read(CoverImage coverImage) {
+        try {
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(coverImage.getContent()));
+            if (image == null) {
+                throw new CoverException("Unsupported image format: " + coverImage.getPath());
+            }
+            return image;
+        } catch (IOException e) {
+            throw new CoverException(e);
+        }
+    }
+
+    private BufferedImage scaleToFit(BufferedImage original, int maxDimension) {
+        double factor = Math.min(1.0d, maxDimension / (double) Math.max(original.getWidth(), original.getHeight()));
+        int width = Math.max(1, (int) Math.round(original.getWidth() * factor));
+        int height = Math.max(1, (int) Math.round(original.getHeight() * factor));
+
+        // always redraw, so that we end up with a plain rgb image the jpeg writer can handle
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+
+    private byte[] writeJpeg(BufferedImage image, float quality) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } catch (IOException e) {
+            throw new CoverException(e);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
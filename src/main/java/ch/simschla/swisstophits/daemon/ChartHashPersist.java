@@ -0,0 +1,107 @@
+package ch.simschla.swisstophits.daemon;
+
+import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
+import ch.simschla.swisstophits.model.ChartInfo;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Remembers the hash of the chart last synced per year, so unchanged charts are not synced again.
+ */
+class ChartHashPersist {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChartHashPersist.class);
+
+    private static final String FILE_NAME = "charts.hashes";
+
+    private final Properties hashes = new Properties();
+
+    private ChartHashPersist() {}
+
+    synchronized boolean isUpToDate(@NonNull ChartInfo chartInfo) {
+        return hash(chartInfo).equals(hashes.getProperty(String.valueOf(chartInfo.getChartYear())));
+    }
+
+    synchronized boolean contains(int year) {
+        return hashes.containsKey(String.valueOf(year));
+    }
+
+    synchronized void setSynced(@NonNull ChartInfo chartInfo) {
+        setSynced(chartInfo.getChartYear(), RefreshDaemon.chartEntries(chartInfo));
+    }
+
+    /**
+     * @param chartEntries the {@link RefreshDaemon#chartEntry chart entries} synced
+     */
+    synchronized void setSynced(int year, @NonNull List<String> chartEntries) {
+        String hash = hash(chartEntries);
+        final Object before = hashes.setProperty(String.valueOf(year), hash);
+        if (!Objects.equals(before, hash)) {
+            save();
+        }
+    }
+
+    static String hash(@NonNull ChartInfo chartInfo) {
+        return hash(RefreshDaemon.chartEntries(chartInfo));
+    }
+
+    private static String hash(List<String> chartEntries) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String chartEntry : chartEntries) {
+                digest.update((chartEntry + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // ---- persisting
+
+    private synchronized void save() {
+        if (TopHitsGeneratorMode.INSTANCE.isDryRunEnabled()) {
+            LOGGER.info("DRY-RUN. Not saving chart hashes to {}", FILE_NAME);
+            return;
+        }
+        try (OutputStream out = new FileOutputStream(FILE_NAME)) {
+            hashes.storeToXML(out, "ChartHashes", StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void load() {
+        if (!new File(FILE_NAME).exists()) {
+            return; // nothing to load
+        }
+        try (InputStream in = new FileInputStream(FILE_NAME)) {
+            hashes.loadFromXML(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ---- create
+
+    static ChartHashPersist open() {
+        ChartHashPersist chartHashPersist = new ChartHashPersist();
+        chartHashPersist.load();
+        return chartHashPersist;
+    }
+}
@@ -0,0 +1,243 @@
+package ch.simschla.swisstophits.daemon;
+
+import ch.simschla.swisstophits.metrics.Metrics;
+import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
+import ch.simschla.swisstophits.model.ChartInfo;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Re-checks the charts periodically and syncs a year only when its scraped chart changed.
+ *
+ * <p>Only the chart of the current year changes, so the current and the previous year (for the first days of the new
+ * year) are checked often. All earlier years are a low priority backfill: they are checked rarely, and only if the
+ * spotify api calls of the last hour leave enough budget for syncing them.
+ */
+public class RefreshDaemon {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshDaemon.class);
+
+    private static final Duration BUDGET_WINDOW = Duration.ofHours(1);
+
+    // api calls of a sync, as long as none has been measured
+    private static final long DEFAULT_SYNC_CALLS = 150L;
+
+    private static final String SPOTIFY_CALLS = "spotify_calls_total";
+
+    @NonNull
+    private final YearRefresher refresher;
+
+    private final int fromYear;
+
+    private final Duration recentInterval =
+            Duration.ofMinutes(TopHitsGeneratorMode.INSTANCE.getDaemonRecentIntervalMinutes());
+
+    private final Duration backfillInterval =
+            Duration.ofHours(TopHitsGeneratorMode.INSTANCE.getDaemonBackfillIntervalHours());
+
+    private final long callsPerHour = TopHitsGeneratorMode.INSTANCE.getDaemonCallsPerHour();
+
+    private final ChartHashPersist hashPersist = ChartHashPersist.open();
+
+    // due first, recent years before the backfill, newer years before older ones
+    private final PriorityQueue<Check> checks =
+            new PriorityQueue<>(Comparator.comparingLong((Check check) -> check.dueAtMillis)
+                    .thenComparing(check -> !check.recent)
+                    .thenComparing(check -> -check.year));
+
+    private final Set<Integer> scheduledYears = new HashSet<>();
+
+    // api calls measured per sync, for the budget of the backfill
+    private final Map<Integer, Long> syncCallsByYear = new HashMap<>();
+
+    private final Deque<long[]> spentCalls = new ArrayDeque<>();
+
+    /**
+     * Scrapes and syncs a year.
+     */
+    public interface YearRefresher {
+        ChartInfo scrape(int year);
+
+        /**
+         * @return whether the tracks of the playlist have been set, only then the chart counts as synced
+         */
+        boolean sync(ChartInfo scrapedInfo);
+
+        /**
+         * The chart as synced before the daemon knew about the year, so a first start does not sync all years again.
+         *
+         * @return the {@link #chartEntry chart entries}, if the year has been synced before
+         */
+        Optional<List<String>> syncedChartEntries(int year);
+    }
+
+    @AllArgsConstructor
+    private static final class Check {
+        private final int year;
+        private final boolean recent;
+        private final long dueAtMillis;
+    }
+
+    public RefreshDaemon(int fromYear, @NonNull YearRefresher refresher) {
+        this.fromYear = fromYear;
+        this.refresher = refresher;
+    }
+
+    /**
+     * Checks the years until interrupted.
+     */
+    public void run() {
+        LOGGER.info(
+                "Refreshing charts from {}, recent years every {}, backfill every {} within {} api calls per hour.",
+                fromYear,
+                recentInterval,
+                backfillInterval,
+                callsPerHour);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                scheduleNewYears();
+                Check check = checks.poll();
+                long waitMillis = check.dueAtMillis - System.currentTimeMillis();
+                if (waitMillis > 0) {
+                    checks.add(check);
+                    Thread.sleep(Math.min(waitMillis, Duration.ofMinutes(1).toMillis()));
+                    continue;
+                }
+                if (!check.recent && !hasBudgetFor(check.year)) {
+                    LOGGER.debug("{} - no api budget left for backfill, postponing.", check.year);
+                    checks.add(new Check(check.year, false, System.currentTimeMillis() + budgetRetryMillis()));
+                    continue;
+                }
+                refresh(check.year);
+                boolean recent = isRecent(check.year);
+                Duration interval = recent ? recentInterval : backfillInterval;
+                checks.add(new Check(check.year, recent, System.currentTimeMillis() + interval.toMillis()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LOGGER.info("Refresh daemon stopped.");
+    }
+
+    /**
+     * Schedules all years on start, and the new year once it started.
+     */
+    private void scheduleNewYears() {
+        int currentYear = LocalDate.now().getYear();
+        for (int year = currentYear; year >= fromYear; year--) {
+            if (scheduledYears.add(year)) {
+                checks.add(new Check(year, isRecent(year), System.currentTimeMillis()));
+            }
+        }
+    }
+
+    private static boolean isRecent(int year) {
+        return year >= LocalDate.now().getYear() - 1;
+    }
+
+    /**
+     * What a chart is compared by: the position and the short description of a song.
+     */
+    public static String chartEntry(int position, @NonNull String shortDesc) {
+        return position + " " + shortDesc;
+    }
+
+    public static List<String> chartEntries(@NonNull ChartInfo chartInfo) {
+        return chartInfo.getChartSongs().stream()
+                .map(song -> chartEntry(song.getPosition(), song.toShortDesc()))
+                .toList();
+    }
+
+    private void refresh(int year) {
+        try {
+            long start = System.nanoTime();
+            if (!hashPersist.contains(year)) {
+                refresher.syncedChartEntries(year).ifPresent(entries -> {
+                    LOGGER.info("{} - remembering the chart synced before.", year);
+                    hashPersist.setSynced(year, entries);
+                });
+            }
+            ChartInfo scrapedInfo = refresher.scrape(year);
+            if (hashPersist.isUpToDate(scrapedInfo)) {
+                LOGGER.info("{} - chart unchanged, nothing to sync.", year);
+                Metrics.INSTANCE.counter("daemon_checks_total", "result", "unchanged").increment();
+                return;
+            }
+            LOGGER.info("{} - chart changed, syncing.", year);
+            long callsBefore = Metrics.INSTANCE.sum(SPOTIFY_CALLS);
+            boolean synced = refresher.sync(scrapedInfo);
+            long calls = Metrics.INSTANCE.sum(SPOTIFY_CALLS) - callsBefore;
+            syncCallsByYear.put(year, calls);
+            spentCalls.addLast(new long[] {System.currentTimeMillis(), calls});
+            if (!synced) {
+                // e.g. no song matched, so the year is retried next time
+                LOGGER.warn("{} - no tracks set, not marking the chart as synced.", year);
+                Metrics.INSTANCE.counter("daemon_checks_total", "result", "failed").increment();
+                return;
+            }
+            hashPersist.setSynced(scrapedInfo);
+            Metrics.INSTANCE.counter("daemon_checks_total", "result", "synced").increment();
+            Metrics.INSTANCE.histogram("stage_seconds", "stage", "refresh").observeSince(start);
+            LOGGER.info("{} - synced with {} api calls.", year, calls);
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                LOGGER.warn("{} - refresh interrupted.", year, e);
+                return;
+            }
+            // e.g. the chart of the new year is not published yet, we just try again next time
+            LOGGER.error("{} - refresh failed.", year, e);
+            Metrics.INSTANCE.counter("daemon_checks_total", "result", "failed").increment();
+        }
+    }
+
+    // ---- budget
+
+    private boolean hasBudgetFor(int year) {
+        long calls = callsInWindow();
+        // a sync bigger than the whole budget still gets its turn, once nothing else has been spent
+        return calls == 0 || calls + estimatedSyncCalls(year) <= callsPerHour;
+    }
+
+    private long callsInWindow() {
+        long windowStart = System.currentTimeMillis() - BUDGET_WINDOW.toMillis();
+        while (!spentCalls.isEmpty() && spentCalls.peekFirst()[0] < windowStart) {
+            spentCalls.removeFirst();
+        }
+        return spentCalls.stream().mapToLong(spent -> spent[1]).sum();
+    }
+
+    private long estimatedSyncCalls(int year) {
+        Long calls = syncCallsByYear.get(year);
+        if (calls != null) {
+            return calls;
+        }
+        return Math.round(syncCallsByYear.values().stream()
+                .mapToLong(Long::longValue)
+                .average()
+                .orElse(DEFAULT_SYNC_CALLS));
+    }
+
+    /**
+     * @return when the oldest calls leave the window
+     */
+    private long budgetRetryMillis() {
+        if (spentCalls.isEmpty()) {
+            return BUDGET_WINDOW.toMillis();
+        }
+        return Math.max(1000L, spentCalls.peekFirst()[0] + BUDGET_WINDOW.toMillis() - System.currentTimeMillis());
+    }
+}
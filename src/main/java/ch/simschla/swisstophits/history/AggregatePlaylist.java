@@ -0,0 +1,84 @@
+package ch.simschla.swisstophits.history;
+
+import static ch.simschla.swisstophits.spotify.ListManager.TARGET_LIST_NAME_PREFIX;
+
+import ch.simschla.swisstophits.spotify.ListManager;
+import ch.simschla.swisstophits.spotify.TrackCandidate;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * A playlist over several years, built from the tracks the yearly charts have been matched to: the charts are merged by
+ * position, so the number ones of all years come first.
+ */
+@Value
+public class AggregatePlaylist {
+
+    public static final int ALL_TIME_TOP_SIZE = 500;
+
+    @NonNull
+    String name;
+
+    @NonNull
+    String description;
+
+    int fromYear;
+
+    int toYear;
+
+    boolean swissActsOnly;
+
+    // 0 for all tracks
+    int limit;
+
+    /**
+     * @return the playlist of every decade archived, the swiss acts and the top tracks of all time
+     */
+    public static List<AggregatePlaylist> all(@NonNull ChartHistory history) {
+        int[] years = history.years();
+        List<AggregatePlaylist> playlists = new ArrayList<>();
+        if (years.length == 0) {
+            return playlists;
+        }
+        int firstYear = years[0];
+        int lastYear = years[years.length - 1];
+        for (int decade = firstYear - Math.floorMod(firstYear, 10); decade <= lastYear; decade += 10) {
+            playlists.add(new AggregatePlaylist(
+                    TARGET_LIST_NAME_PREFIX + " " + decade + "s",
+                    ListManager.descriptionWithCredits(
+                            "Die grössten Hits der Schweizer Hitparade aus den " + decade + "er Jahren."),
+                    decade,
+                    decade + 9,
+                    false,
+                    0));
+        }
+        playlists.add(new AggregatePlaylist(
+                TARGET_LIST_NAME_PREFIX + " Swiss Acts All-Time",
+                ListManager.descriptionWithCredits(
+                        "Die grössten Hits von Schweizer Acts in der Schweizer Hitparade seit " + firstYear + "."),
+                firstYear,
+                lastYear,
+                true,
+                0));
+        playlists.add(new AggregatePlaylist(
+                TARGET_LIST_NAME_PREFIX + " Top " + ALL_TIME_TOP_SIZE + " All-Time",
+                ListManager.descriptionWithCredits("Die " + ALL_TIME_TOP_SIZE
+                        + " grössten Hits der Schweizer Hitparade seit " + firstYear + "."),
+                firstYear,
+                lastYear,
+                false,
+                ALL_TIME_TOP_SIZE));
+        return playlists;
+    }
+
+    /**
+     * @return the matched tracks, each only once
+     */
+    public List<TrackCandidate> tracks(@NonNull ChartHistory history) {
+        List<TrackCandidate> tracks =
+                ChartHistory.matchedTracks(history.mergeByPosition(fromYear, toYear, swissActsOnly));
+        return limit > 0 && tracks.size() > limit ? tracks.subList(0, limit) : tracks;
+    }
+}
@@ -0,0 +1,300 @@
+package ch.simschla.swisstophits.history;
+
+import ch.simschla.swisstophits.archive.ArchivedSong;
+import ch.simschla.swisstophits.archive.ChartArchive;
+import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
+import ch.simschla.swisstophits.model.CompactSongInfo;
+import ch.simschla.swisstophits.normalizer.SongInfoNormalizer;
+import ch.simschla.swisstophits.spotify.TrackCandidate;
+import ch.simschla.swisstophits.text.TextNormalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The archived charts of all years in memory, indexed for questions across years: the career of an artist, the years
+ * a song charted in and the swiss acts of a period.
+ *
+ * <p>Entries are kept in one array ordered by year and position. The indexes refer to them by their offset in that
+ * array, artists and songs by their {@link TextNormalizer#simplify(String) simplified} names, swiss acts by a bit per
+ * entry of a year. Songs are normalized as they are for matching, so they are found under their corrected names.
+ */
+public final class ChartHistory {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChartHistory.class);
+
+    private final ArchivedSong[] entries;
+
+    // ascending, the entries of years[i] are the ones from yearStarts[i] to yearStarts[i + 1]
+    private final int[] years;
+
+    private final int[] yearStarts;
+
+    private final Map<String, int[]> entriesByArtist;
+
+    private final Map<String, int[]> entriesBySong;
+
+    // bits by the index of the entry within its year
+    private final Map<Integer, BitSet> swissActsByYear;
+
+    private ChartHistory(@NonNull ChartArchive archive) {
+        SongInfoNormalizer normalizer = new SongInfoNormalizer();
+        boolean normalize = TopHitsGeneratorMode.INSTANCE.isNormalizeEnabled();
+        this.years = archive.years();
+        this.yearStarts = new int[years.length + 1];
+        List<ArchivedSong> allEntries = new ArrayList<>(archive.songCount());
+        Map<String, List<Integer>> byArtist = new HashMap<>();
+        Map<String, List<Integer>> bySong = new HashMap<>();
+        this.swissActsByYear = new HashMap<>();
+        for (int i = 0; i < years.length; i++) {
+            int year = years[i];
+            yearStarts[i] = allEntries.size();
+            BitSet swissActs = new BitSet();
+            for (ArchivedSong archivedSong : archive.songs(year)) {
+                ArchivedSong song = archivedSong;
+                if (normalize) {
+                    // converted for the normalizer only, the archived song is kept if no rule applies
+                    CompactSongInfo normalized =
+                            CompactSongInfo.of(normalizer.normalize(year, archivedSong.getSongInfo()));
+                    if (!normalized.equals(archivedSong.getSong())) {
+                        song = new ArchivedSong(normalized, archivedSong.getTrack());
+                    }
+                }
+                CompactSongInfo songInfo = song.getSong();
+                int entry = allEntries.size();
+                allEntries.add(song);
+                bySong.computeIfAbsent(key(songInfo.getSong()), key -> new ArrayList<>()).add(entry);
+                // an artist listed twice still charted only once
+                for (String artist : new LinkedHashSet<>(keys(songInfo.getArtists()))) {
+                    byArtist.computeIfAbsent(artist, key -> new ArrayList<>()).add(entry);
+                }
+                if (songInfo.isSwissAct()) {
+                    swissActs.set(entry - yearStarts[i]);
+                }
+            }
+            swissActsByYear.put(year, swissActs);
+        }
+        yearStarts[years.length] = allEntries.size();
+        this.entries = allEntries.toArray(new ArchivedSong[0]);
+        this.entriesByArtist = toArrays(byArtist);
+        this.entriesBySong = toArrays(bySong);
+    }
+
+    public static ChartHistory of(@NonNull ChartArchive archive) {
+        long start = System.nanoTime();
+        ChartHistory history = new ChartHistory(archive);
+        LOGGER.info(
+                "Indexed {} songs of {} years, {} artists in {} ms.",
+                history.entries.length,
+                history.years.length,
+                history.entriesByArtist.size(),
+                (System.nanoTime() - start) / 1_000_000d);
+        return history;
+    }
+
+    /**
+     * @return the history of all archived years, if there is an archive
+     */
+    public static Optional<ChartHistory> load() {
+        return ChartArchive.open().map(ChartHistory::of);
+    }
+
+    // ---- queries
+
+    /**
+     * @return the archived years, ascending
+     */
+    public int[] years() {
+        return years.clone();
+    }
+
+    /**
+     * @return the songs of the year in chart order, empty if not archived
+     */
+    public List<ArchivedSong> year(int year) {
+        int slot = Arrays.binarySearch(years, year);
+        if (slot < 0) {
+            return List.of();
+        }
+        return Arrays.asList(entries).subList(yearStarts[slot], yearStarts[slot + 1]);
+    }
+
+    /**
+     * @return all songs of the artist, as main or featured artist, by year and position
+     */
+    public List<ArchivedSong> artistCareer(@NonNull String artist) {
+        return entries(entriesByArtist.get(key(artist)));
+    }
+
+    /**
+     * @return all entries of songs with the title, by year and position
+     */
+    public List<ArchivedSong> songHistory(@NonNull String song) {
+        return entries(entriesBySong.get(key(song)));
+    }
+
+    /**
+     * Songs by their title and first artist, so covers with the same title are told apart.
+     *
+     * @return the entries of each song charting in more than one year, by its first entry
+     */
+    public List<List<ArchivedSong>> songsInMultipleYears() {
+        Map<String, List<ArchivedSong>> songs = new HashMap<>();
+        for (int[] songEntries : entriesBySong.values()) {
+            if (yearOf(songEntries[0]) == yearOf(songEntries[songEntries.length - 1])) {
+                continue; // a single year, whoever sang it
+            }
+            for (int entry : songEntries) {
+                CompactSongInfo songInfo = entries[entry].getSong();
+                String firstArtist = songInfo.getArtists().isEmpty() ? "" : key(songInfo.getArtists().get(0));
+                songs.computeIfAbsent(key(songInfo.getSong()) + "|" + firstArtist, key -> new ArrayList<>())
+                        .add(entries[entry]);
+            }
+        }
+        return songs.values().stream()
+                .filter(ChartHistory::isInMultipleYears)
+                .sorted((a, b) -> Integer.compare(chartOrder(a.get(0)), chartOrder(b.get(0))))
+                .toList();
+    }
+
+    /**
+     * @return the songs of swiss acts from {@code fromYear} to {@code toYear} (inclusive), by year and position
+     */
+    public List<ArchivedSong> swissActs(int fromYear, int toYear) {
+        List<ArchivedSong> swissActs = new ArrayList<>();
+        for (int i = 0; i < years.length; i++) {
+            if (years[i] < fromYear || years[i] > toYear) {
+                continue;
+            }
+            BitSet bits = swissActsByYear.get(years[i]);
+            for (int bit = bits.nextSetBit(0); bit >= 0; bit = bits.nextSetBit(bit + 1)) {
+                swissActs.add(entries[yearStarts[i] + bit]);
+            }
+        }
+        return swissActs;
+    }
+
+    /**
+     * @return the songs of swiss acts by decade, e.g. 1990 for 1990 to 1999
+     */
+    public SortedMap<Integer, List<ArchivedSong>> swissActsByDecade() {
+        SortedMap<Integer, List<ArchivedSong>> byDecade = new TreeMap<>();
+        for (int year : years) {
+            int decade = year - Math.floorMod(year, 10);
+            if (!byDecade.containsKey(decade)) {
+                byDecade.put(decade, swissActs(decade, decade + 9));
+            }
+        }
+        return byDecade;
+    }
+
+    /**
+     * Merges the charts from {@code fromYear} to {@code toYear} (inclusive) by position, the earlier year first on the
+     * same position: all number ones, then all number twos and so on.
+     */
+    public List<ArchivedSong> mergeByPosition(int fromYear, int toYear, boolean swissActsOnly) {
+        // one cursor per year, on the entry it merges next
+        PriorityQueue<int[]> cursors = new PriorityQueue<>(
+                Comparator.comparingInt((int[] cursor) -> entries[cursor[1]].getSong().getPosition())
+                        .thenComparingInt(cursor -> years[cursor[0]]));
+        for (int slot = 0; slot < years.length; slot++) {
+            if (years[slot] >= fromYear && years[slot] <= toYear) {
+                int entry = nextEntry(slot, yearStarts[slot], swissActsOnly);
+                if (entry >= 0) {
+                    cursors.add(new int[] {slot, entry});
+                }
+            }
+        }
+        List<ArchivedSong> merged = new ArrayList<>();
+        while (!cursors.isEmpty()) {
+            int[] cursor = cursors.poll();
+            merged.add(entries[cursor[1]]);
+            cursor[1] = nextEntry(cursor[0], cursor[1] + 1, swissActsOnly);
+            if (cursor[1] >= 0) {
+                cursors.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return the first entry of the year from {@code fromEntry} on, -1 if there is none
+     */
+    private int nextEntry(int slot, int fromEntry, boolean swissActsOnly) {
+        int yearStart = yearStarts[slot];
+        int entry = swissActsOnly
+                ? swissActsByYear.get(years[slot]).nextSetBit(fromEntry - yearStart) + yearStart
+                : fromEntry;
+        return entry >= yearStart && entry < yearStarts[slot + 1] ? entry : -1;
+    }
+
+    /**
+     * The matched tracks of the songs, as to be set to a playlist by the {@code SongManager}.
+     *
+     * @return the tracks in the order of the songs, each track only once and without songs not matched
+     */
+    public static List<TrackCandidate> matchedTracks(@NonNull List<ArchivedSong> songs) {
+        Set<String> uris = new HashSet<>();
+        List<TrackCandidate> tracks = new ArrayList<>(songs.size());
+        for (ArchivedSong song : songs) {
+            song.matchedTrack()
+                    .filter(track -> track.getUri() != null && uris.add(track.getUri()))
+                    .ifPresent(tracks::add);
+        }
+        return tracks;
+    }
+
+    // ---- helpers
+
+    private int yearOf(int entry) {
+        return entries[entry].getSong().getChartYear();
+    }
+
+    private List<ArchivedSong> entries(int[] indexes) {
+        if (indexes == null) {
+            return List.of();
+        }
+        ArchivedSong[] songs = new ArchivedSong[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            songs[i] = entries[indexes[i]];
+        }
+        return Arrays.asList(songs);
+    }
+
+    private static boolean isInMultipleYears(List<ArchivedSong> songs) {
+        int firstYear = songs.get(0).getSong().getChartYear();
+        return songs.stream().anyMatch(song -> song.getSong().getChartYear() != firstYear);
+    }
+
+    private static int chartOrder(ArchivedSong song) {
+        return song.getSong().getChartYear() * 1000 + song.getSong().getPosition();
+    }
+
+    private static String key(String name) {
+        return TextNormalizer.simplify(name);
+    }
+
+    private static List<String> keys(List<String> names) {
+        return names.stream().map(ChartHistory::key).toList();
+    }
+
+    private static Map<String, int[]> toArrays(Map<String, List<Integer>> indexes) {
+        Map<String, int[]> arrays = new HashMap<>(indexes.size() * 2);
+        indexes.forEach((key, entries) -> arrays.put(key, entries.stream().mapToInt(Integer::intValue).toArray()));
+        return arrays;
+    }
+}
@@ -0,0 +1,349 @@
+package ch.simschla.swisstophits.metrics;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Counters, gauges and latency histograms of the whole run. Metrics are created on first use and identified by name
+ * and labels, the labels are given as alternating keys and values:
+ *
+ * <pre>
+ * Metrics.INSTANCE.counter("spotify_calls_total", "endpoint", "search").increment();
+ * </pre>
+ *
+ * Recording is lock free. Exported as JSON summary at the end of the run and in the prometheus text format by the
+ * {@link MetricsEndpoint}.
+ */
+public final class Metrics {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Metrics.class);
+
+    public static final Metrics INSTANCE = new Metrics();
+
+    private static final Path SUMMARY_PATH = Paths.get("metrics", "last-run.json");
+
+    // upper bounds in seconds, from a cached lookup up to a full scrape
+    private static final double[] BUCKETS = {0.001, 0.005, 0.01, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final Comparator<MetricKey> KEY_ORDER =
+            Comparator.comparing(MetricKey::getName).thenComparing(key -> key.getLabels().toString());
+
+    private final Map<MetricKey, Counter> counters = new ConcurrentHashMap<>();
+
+    private final Map<MetricKey, Gauge> gauges = new ConcurrentHashMap<>();
+
+    private final Map<MetricKey, Histogram> histograms = new ConcurrentHashMap<>();
+
+    private Metrics() {}
+
+    public Counter counter(@NonNull String name, String... labels) {
+        return counters.computeIfAbsent(MetricKey.of(name, labels), key -> new Counter());
+    }
+
+    public Gauge gauge(@NonNull String name, String... labels) {
+        return gauges.computeIfAbsent(MetricKey.of(name, labels), key -> new Gauge());
+    }
+
+    public Histogram histogram(@NonNull String name, String... labels) {
+        return histograms.computeIfAbsent(MetricKey.of(name, labels), key -> new Histogram());
+    }
+
+    /**
+     * @return the sum of all counters with the given name, whatever their labels
+     */
+    public long sum(@NonNull String name) {
+        return counters.entrySet().stream()
+                .filter(entry -> entry.getKey().getName().equals(name))
+                .mapToLong(entry -> entry.getValue().get())
+                .sum();
+    }
+
+    /**
+     * @return the cpu time of the current thread in nanos, or 0 if the jvm can not measure it
+     */
+    public static long currentThreadCpuNanos() {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+    }
+
+    public static class Counter {
+        private final LongAdder value = new LongAdder();
+
+        public void increment() {
+            value.increment();
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+
+    public static class Gauge {
+        private volatile double value = 0d;
+
+        public void set(double value) {
+            this.value = value;
+        }
+
+        public double get() {
+            return value;
+        }
+    }
+
+    public static class Histogram {
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length];
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+        private final DoubleAccumulator max = new DoubleAccumulator(Math::max, 0d);
+
+        private Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        /**
+         * Records the time elapsed since {@code startNanos}, as returned by {@link System#nanoTime()}.
+         */
+        public void observeSince(long startNanos) {
+            observeNanos(System.nanoTime() - startNanos);
+        }
+
+        public void observeNanos(long nanos) {
+            observe(nanos / 1e9d);
+        }
+
+        public void observe(double seconds) {
+            int bucket = 0;
+            while (bucket < BUCKETS.length && seconds > BUCKETS[bucket]) {
+                bucket++;
+            }
+            if (bucket < BUCKETS.length) {
+                buckets[bucket].increment();
+            }
+            count.increment();
+            sum.add(seconds);
+            max.accumulate(seconds);
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public double getSum() {
+            return sum.sum();
+        }
+
+        public double getMax() {
+            return max.get();
+        }
+
+        private long[] cumulativeBuckets() {
+            long[] cumulative = new long[BUCKETS.length];
+            long total = 0;
+            for (int i = 0; i < BUCKETS.length; i++) {
+                total += buckets[i].sum();
+                cumulative[i] = total;
+            }
+            return cumulative;
+        }
+    }
+
+    @Value
+    private static class MetricKey {
+        String name;
+        SortedMap<String, String> labels;
+
+        static MetricKey of(String name, String... labels) {
+            if (labels.length % 2 != 0) {
+                throw new IllegalArgumentException("Labels of " + name + " are not given as key value pairs.");
+            }
+            SortedMap<String, String> labelMap = new TreeMap<>();
+            for (int i = 0; i < labels.length; i += 2) {
+                labelMap.put(labels[i], String.valueOf(labels[i + 1]));
+            }
+            return new MetricKey(name, labelMap);
+        }
+
+        String prometheusLabels(String... additionalLabels) {
+            SortedMap<String, String> allLabels = new TreeMap<>(labels);
+            for (int i = 0; i < additionalLabels.length; i += 2) {
+                allLabels.put(additionalLabels[i], additionalLabels[i + 1]);
+            }
+            if (allLabels.isEmpty()) {
+                return "";
+            }
+            return allLabels.entrySet().stream()
+                    .map(label -> label.getKey() + "=\"" + escape(label.getValue()) + "\"")
+                    .collect(Collectors.joining(",", "{", "}"));
+        }
+
+        JsonObject labelsJson() {
+            JsonObject json = new JsonObject();
+            labels.forEach(json::addProperty);
+            return json;
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+
+    // ---- export
+
+    /**
+     * @return all metrics in the prometheus text exposition format
+     */
+    public String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        appendPrometheus(text, counters, "counter", (key, counter) -> text.append(key.getName())
+                .append(key.prometheusLabels())
+                .append(' ')
+                .append(counter.get())
+                .append('\n'));
+        appendPrometheus(text, gauges, "gauge", (key, gauge) -> text.append(key.getName())
+                .append(key.prometheusLabels())
+                .append(' ')
+                .append(gauge.get())
+                .append('\n'));
+        appendPrometheus(text, histograms, "histogram", (key, histogram) -> {
+            long[] cumulative = histogram.cumulativeBuckets();
+            for (int i = 0; i < BUCKETS.length; i++) {
+                text.append(key.getName())
+                        .append("_bucket")
+                        .append(key.prometheusLabels("le", String.valueOf(BUCKETS[i])))
+                        .append(' ')
+                        .append(cumulative[i])
+                        .append('\n');
+            }
+            long count = histogram.getCount();
+            text.append(key.getName())
+                    .append("_bucket")
+                    .append(key.prometheusLabels("le", "+Inf"))
+                    .append(' ')
+                    .append(count)
+                    .append('\n');
+            text.append(key.getName())
+                    .append("_sum")
+                    .append(key.prometheusLabels())
+                    .append(' ')
+                    .append(histogram.getSum())
+                    .append('\n');
+            text.append(key.getName())
+                    .append("_count")
+                    .append(key.prometheusLabels())
+                    .append(' ')
+                    .append(count)
+                    .append('\n');
+        });
+        return text.toString();
+    }
+
+    private static <M> void appendPrometheus(
+            StringBuilder text, Map<MetricKey, M> metrics, String type, MetricAppender<M> appender) {
+        String lastName = null;
+        for (Map.Entry<MetricKey, M> entry : sorted(metrics).entrySet()) {
+            if (!entry.getKey().getName().equals(lastName)) {
+                lastName = entry.getKey().getName();
+                text.append("# TYPE ").append(lastName).append(' ').append(type).append('\n');
+            }
+            appender.append(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @FunctionalInterface
+    private interface MetricAppender<M> {
+        void append(MetricKey key, M metric);
+    }
+
+    /**
+     * @return all metrics, histograms summarized by count, sum, mean and max
+     */
+    public JsonObject toJson() {
+        JsonArray countersJson = new JsonArray();
+        sorted(counters).forEach((key, counter) -> {
+            JsonObject json = metricJson(key);
+            json.addProperty("value", counter.get());
+            countersJson.add(json);
+        });
+        JsonArray gaugesJson = new JsonArray();
+        sorted(gauges).forEach((key, gauge) -> {
+            JsonObject json = metricJson(key);
+            json.addProperty("value", gauge.get());
+            gaugesJson.add(json);
+        });
+        JsonArray histogramsJson = new JsonArray();
+        sorted(histograms).forEach((key, histogram) -> {
+            JsonObject json = metricJson(key);
+            long count = histogram.getCount();
+            json.addProperty("count", count);
+            json.addProperty("sumSeconds", histogram.getSum());
+            json.addProperty("meanSeconds", count == 0 ? 0d : histogram.getSum() / count);
+            json.addProperty("maxSeconds", histogram.getMax());
+            histogramsJson.add(json);
+        });
+
+        JsonObject json = new JsonObject();
+        json.add("counters", countersJson);
+        json.add("gauges", gaugesJson);
+        json.add("histograms", histogramsJson);
+        return json;
+    }
+
+    private static JsonObject metricJson(MetricKey key) {
+        JsonObject json = new JsonObject();
+        json.addProperty("name", key.getName());
+        json.add("labels", key.labelsJson());
+        return json;
+    }
+
+    private static <M> SortedMap<MetricKey, M> sorted(Map<MetricKey, M> metrics) {
+        SortedMap<MetricKey, M> sorted = new TreeMap<>(KEY_ORDER);
+        sorted.putAll(metrics);
+        return sorted;
+    }
+
+    /**
+     * Writes the {@link #toJson() summary} to {@code metrics/last-run.json}.
+     */
+    public void writeSummary() {
+        SUMMARY_PATH.toFile().getParentFile().mkdirs();
+        try {
+            Files.writeString(
+                    SUMMARY_PATH,
+                    new GsonBuilder().setPrettyPrinting().create().toJson(toJson()),
+                    CREATE,
+                    WRITE,
+                    TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        LOGGER.info("Wrote metrics summary to {}", SUMMARY_PATH);
+    }
+}
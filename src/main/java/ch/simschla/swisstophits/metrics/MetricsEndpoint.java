@@ -0,0 +1,45 @@
+package ch.simschla.swisstophits.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import spark.Service;
+
+/**
+ * Serves the {@link Metrics} while the run is going on: {@code /metrics} in the prometheus text format and
+ * {@code /metrics.json} as JSON, as well as the {@link RunProgress} as {@code /status}. Runs its own spark instance, so
+ * it does not interfere with the authorization callback.
+ */
+public class MetricsEndpoint {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsEndpoint.class);
+
+    private final Service service;
+
+    private MetricsEndpoint(Service service) {
+        this.service = service;
+    }
+
+    public static MetricsEndpoint start(int port) {
+        Service service = Service.ignite().port(port);
+        service.get("/metrics", (req, resp) -> {
+            resp.type("text/plain; version=0.0.4");
+            return Metrics.INSTANCE.toPrometheus();
+        });
+        service.get("/metrics.json", (req, resp) -> {
+            resp.type("application/json");
+            return Metrics.INSTANCE.toJson().toString();
+        });
+        service.get("/status", (req, resp) -> {
+            resp.type("application/json");
+            return RunProgress.INSTANCE.toJson().toString();
+        });
+        service.awaitInitialization();
+        LOGGER.info("Serving metrics on http://localhost:{}/metrics", port);
+        return new MetricsEndpoint(service);
+    }
+
+    public void stop() {
+        service.stop();
+        service.awaitStop();
+    }
+}
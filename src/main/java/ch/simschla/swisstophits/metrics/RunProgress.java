@@ -0,0 +1,146 @@
+package ch.simschla.swisstophits.metrics;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress of the run per year and stage. The run only sets stages and counts songs, throughput and ETA are computed
+ * from these counters when the {@link #toJson() status} is asked for, so nothing is computed as long as nobody polls.
+ */
+public final class RunProgress {
+
+    public static final RunProgress INSTANCE = new RunProgress();
+
+    // songs of a chart year which has not been scraped yet
+    private static final int DEFAULT_SONGS_PER_YEAR = 50;
+
+    // weight of the latest sample in the moving average of the throughput
+    private static final double SMOOTHING = 0.3d;
+
+    public enum Stage {
+        PENDING,
+        SCRAPING,
+        SCRAPED,
+        NORMALIZED,
+        MATCHING,
+        MATCHED,
+        SYNCED,
+        // matched from recorded candidates, not synced on purpose
+        REMATCHED,
+        SKIPPED
+    }
+
+    private final Map<Integer, YearProgress> years = new ConcurrentSkipListMap<>();
+
+    private volatile long startNanos = System.nanoTime();
+
+    // only touched when polled
+    private long lastSampleNanos;
+    private int lastSampleSongs;
+    private double songsPerSecond = Double.NaN;
+
+    private RunProgress() {}
+
+    public synchronized void start(int... chartYears) {
+        years.clear();
+        for (int year : chartYears) {
+            years.put(year, new YearProgress());
+        }
+        startNanos = System.nanoTime();
+        lastSampleNanos = startNanos;
+        lastSampleSongs = 0;
+        songsPerSecond = Double.NaN;
+    }
+
+    public void stage(int year, Stage stage) {
+        year(year).stage = stage;
+    }
+
+    public void songs(int year, int songs) {
+        year(year).songs = songs;
+    }
+
+    /**
+     * Counts a song as done with, whether a match has been found for it or not.
+     */
+    public void songProcessed(int year) {
+        year(year).processed.incrementAndGet();
+    }
+
+    private YearProgress year(int year) {
+        return years.computeIfAbsent(year, y -> new YearProgress());
+    }
+
+    private static final class YearProgress {
+        private volatile Stage stage = Stage.PENDING;
+        private volatile int songs = -1;
+        private final AtomicInteger processed = new AtomicInteger();
+
+        boolean isDone() {
+            return stage == Stage.SYNCED || stage == Stage.REMATCHED || stage == Stage.SKIPPED;
+        }
+    }
+
+    // ---- status
+
+    /**
+     * @return the stage per year, the songs processed so far, the throughput as moving average over the polls and the
+     *     estimated remaining time
+     */
+    public synchronized JsonObject toJson() {
+        long now = System.nanoTime();
+        int processedSongs = 0;
+        int remainingSongs = 0;
+        int yearsDone = 0;
+        JsonArray yearsJson = new JsonArray();
+        for (Map.Entry<Integer, YearProgress> entry : years.entrySet()) {
+            YearProgress progress = entry.getValue();
+            int processed = progress.processed.get();
+            processedSongs += processed;
+            if (progress.isDone()) {
+                yearsDone++;
+            } else {
+                int songs = progress.songs >= 0 ? progress.songs : DEFAULT_SONGS_PER_YEAR;
+                remainingSongs += Math.max(0, songs - processed);
+            }
+            JsonObject yearJson = new JsonObject();
+            yearJson.addProperty("year", entry.getKey());
+            yearJson.addProperty("stage", progress.stage.name());
+            if (progress.songs >= 0) {
+                yearJson.addProperty("songs", progress.songs);
+            }
+            yearJson.addProperty("processed", processed);
+            yearsJson.add(yearJson);
+        }
+        updateThroughput(now, processedSongs);
+
+        JsonObject json = new JsonObject();
+        json.addProperty("elapsedSeconds", (now - startNanos) / 1e9d);
+        json.addProperty("yearsDone", yearsDone);
+        json.addProperty("yearsTotal", years.size());
+        json.addProperty("songsProcessed", processedSongs);
+        json.addProperty("songsRemaining", remainingSongs);
+        if (!Double.isNaN(songsPerSecond)) {
+            json.addProperty("songsPerSecond", songsPerSecond);
+            if (songsPerSecond > 0d) {
+                json.addProperty("etaSeconds", remainingSongs / songsPerSecond);
+            }
+        }
+        json.add("years", yearsJson);
+        return json;
+    }
+
+    private void updateThroughput(long now, int processedSongs) {
+        double seconds = (now - lastSampleNanos) / 1e9d;
+        if (seconds < 1d) {
+            return; // too short to tell
+        }
+        double sample = (processedSongs - lastSampleSongs) / seconds;
+        songsPerSecond = Double.isNaN(songsPerSecond) ? sample : SMOOTHING * sample + (1d - SMOOTHING) * songsPerSecond;
+        lastSampleNanos = now;
+        lastSampleSongs = processedSongs;
+    }
+}
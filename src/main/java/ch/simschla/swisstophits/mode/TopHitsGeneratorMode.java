@@ -11,5 +11,70 @@ public class TopHitsGeneratorMode {
 
     boolean isDryRunEnabled = Boolean.parseBoolean(System.getProperty("dryRun", "true"));
 
-    boolean isNormalizeEnabled = false;
+    boolean isNormalizeEnabled = Boolean.parseBoolean(System.getProperty("normalize", "false"));
+
+    int searchPageSize = Integer.parseInt(System.getProperty("searchPageSize", "20"));
+
+    int searchMaxPages = Integer.parseInt(System.getProperty("searchMaxPages", "3"));
+
+    int searchThreads = Integer.parseInt(System.getProperty("searchThreads", "8"));
+
+    // opt-in, a track once indexed is preferred over any search result
+    boolean isTrackIndexEnabled = Boolean.parseBoolean(System.getProperty("trackIndex", "false"));
+
+    boolean isArtistPrefetchEnabled = Boolean.parseBoolean(System.getProperty("prefetchArtists", "false"));
+
+    int prefetchMinSongs = Integer.parseInt(System.getProperty("prefetchMinSongs", "3"));
+
+    // an artist prefetched is not fetched again for that long, even if songs of it lack candidates
+    int prefetchMaxAgeDays = Integer.parseInt(System.getProperty("prefetchMaxAgeDays", "90"));
+
+    boolean isCandidateRecordingEnabled = Boolean.parseBoolean(System.getProperty("recordCandidates", "false"));
+
+    boolean isRematchEnabled = Boolean.parseBoolean(System.getProperty("rematch", "false"));
+
+    boolean isRematchSyncEnabled = Boolean.parseBoolean(System.getProperty("rematchSync", "false"));
+
+    boolean isMatchVerificationEnabled = Boolean.parseBoolean(System.getProperty("verifyMatching", "false"));
+
+    boolean isCoverUploadEnabled = Boolean.parseBoolean(System.getProperty("coverUpload", "true"));
+
+    // archives the charts with their matched tracks
+    boolean isChartArchiveEnabled = Boolean.parseBoolean(System.getProperty("chartArchive", "true"));
+
+    // reads the charts of past years from the archive instead of scraping them
+    boolean isFromArchiveEnabled = Boolean.parseBoolean(System.getProperty("fromArchive", "false"));
+
+    // syncs the decade and all-time playlists from the archive after the yearly ones
+    boolean isAggregatePlaylistsEnabled = Boolean.parseBoolean(System.getProperty("aggregatePlaylists", "false"));
+
+    // only estimates the api calls of the run
+    boolean isPlanOnlyEnabled = Boolean.parseBoolean(System.getProperty("planOnly", "false"));
+
+    // max api calls of the run, 0 for no limit
+    long callBudget = Long.parseLong(System.getProperty("callBudget", "0"));
+
+    // serves the metrics while running, 0 to disable
+    int metricsPort = Integer.parseInt(System.getProperty("metricsPort", "0"));
+
+    // serves matching instead of running once, 0 to disable
+    int servicePort = Integer.parseInt(System.getProperty("servicePort", "0"));
+
+    int serviceThreads = Integer.parseInt(System.getProperty("serviceThreads", "4"));
+
+    int serviceQueueSize = Integer.parseInt(System.getProperty("serviceQueueSize", "32"));
+
+    // re-checks the charts periodically instead of running once
+    boolean isDaemonEnabled = Boolean.parseBoolean(System.getProperty("daemon", "false"));
+
+    int daemonRecentIntervalMinutes = Integer.parseInt(System.getProperty("daemonRecentIntervalMinutes", "60"));
+
+    int daemonBackfillIntervalHours = Integer.parseInt(System.getProperty("daemonBackfillIntervalHours", "168"));
+
+    int daemonCallsPerHour = Integer.parseInt(System.getProperty("daemonCallsPerHour", "600"));
+
+    // aggregates the weekly charts of the years by this ranking instead of syncing, e.g. POINTS, unset to disable
+    String weeklyRanking = System.getProperty("weeklyRanking");
+
+    int weeklyLimit = Integer.parseInt(System.getProperty("weeklyLimit", "50"));
 }
@@ -0,0 +1,95 @@
+package ch.simschla.swisstophits.model;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.AbstractList;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * A {@link SongInfo} for holding many years at once: primitive fields, the artists as ids of the
+ * {@link NameDictionary#ARTISTS run-wide dictionary} and the cover url as string, which is only parsed on conversion.
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class CompactSongInfo {
+
+    private final int position;
+
+    private final int chartYear;
+
+    private final boolean swissAct;
+
+    private final String song;
+
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private final int[] artistIds;
+
+    private final String coverImageUrl;
+
+    public static CompactSongInfo of(@NonNull SongInfo songInfo) {
+        return of(
+                songInfo.getPosition(),
+                songInfo.getChartYear(),
+                songInfo.getSwissAct(),
+                songInfo.getSong(),
+                songInfo.getArtists(),
+                songInfo.getCoverImageUrl() != null ? songInfo.getCoverImageUrl().toString() : null);
+    }
+
+    public static CompactSongInfo of(
+            int position,
+            int chartYear,
+            boolean swissAct,
+            @NonNull String song,
+            @NonNull List<String> artists,
+            String coverImageUrl) {
+        int[] artistIds = new int[artists.size()];
+        for (int i = 0; i < artistIds.length; i++) {
+            artistIds[i] = NameDictionary.ARTISTS.id(artists.get(i));
+        }
+        return new CompactSongInfo(position, chartYear, swissAct, song, artistIds, coverImageUrl);
+    }
+
+    public SongInfo toSongInfo() {
+        try {
+            return SongInfo.builder()
+                    .position(position)
+                    .song(song)
+                    .artists(getArtists())
+                    .swissAct(swissAct)
+                    .chartYear(chartYear)
+                    .coverImageUrl(coverImageUrl != null ? new URL(coverImageUrl) : null)
+                    .build();
+        } catch (MalformedURLException e) {
+            // parsed from a URL on creation
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return the artists, looked up in the dictionary on access
+     */
+    @ToString.Include(name = "artists")
+    public List<String> getArtists() {
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return NameDictionary.ARTISTS.name(artistIds[index]);
+            }
+
+            @Override
+            public int size() {
+                return artistIds.length;
+            }
+        };
+    }
+}
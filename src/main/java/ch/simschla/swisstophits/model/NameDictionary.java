@@ -0,0 +1,55 @@
+package ch.simschla.swisstophits.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.NonNull;
+
+/**
+ * Names repeating across songs and years, each kept once for the whole run and referred to by an int id.
+ */
+public final class NameDictionary {
+
+    public static final NameDictionary ARTISTS = new NameDictionary();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+
+    // published before their id, so whoever has an id sees the name
+    private volatile String[] names = new String[256];
+
+    private int size = 0;
+
+    private NameDictionary() {}
+
+    public int id(@NonNull String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : add(name);
+    }
+
+    private synchronized int add(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        String[] current = names;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[size] = name;
+        names = current;
+        ids.put(name, size);
+        return size++;
+    }
+
+    public String name(int id) {
+        String[] current = names;
+        if (id < 0 || id >= current.length || current[id] == null) {
+            throw new IllegalArgumentException("Unknown name id " + id);
+        }
+        return current[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
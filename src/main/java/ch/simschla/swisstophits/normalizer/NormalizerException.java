@@ -0,0 +1,16 @@
+package ch.simschla.swisstophits.normalizer;
+
+public class NormalizerException extends RuntimeException {
+
+    public NormalizerException(String message) {
+        super(message);
+    }
+
+    public NormalizerException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public NormalizerException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,34 @@
+package ch.simschla.swisstophits.normalizer;
+
+import ch.simschla.swisstophits.model.SongInfo;
+import lombok.Getter;
+import lombok.NonNull;
+
+public class SongInfoFixerArtistAlias implements SongInfoFixer {
+
+    @NonNull
+    private final String origArtist;
+
+    @NonNull
+    @Getter
+    private final String fixedArtist;
+
+    @Getter
+    private final String key;
+
+    public SongInfoFixerArtistAlias(@NonNull String origArtist, @NonNull String fixedArtist) {
+        this.origArtist = origArtist;
+        this.fixedArtist = fixedArtist;
+        this.key = SongInfoRules.artistKey(origArtist);
+    }
+
+    @Override
+    public SongInfo fix(@NonNull SongInfo orig) {
+        if (orig.getArtists().stream().map(SongInfoRules::artistKey).noneMatch(key::equals)) {
+            return orig;
+        }
+        return orig.withArtists(orig.getArtists().stream()
+                .map(artist -> key.equals(SongInfoRules.artistKey(artist)) ? fixedArtist : artist)
+                .toList());
+    }
+}
@@ -2,6 +2,7 @@ package ch.simschla.swisstophits.normalizer;
 
 import ch.simschla.swisstophits.model.SongInfo;
 import java.util.List;
+import lombok.Getter;
 import lombok.NonNull;
 
 public class SongInfoFixerSongName implements SongInfoFixer {
@@ -16,17 +17,21 @@ public class SongInfoFixerSongName implements SongInfoFixer {
 
     private final String fixedSong;
 
+    @Getter
+    private final String key;
+
     public SongInfoFixerSongName(
             @NonNull List<String> origArtists, @NonNull String origSong, List<String> fixedArtists, String fixedSong) {
         this.origArtists = origArtists;
         this.origSong = origSong;
         this.fixedArtists = fixedArtists;
         this.fixedSong = fixedSong;
+        this.key = SongInfoRules.songKey(origSong, origArtists);
     }
 
     @Override
     public SongInfo fix(@NonNull SongInfo orig) {
-        if (!orig.getSong().equals(origSong) || !orig.getArtists().equals(origArtists)) {
+        if (!key.equals(SongInfoRules.songKey(orig.getSong(), orig.getArtists()))) {
             return orig;
         }
 
@@ -3,9 +3,12 @@ package ch.simschla.swisstophits.normalizer;
 import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
 import ch.simschla.swisstophits.model.ChartInfo;
 import ch.simschla.swisstophits.model.SongInfo;
-import java.util.Collections;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
-import java.util.Map;
 import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,33 +17,62 @@ public class SongInfoNormalizer {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SongInfoNormalizer.class);
 
-    private static final Map<Integer, List<SongInfoFixer>> FIXERS = Map.of(
-            2003,
-            List.of(new SongInfoFixerSongName(
-                    List.of("Mia Aegerter"), "Hie u jetzt - Right Here Right Now", null, "Hie u jetzt")));
+    private static final Path RULES_PATH = Paths.get(System.getProperty("normalizerRules", "normalizer-rules.tsv"));
+
+    private static volatile SongInfoRules rules = SongInfoRules.empty();
+
+    private static volatile FileTime rulesLastModified = null;
 
     public ChartInfo normalize(@NonNull ChartInfo chartInfo) {
         if (!TopHitsGeneratorMode.INSTANCE.isNormalizeEnabled()) {
             LOGGER.info("Normalizing disabled. Skipping.");
             return chartInfo;
         }
-        if (!FIXERS.containsKey(chartInfo.getChartYear())) {
-            return chartInfo;
-        }
-        List<SongInfoFixer> fixers = FIXERS.get(chartInfo.getChartYear());
+        SongInfoRules currentRules = rules();
         return chartInfo.withChartSongs(chartInfo.getChartSongs().stream()
-                .map(songInfo -> normalize(chartInfo.getChartYear(), songInfo))
+                .map(songInfo -> currentRules.apply(chartInfo.getChartYear(), songInfo))
                 .toList());
     }
 
     public SongInfo normalize(@NonNull Integer chartYear, @NonNull SongInfo songInfo) {
-        SongInfo fixed = songInfo;
+        return rules().apply(chartYear, songInfo);
+    }
 
-        List<SongInfoFixer> fixers = FIXERS.getOrDefault(chartYear, Collections.emptyList());
+    /**
+     * The artists to search and match for, see {@link SongInfoRules#searchArtist(int, String)}. Applied whether
+     * normalizing is enabled or not.
+     */
+    public List<String> searchArtists(@NonNull SongInfo songInfo) {
+        SongInfoRules currentRules = rules();
+        return songInfo.getArtists().stream()
+                .map(artist -> currentRules.searchArtist(songInfo.getChartYear(), artist))
+                .toList();
+    }
 
-        for (SongInfoFixer fixer : fixers) {
-            fixed = fixer.fix(fixed);
+    /**
+     * The rules file is re-read whenever it changed on disk, so corrections can be added without restarting.
+     */
+    static SongInfoRules rules() {
+        try {
+            if (!Files.isRegularFile(RULES_PATH)) {
+                if (rulesLastModified != null) {
+                    LOGGER.warn("Normalizer rules {} vanished, keeping the last loaded ones.", RULES_PATH);
+                }
+                return rules;
+            }
+            FileTime lastModified = Files.getLastModifiedTime(RULES_PATH);
+            if (!lastModified.equals(rulesLastModified)) {
+                synchronized (SongInfoNormalizer.class) {
+                    if (!lastModified.equals(rulesLastModified)) {
+                        rules = SongInfoRules.load(RULES_PATH);
+                        rulesLastModified = lastModified;
+                        LOGGER.info("Loaded {} normalizer rules from {}", rules.size(), RULES_PATH);
+                    }
+                }
+            }
+            return rules;
+        } catch (IOException e) {
+            throw new NormalizerException(e);
         }
-        return fixed;
     }
 }
@@ -0,0 +1,183 @@
+package ch.simschla.swisstophits.normalizer;
+
+import ch.simschla.swisstophits.model.SongInfo;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Normalizer rules indexed by song and artists resp. by artist, so that looking up the rules for a song does not
+ * depend on the number of rules.
+ */
+public class SongInfoRules {
+
+    private static final String KEEP_ORIGINAL = "=";
+
+    private static final String ARTISTS_SEPARATOR = " ; ";
+
+    private final Map<String, List<Scoped<SongInfoFixerSongName>>> songFixers;
+
+    private final Map<String, List<Scoped<SongInfoFixerArtistAlias>>> artistFixers;
+
+    private final Map<String, List<Scoped<SongInfoFixerArtistAlias>>> searchArtistFixers;
+
+    private SongInfoRules(
+            Map<String, List<Scoped<SongInfoFixerSongName>>> songFixers,
+            Map<String, List<Scoped<SongInfoFixerArtistAlias>>> artistFixers,
+            Map<String, List<Scoped<SongInfoFixerArtistAlias>>> searchArtistFixers) {
+        this.songFixers = songFixers;
+        this.artistFixers = artistFixers;
+        this.searchArtistFixers = searchArtistFixers;
+    }
+
+    /**
+     * Applies the rules scoped to {@code chartYear}.
+     */
+    public SongInfo apply(int chartYear, @NonNull SongInfo songInfo) {
+        SongInfo fixed = songInfo;
+
+        List<Scoped<SongInfoFixerSongName>> songRules = songFixers.get(songKey(fixed.getSong(), fixed.getArtists()));
+        if (songRules != null) {
+            for (Scoped<SongInfoFixerSongName> rule : songRules) {
+                if (rule.getYears().contains(chartYear)) {
+                    fixed = rule.getFixer().fix(fixed);
+                }
+            }
+        }
+
+        if (artistFixers.isEmpty()) {
+            return fixed;
+        }
+        List<SongInfoFixer> artistRules = new ArrayList<>(0);
+        for (String artist : fixed.getArtists()) {
+            for (Scoped<SongInfoFixerArtistAlias> rule : artistFixers.getOrDefault(artistKey(artist), List.of())) {
+                if (rule.getYears().contains(chartYear)) {
+                    artistRules.add(rule.getFixer());
+                }
+            }
+        }
+        for (SongInfoFixer artistRule : artistRules) {
+            fixed = artistRule.fix(fixed);
+        }
+        return fixed;
+    }
+
+    /**
+     * The artist as searched for and matched, by the search rules scoped to {@code chartYear}. Unlike the other rules,
+     * these do not change the song, it keeps the artist as charted.
+     */
+    public String searchArtist(int chartYear, @NonNull String artist) {
+        for (Scoped<SongInfoFixerArtistAlias> rule : searchArtistFixers.getOrDefault(artistKey(artist), List.of())) {
+            if (rule.getYears().contains(chartYear)) {
+                return rule.getFixer().getFixedArtist();
+            }
+        }
+        return artist;
+    }
+
+    public int size() {
+        return songFixers.values().stream().mapToInt(List::size).sum()
+                + artistFixers.values().stream().mapToInt(List::size).sum()
+                + searchArtistFixers.values().stream().mapToInt(List::size).sum();
+    }
+
+    // ---- keys
+
+    static String songKey(@NonNull String song, @NonNull Collection<String> artists) {
+        return normalizedKey(song) + '\u001f'
+                + artists.stream().map(SongInfoRules::normalizedKey).sorted().collect(Collectors.joining("\u001f"));
+    }
+
+    static String artistKey(@NonNull String artist) {
+        return normalizedKey(artist);
+    }
+
+    private static String normalizedKey(String s) {
+        return s.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // ---- create
+
+    public static SongInfoRules empty() {
+        return new SongInfoRules(Map.of(), Map.of(), Map.of());
+    }
+
+    public static SongInfoRules load(@NonNull Path path) {
+        try {
+            return parse(Files.readAllLines(path, StandardCharsets.UTF_8), path.toString());
+        } catch (IOException e) {
+            throw new NormalizerException(e);
+        }
+    }
+
+    public static SongInfoRules parse(@NonNull List<String> lines, @NonNull String source) {
+        Map<String, List<Scoped<SongInfoFixerSongName>>> songFixers = new HashMap<>();
+        Map<String, List<Scoped<SongInfoFixerArtistAlias>>> artistFixers = new HashMap<>();
+        Map<String, List<Scoped<SongInfoFixerArtistAlias>>> searchArtistFixers = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\t");
+            try {
+                switch (columns[0].trim()) {
+                    case "song" -> {
+                        expectColumns(columns, 6);
+                        SongInfoFixerSongName fixer = new SongInfoFixerSongName(
+                                artists(columns[2]),
+                                columns[3].trim(),
+                                KEEP_ORIGINAL.equals(columns[4].trim()) ? null : artists(columns[4]),
+                                KEEP_ORIGINAL.equals(columns[5].trim()) ? null : columns[5].trim());
+                        songFixers
+                                .computeIfAbsent(fixer.getKey(), key -> new ArrayList<>(1))
+                                .add(new Scoped<>(YearRange.parse(columns[1]), fixer));
+                    }
+                    case "artist" -> artistAlias(columns, artistFixers);
+                    case "search" -> artistAlias(columns, searchArtistFixers);
+                    default -> throw new NormalizerException("Unknown rule type '" + columns[0] + "'");
+                }
+            } catch (NormalizerException e) {
+                throw new NormalizerException(source + ":" + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return new SongInfoRules(songFixers, artistFixers, searchArtistFixers);
+    }
+
+    private static void artistAlias(String[] columns, Map<String, List<Scoped<SongInfoFixerArtistAlias>>> fixers) {
+        expectColumns(columns, 4);
+        SongInfoFixerArtistAlias fixer = new SongInfoFixerArtistAlias(columns[2].trim(), columns[3].trim());
+        fixers.computeIfAbsent(fixer.getKey(), key -> new ArrayList<>(1))
+                .add(new Scoped<>(YearRange.parse(columns[1]), fixer));
+    }
+
+    private static void expectColumns(String[] columns, int expected) {
+        if (columns.length != expected) {
+            throw new NormalizerException("Expected " + expected + " columns, but got " + columns.length);
+        }
+    }
+
+    private static List<String> artists(String column) {
+        return Arrays.stream(column.split(ARTISTS_SEPARATOR))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .toList();
+    }
+
+    @Value
+    private static class Scoped<T extends SongInfoFixer> {
+        YearRange years;
+        T fixer;
+    }
+}
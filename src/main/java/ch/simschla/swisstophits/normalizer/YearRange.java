@@ -0,0 +1,42 @@
+package ch.simschla.swisstophits.normalizer;
+
+import lombok.NonNull;
+import lombok.Value;
+
+@Value
+public class YearRange {
+
+    public static final YearRange ALL = new YearRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+
+    int from;
+
+    int to;
+
+    public boolean contains(int year) {
+        return year >= from && year <= to;
+    }
+
+    /**
+     * Parses {@code *}, {@code 2003}, {@code ..1994}, {@code 1995..} or {@code 1990..1994}.
+     */
+    public static YearRange parse(@NonNull String spec) {
+        String trimmed = spec.trim();
+        if (trimmed.equals("*")) {
+            return ALL;
+        }
+        try {
+            int separator = trimmed.indexOf("..");
+            if (separator < 0) {
+                int year = Integer.parseInt(trimmed);
+                return new YearRange(year, year);
+            }
+            String from = trimmed.substring(0, separator);
+            String to = trimmed.substring(separator + 2);
+            return new YearRange(
+                    from.isEmpty() ? Integer.MIN_VALUE : Integer.parseInt(from),
+                    to.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(to));
+        } catch (NumberFormatException e) {
+            throw new NormalizerException("Invalid year range: " + spec, e);
+        }
+    }
+}
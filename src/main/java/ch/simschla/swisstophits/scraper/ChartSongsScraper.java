@@ -6,7 +6,6 @@ import ch.simschla.swisstophits.model.SongInfo;
 import ch.simschla.swisstophits.model.SongInfo.SongInfoBuilder;
 import ch.simschla.swisstophits.scraper.pages.top50.Top50ChartsElement;
 import ch.simschla.swisstophits.scraper.pages.top50.Top50Page;
-import com.gargoylesoftware.htmlunit.BrowserVersion;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.html.HtmlAnchor;
 import com.gargoylesoftware.htmlunit.html.HtmlDivision;
@@ -27,7 +26,7 @@ public class ChartSongsScraper {
     }
 
     public ChartInfo fetchChartInfo() {
-        try (WebClient webClient = createWebClient()) {
+        try (WebClient webClient = WebClientFactory.createWebClient()) {
             return fetchChartInfo(webClient);
         }
     }
@@ -67,16 +66,6 @@ public class ChartSongsScraper {
         return songAnchor;
     }
 
-    private WebClient createWebClient() {
-        WebClient webClient = new WebClient(BrowserVersion.CHROME);
-        webClient.getOptions().setCssEnabled(false);
-        //        webClient.getOptions().setThrowExceptionOnFailingStatusCode(false);
-        webClient.getOptions().setThrowExceptionOnScriptError(false);
-        webClient.getOptions().setPrintContentOnFailingStatusCode(false);
-        webClient.getOptions().setJavaScriptEnabled(false);
-        return webClient;
-    }
-
     public static void main(String[] args) {
         new ChartSongsScraper(1994).fetchChartInfo();
     }
@@ -0,0 +1,19 @@
+package ch.simschla.swisstophits.scraper;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.WebClient;
+
+final class WebClientFactory {
+
+    private WebClientFactory() {}
+
+    static WebClient createWebClient() {
+        WebClient webClient = new WebClient(BrowserVersion.CHROME);
+        webClient.getOptions().setCssEnabled(false);
+        //        webClient.getOptions().setThrowExceptionOnFailingStatusCode(false);
+        webClient.getOptions().setThrowExceptionOnScriptError(false);
+        webClient.getOptions().setPrintContentOnFailingStatusCode(false);
+        webClient.getOptions().setJavaScriptEnabled(false);
+        return webClient;
+    }
+}
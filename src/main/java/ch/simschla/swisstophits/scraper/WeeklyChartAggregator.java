@@ -0,0 +1,111 @@
+package ch.simschla.swisstophits.scraper;
+
+import ch.simschla.swisstophits.model.ChartInfo;
+import ch.simschla.swisstophits.model.ChartInfo.ChartInfoBuilder;
+import ch.simschla.swisstophits.model.SongInfo;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Folds weekly chart entries into one entry per song as they are scraped, so that no page needs to be kept around.
+ * Safe to be fed from multiple threads.
+ */
+public class WeeklyChartAggregator {
+
+    static final int POINTS_FOR_NUMBER_ONE = 100;
+
+    private final Map<String, AggregatedSong> songs = new ConcurrentHashMap<>();
+
+    private final AtomicInteger weekCount = new AtomicInteger();
+
+    public void addWeek(@NonNull LocalDate chartWeek, @NonNull List<SongInfo> weeklySongs) {
+        for (SongInfo weeklySong : weeklySongs) {
+            songs.computeIfAbsent(keyOf(weeklySong), key -> new AggregatedSong(weeklySong, chartWeek))
+                    .addWeek(chartWeek, weeklySong.getPosition());
+        }
+        weekCount.incrementAndGet();
+    }
+
+    public int getWeekCount() {
+        return weekCount.get();
+    }
+
+    public int getSongCount() {
+        return songs.size();
+    }
+
+    public ChartInfo toChartInfo(@NonNull Integer chartYear, @NonNull WeeklyChartRanking ranking, int limit) {
+        List<AggregatedSong> ranked = songs.values().stream()
+                .filter(ranking.getFilter())
+                .sorted(ranking.getOrder()
+                        .thenComparing(AggregatedSong::getBestPosition)
+                        .thenComparing(AggregatedSong::getFirstWeek))
+                .limit(limit)
+                .toList();
+
+        ChartInfoBuilder chartInfoBuilder = ChartInfo.builder().chartYear(chartYear);
+        for (int position = 0; position < ranked.size(); position++) {
+            chartInfoBuilder.chartSong(ranked.get(position).toSongInfo(position + 1));
+        }
+        return chartInfoBuilder.build();
+    }
+
+    private static String keyOf(SongInfo songInfo) {
+        return songInfo.getSong().toLowerCase(Locale.ROOT) + "|"
+                + songInfo.getArtists().stream()
+                        .map(artist -> artist.toLowerCase(Locale.ROOT))
+                        .sorted()
+                        .collect(Collectors.joining(","));
+    }
+
+    @Getter
+    static class AggregatedSong {
+
+        private final SongInfo firstSeenAs;
+
+        private LocalDate firstWeek;
+
+        private int weeks;
+
+        private int weeksAtNumberOne;
+
+        private int bestPosition = Integer.MAX_VALUE;
+
+        private long points;
+
+        private AggregatedSong(SongInfo firstSeenAs, LocalDate firstWeek) {
+            this.firstSeenAs = firstSeenAs;
+            this.firstWeek = firstWeek;
+        }
+
+        private synchronized void addWeek(LocalDate chartWeek, int position) {
+            if (chartWeek.isBefore(firstWeek)) {
+                firstWeek = chartWeek;
+            }
+            weeks++;
+            if (position == 1) {
+                weeksAtNumberOne++;
+            }
+            bestPosition = Math.min(bestPosition, position);
+            points += Math.max(1, POINTS_FOR_NUMBER_ONE + 1 - position);
+        }
+
+        private SongInfo toSongInfo(int position) {
+            return SongInfo.builder()
+                    .position(position)
+                    .song(firstSeenAs.getSong())
+                    .artists(firstSeenAs.getArtists())
+                    .swissAct(firstSeenAs.getSwissAct())
+                    .coverImageUrl(firstSeenAs.getCoverImageUrl())
+                    .chartYear(firstWeek.getYear())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package ch.simschla.swisstophits.scraper;
+
+import ch.simschla.swisstophits.scraper.WeeklyChartAggregator.AggregatedSong;
+import java.util.Comparator;
+import java.util.function.Predicate;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+@Getter(AccessLevel.PACKAGE)
+public enum WeeklyChartRanking {
+    /** songs which have been #1 at least once, ordered by the number of weeks they have been at the top */
+    MOST_WEEKS_AT_NUMBER_ONE(
+            song -> song.getWeeksAtNumberOne() > 0,
+            Comparator.comparingInt(AggregatedSong::getWeeksAtNumberOne).reversed()),
+
+    /** all songs, ordered by the number of weeks they have been in the weekly charts */
+    MOST_WEEKS_IN_CHARTS(song -> true, Comparator.comparingInt(AggregatedSong::getWeeks).reversed()),
+
+    /** all songs, ordered by points summed up over all weeks (#1 = 100 points, #100 = 1 point) */
+    POINTS(song -> true, Comparator.comparingLong(AggregatedSong::getPoints).reversed());
+
+    private final Predicate<AggregatedSong> filter;
+
+    private final Comparator<AggregatedSong> order;
+}
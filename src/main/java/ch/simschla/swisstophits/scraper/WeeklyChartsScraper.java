@@ -0,0 +1,188 @@
+package ch.simschla.swisstophits.scraper;
+
+import ch.simschla.swisstophits.model.ChartInfo;
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.scraper.exception.ScrapingException;
+import ch.simschla.swisstophits.scraper.pages.weekly.WeeklyChartsElement;
+import ch.simschla.swisstophits.scraper.pages.weekly.WeeklyChartsPage;
+import com.gargoylesoftware.htmlunit.FailingHttpStatusCodeException;
+import com.gargoylesoftware.htmlunit.WebClient;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scrapes the weekly singles charts (one page per week) of one or more years and aggregates them into a single
+ * {@link ChartInfo}. Pages are fetched concurrently, but never more than {@code maxConcurrentRequests} at once and
+ * never faster than one request per {@link #MIN_REQUEST_INTERVAL_MS}.
+ */
+public class WeeklyChartsScraper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WeeklyChartsScraper.class);
+
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 4;
+
+    static final long MIN_REQUEST_INTERVAL_MS = 250;
+
+    @NonNull
+    private final Integer fromYear;
+
+    @NonNull
+    private final Integer toYear;
+
+    private final int maxConcurrentRequests;
+
+    private long nextRequestAt = 0;
+
+    public WeeklyChartsScraper(@NonNull Integer year) {
+        this(year, year, DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    public WeeklyChartsScraper(@NonNull Integer fromYear, @NonNull Integer toYear, int maxConcurrentRequests) {
+        if (fromYear > toYear) {
+            throw new IllegalArgumentException("fromYear " + fromYear + " is after toYear " + toYear);
+        }
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be positive: " + maxConcurrentRequests);
+        }
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public ChartInfo fetchChartInfo(@NonNull WeeklyChartRanking ranking, int limit) {
+        WeeklyChartAggregator aggregator = new WeeklyChartAggregator();
+        fetchInto(aggregator);
+        ChartInfo chartInfo = aggregator.toChartInfo(toYear, ranking, limit);
+        LOGGER.debug("Found aggregated weekly info for {}-{} ({}): {}", fromYear, toYear, ranking, chartInfo);
+        return chartInfo;
+    }
+
+    public void fetchInto(@NonNull WeeklyChartAggregator aggregator) {
+        List<LocalDate> chartWeeks = chartWeeks();
+        LOGGER.info(
+                "Fetching {} weekly charts for {}-{} with {} concurrent requests",
+                chartWeeks.size(),
+                fromYear,
+                toYear,
+                maxConcurrentRequests);
+
+        BlockingQueue<WebClient> webClients = new ArrayBlockingQueue<>(maxConcurrentRequests);
+        for (int i = 0; i < maxConcurrentRequests; i++) {
+            webClients.add(createWebClient());
+        }
+        AtomicInteger failedWeeks = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(maxConcurrentRequests);
+        try {
+            for (LocalDate chartWeek : chartWeeks) {
+                executor.execute(() -> {
+                    if (!fetchWeek(webClients, chartWeek, aggregator)) {
+                        failedWeeks.incrementAndGet();
+                    }
+                });
+            }
+            executor.shutdown();
+            if (!executor.awaitTermination(1, TimeUnit.HOURS)) {
+                throw new ScrapingException("Timed out fetching weekly charts for " + fromYear + "-" + toYear);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw ScrapingException.wrap(e);
+        } finally {
+            executor.shutdownNow();
+            webClients.forEach(WebClient::close);
+        }
+        LOGGER.info(
+                "Fetched {} weekly charts ({} failed) with {} different songs",
+                aggregator.getWeekCount(),
+                failedWeeks.get(),
+                aggregator.getSongCount());
+    }
+
+    private boolean fetchWeek(
+            BlockingQueue<WebClient> webClients, LocalDate chartWeek, WeeklyChartAggregator aggregator) {
+        WebClient webClient = null;
+        try {
+            webClient = webClients.take();
+            awaitRequestSlot();
+            WeeklyChartsPage page = WeeklyChartsPage.openPage(webClient, chartWeek);
+            List<SongInfo> weeklySongs = weeklySongs(page, chartWeek);
+            page.close(); // only keep the extracted entries, not the dom
+            aggregator.addWeek(chartWeek, weeklySongs);
+            LOGGER.debug("Fetched weekly chart {}: {} songs", chartWeek, weeklySongs.size());
+            return true;
+        } catch (ScrapingException | FailingHttpStatusCodeException e) {
+            LOGGER.warn("Could not fetch weekly chart {}: {}", chartWeek, e.getMessage());
+            return false;
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not parse weekly chart {}", chartWeek, e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (webClient != null) {
+                webClients.add(webClient);
+            }
+        }
+    }
+
+    static List<SongInfo> weeklySongs(WeeklyChartsPage page, LocalDate chartWeek) {
+        List<WeeklyChartsElement> chartsElements = page.getChartsElements();
+        List<SongInfo> weeklySongs = new ArrayList<>(chartsElements.size());
+        // by the rank printed, a row missing on the page must not move the ones below it up
+        for (WeeklyChartsElement chartsElement : chartsElements) {
+            weeklySongs.add(SongInfo.builder()
+                    .song(chartsElement.songName())
+                    .artists(chartsElement.artists())
+                    .coverImageUrl(chartsElement.coverImageUrl())
+                    .swissAct(chartsElement.isSwissAct())
+                    .chartYear(chartWeek.getYear())
+                    .position(chartsElement.rank())
+                    .build());
+        }
+        return weeklySongs;
+    }
+
+    private void awaitRequestSlot() throws InterruptedException {
+        long waitMs;
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long requestAt = Math.max(now, nextRequestAt);
+            nextRequestAt = requestAt + MIN_REQUEST_INTERVAL_MS;
+            waitMs = requestAt - now;
+        }
+        if (waitMs > 0) {
+            Thread.sleep(waitMs);
+        }
+    }
+
+    private List<LocalDate> chartWeeks() {
+        // the swiss charts are published with sunday as chart date
+        LocalDate today = LocalDate.now();
+        List<LocalDate> chartWeeks = new ArrayList<>();
+        LocalDate chartWeek = LocalDate.of(fromYear, 1, 1).with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+        while (chartWeek.getYear() <= toYear && !chartWeek.isAfter(today)) {
+            chartWeeks.add(chartWeek);
+            chartWeek = chartWeek.plusWeeks(1);
+        }
+        return chartWeeks;
+    }
+
+    private static WebClient createWebClient() {
+        WebClient webClient = WebClientFactory.createWebClient();
+        webClient.getOptions().setHistorySizeLimit(0); // do not keep visited pages around
+        return webClient;
+    }
+}
@@ -0,0 +1,72 @@
+package ch.simschla.swisstophits.scraper.pages;
+
+import com.gargoylesoftware.htmlunit.html.HtmlAnchor;
+import com.gargoylesoftware.htmlunit.html.HtmlBold;
+import com.gargoylesoftware.htmlunit.html.HtmlDivision;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import lombok.NonNull;
+
+/**
+ * A single song entry as rendered by the chart listings of hitparade.ch.
+ */
+public abstract class ChartsElement implements PageObjectElement {
+
+    @NonNull
+    protected final HtmlDivision element;
+
+    protected ChartsElement(@NonNull HtmlDivision element) {
+        this.element = element;
+    }
+
+    public Boolean isSwissAct() {
+        return element.getFirstByXPath(".//img[contains(@src, 'swiss')]") != null;
+    }
+
+    /**
+     * @return whether the element has the title the song and artists are read from
+     */
+    public boolean hasSongTitle() {
+        return element.getFirstByXPath(".//div[@class='chart_title']//a") != null;
+    }
+
+    private HtmlAnchor getSongAnchor() {
+        HtmlDivision songInfoDiv = element.getFirstByXPath(".//div[@class='chart_title']");
+        HtmlAnchor songAnchor = songInfoDiv.getFirstByXPath(".//a");
+        return songAnchor;
+    }
+
+    public String songName() {
+        HtmlAnchor songAnchor = getSongAnchor();
+        return songAnchor.asNormalizedText().split("\n")[1].trim();
+    }
+
+    public Collection<String> artists() {
+        HtmlAnchor songAnchor = getSongAnchor();
+        HtmlBold bold = songAnchor.getFirstByXPath(".//b");
+        return parseArtists(bold.asNormalizedText());
+    }
+
+    private Collection<String> parseArtists(String artistsText) {
+        return Arrays.stream(artistsText.split(
+                        ",\\s|\\s&\\s|\\s\\+\\s| / | feat. | featuring | Feat. | Featuring | and | und |\\sx\\s"))
+                .filter(Objects::nonNull)
+                .map(String::trim)
+                .map(s -> s.length() == 0 ? null : s)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    public URL coverImageUrl() {
+        try {
+            HtmlDivision songCoverDiv = element.getFirstByXPath(".//div[@class='chart_cover']");
+            String background_url = songCoverDiv.getStyleElement("background").getValue();
+            return new URL(background_url.split("\"")[1]);
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+}
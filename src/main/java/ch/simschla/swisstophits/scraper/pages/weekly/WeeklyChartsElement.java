@@ -0,0 +1,42 @@
+package ch.simschla.swisstophits.scraper.pages.weekly;
+
+import ch.simschla.swisstophits.scraper.exception.ScrapingException;
+import ch.simschla.swisstophits.scraper.pages.ChartsElement;
+import com.gargoylesoftware.htmlunit.html.HtmlDivision;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.NonNull;
+
+public class WeeklyChartsElement extends ChartsElement {
+
+    // the rank may be followed by a marker of new entries and re-entries
+    private static final Pattern RANK = Pattern.compile("^\\s*(\\d+)");
+
+    @NonNull
+    private final WeeklyChartsPage parentPage;
+
+    public WeeklyChartsElement(WeeklyChartsPage parentPage, HtmlDivision element) {
+        super(element);
+        this.parentPage = parentPage;
+    }
+
+    public static WeeklyChartsElement onPage(@NonNull WeeklyChartsPage weeklyChartsPage, @NonNull HtmlDivision div) {
+        return new WeeklyChartsElement(weeklyChartsPage, div);
+    }
+
+    /**
+     * @return the rank of the entry as printed on the page
+     * @throws ScrapingException if the entry has no rank
+     */
+    public int rank() {
+        HtmlDivision rankDiv = element.getFirstByXPath(".//div[@class='chart_rank']");
+        if (rankDiv == null) {
+            throw new ScrapingException("No rank for " + songName());
+        }
+        Matcher rank = RANK.matcher(rankDiv.asNormalizedText());
+        if (!rank.find()) {
+            throw new ScrapingException("Unexpected rank '" + rankDiv.asNormalizedText() + "' for " + songName());
+        }
+        return Integer.parseInt(rank.group(1));
+    }
+}
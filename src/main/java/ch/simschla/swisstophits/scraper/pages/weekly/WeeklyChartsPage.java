@@ -0,0 +1,69 @@
+package ch.simschla.swisstophits.scraper.pages.weekly;
+
+import ch.simschla.swisstophits.scraper.exception.ScrapingException;
+import ch.simschla.swisstophits.scraper.pages.PageObject;
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlDivision;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import lombok.NonNull;
+
+public class WeeklyChartsPage implements PageObject {
+
+    public static final String BASE_URL = "https://hitparade.ch/charts/singles/";
+
+    private static final DateTimeFormatter WEEK_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    @NonNull
+    private final WebClient webClient;
+
+    @NonNull
+    private final HtmlPage page;
+
+    @NonNull
+    private final URL pageUrl;
+
+    public WeeklyChartsPage(@NonNull WebClient webClient, @NonNull URL pageUrl) {
+        try {
+            this.webClient = webClient;
+            this.pageUrl = pageUrl;
+            this.page = webClient.getPage(pageUrl);
+        } catch (IOException e) {
+            throw ScrapingException.wrap(e);
+        }
+    }
+
+    public static WeeklyChartsPage openPage(@NonNull WebClient webClient, @NonNull LocalDate chartWeek) {
+        try {
+            return new WeeklyChartsPage(webClient, new URL(BASE_URL + WEEK_FORMAT.format(chartWeek)));
+        } catch (MalformedURLException e) {
+            throw ScrapingException.wrap(e);
+        }
+    }
+
+    /**
+     * @throws ScrapingException if the page does not list its entries the way the year-end charts do
+     */
+    public List<WeeklyChartsElement> getChartsElements() {
+        List<WeeklyChartsElement> chartsElements =
+                page.<HtmlDivision>getByXPath("//div[@class='main']/div[@class='content']").stream()
+                        .map(div -> WeeklyChartsElement.onPage(this, div))
+                        .toList();
+        if (chartsElements.isEmpty() || !chartsElements.stream().allMatch(WeeklyChartsElement::hasSongTitle)) {
+            throw new ScrapingException("Unexpected layout of weekly chart " + pageUrl);
+        }
+        return chartsElements;
+    }
+
+    /**
+     * Releases the dom of this page. Elements obtained from this page must not be used afterwards.
+     */
+    public void close() {
+        page.cleanUp();
+    }
+}
@@ -0,0 +1,287 @@
+package ch.simschla.swisstophits.service;
+
+import ch.simschla.swisstophits.metrics.Metrics;
+import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.normalizer.SongInfoNormalizer;
+import ch.simschla.swisstophits.spotify.SongLookup;
+import ch.simschla.swisstophits.spotify.SongMatchResult;
+import ch.simschla.swisstophits.spotify.auth.SpotifyAuthException;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.model_objects.specification.Playlist;
+import spark.Response;
+import spark.Service;
+
+/**
+ * Keeps the spotify api, the track index and the matcher warm and serves matching to other tools:
+ *
+ * <ul>
+ *   <li>{@code POST /match} with {@code {"song": ..., "artists": [...], "year": ...}} answers the best track with the
+ *       score per feature, or {@code "match": null}
+ *   <li>{@code POST /years/:year/sync} scrapes, matches and syncs the playlist of a year
+ * </ul>
+ *
+ * Matching runs on a bounded executor, requests beyond its queue are answered with {@code 503}, as are requests while
+ * the spotify authorization can not be refreshed. Years are synced one after the other.
+ */
+public class MatchingService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchingService.class);
+
+    private static final int SYNC_QUEUE_SIZE = 4;
+
+    private static final long TERMINATION_TIMEOUT_SECONDS = 120L;
+
+    private final int port;
+
+    @NonNull
+    private final Supplier<SpotifyApi> spotifyApi;
+
+    @NonNull
+    private final YearSync yearSync;
+
+    private final SongInfoNormalizer normalizer = new SongInfoNormalizer();
+
+    private final ExecutorService matchExecutor;
+
+    private final ExecutorService syncExecutor;
+
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private Service service;
+
+    private volatile SongLookup songLookup;
+
+    /**
+     * Syncs the playlist of a year.
+     */
+    @FunctionalInterface
+    public interface YearSync {
+        /**
+         * @return the playlist, if it has been updated
+         */
+        Optional<Playlist> sync(int year);
+    }
+
+    /**
+     * @param spotifyApi supplies the api, authorized with a valid access token
+     */
+    public MatchingService(int port, @NonNull Supplier<SpotifyApi> spotifyApi, @NonNull YearSync yearSync) {
+        this.port = port;
+        this.spotifyApi = spotifyApi;
+        this.yearSync = yearSync;
+        int threads = Math.max(1, TopHitsGeneratorMode.INSTANCE.getServiceThreads());
+        this.matchExecutor = boundedExecutor(threads, TopHitsGeneratorMode.INSTANCE.getServiceQueueSize());
+        this.syncExecutor = boundedExecutor(1, SYNC_QUEUE_SIZE);
+    }
+
+    private static ExecutorService boundedExecutor(int threads, int queueSize) {
+        // rejects instead of queueing without limit
+        return new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(Math.max(1, queueSize)));
+    }
+
+    public synchronized void start() {
+        service = Service.ignite().port(port);
+        service.post("/match", (req, resp) -> {
+            JsonObject request = parseRequest(req.body());
+            SongInfo songInfo = toSongInfo(request);
+            Optional<SongMatchResult> match = execute(matchExecutor, "match", () -> lookup(songInfo));
+            return json(resp, matchJson(songInfo, match));
+        });
+        service.post("/years/:year/sync", (req, resp) -> {
+            int year = parseYear(req.params("year"));
+            Optional<Playlist> playlist = execute(syncExecutor, "sync", () -> yearSync.sync(year));
+            JsonObject json = new JsonObject();
+            json.addProperty("year", year);
+            json.addProperty("updated", playlist.isPresent());
+            playlist.ifPresent(p -> {
+                json.addProperty("playlistId", p.getId());
+                json.addProperty("playlistName", p.getName());
+            });
+            return json(resp, json);
+        });
+        service.exception(ServiceException.class, (e, req, resp) -> error(resp, 400, e.getMessage()));
+        service.exception(RejectedExecutionException.class, (e, req, resp) -> error(resp, 503, "Too many requests."));
+        service.exception(SpotifyAuthException.class, (e, req, resp) -> {
+            LOGGER.error("Spotify authorization failed.", e);
+            error(resp, 503, "Spotify authorization unavailable.");
+        });
+        service.exception(Exception.class, (e, req, resp) -> {
+            LOGGER.error("Failed to handle {} {}", req.requestMethod(), req.pathInfo(), e);
+            error(resp, 500, String.valueOf(e.getMessage()));
+        });
+        service.awaitInitialization();
+        LOGGER.info("Serving matching on http://localhost:{}/match", port);
+    }
+
+    /**
+     * Blocks until the service has been {@link #stop() stopped}.
+     */
+    public void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    public synchronized void stop() {
+        if (service == null) {
+            return;
+        }
+        LOGGER.info("Stopping matching service.");
+        service.stop();
+        service.awaitStop();
+        service = null;
+        // a sync interrupted between deleting and adding the tracks would leave its playlist empty
+        matchExecutor.shutdown();
+        syncExecutor.shutdown();
+        awaitTermination(matchExecutor, "Matching");
+        awaitTermination(syncExecutor, "Syncing");
+        if (songLookup != null) {
+            songLookup.saveTrackIndex();
+        }
+        stopped.countDown();
+    }
+
+    private static void awaitTermination(ExecutorService executor, String task) {
+        try {
+            if (!executor.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOGGER.warn("{} did not finish within {} seconds.", task, TERMINATION_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Optional<SongMatchResult> lookup(SongInfo songInfo) {
+        return songLookup().lookup(songInfo);
+    }
+
+    private SongLookup songLookup() {
+        // the token expires after an hour, so the api is asked for on every lookup
+        SpotifyApi api = spotifyApi.get();
+        if (songLookup == null) {
+            synchronized (this) {
+                if (songLookup == null) {
+                    songLookup = new SongLookup(api);
+                }
+            }
+        }
+        return songLookup;
+    }
+
+    private static <T> T execute(ExecutorService executor, String route, Callable<T> task) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return executor.submit(task).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        } finally {
+            Metrics.INSTANCE.histogram("service_request_seconds", "route", route).observeSince(start);
+        }
+    }
+
+    // ---- json
+
+    private static JsonObject parseRequest(String body) {
+        try {
+            JsonElement json = JsonParser.parseString(body == null ? "" : body);
+            if (!json.isJsonObject()) {
+                throw new ServiceException("Expected a JSON object.");
+            }
+            return json.getAsJsonObject();
+        } catch (JsonParseException e) {
+            throw new ServiceException("Invalid JSON: " + e.getMessage(), e);
+        }
+    }
+
+    private SongInfo toSongInfo(JsonObject request) {
+        String song = requiredString(request, "song");
+        JsonElement artistsJson = request.get("artists");
+        if (artistsJson == null || !artistsJson.isJsonArray() || artistsJson.getAsJsonArray().isEmpty()) {
+            throw new ServiceException("'artists' must be a non empty array.");
+        }
+        List<String> artists = new ArrayList<>();
+        for (JsonElement artist : artistsJson.getAsJsonArray()) {
+            if (!artist.isJsonPrimitive()
+                    || !artist.getAsJsonPrimitive().isString()
+                    || artist.getAsString().isBlank()) {
+                throw new ServiceException("'artists' must only contain names: " + artist);
+            }
+            artists.add(artist.getAsString());
+        }
+        int year = parseYear(requiredString(request, "year"));
+
+        SongInfo songInfo = SongInfo.builder()
+                .position(1)
+                .song(song)
+                .artists(artists)
+                .chartYear(year)
+                .build();
+        return TopHitsGeneratorMode.INSTANCE.isNormalizeEnabled() ? normalizer.normalize(year, songInfo) : songInfo;
+    }
+
+    private static String requiredString(JsonObject request, String property) {
+        JsonElement value = request.get(property);
+        if (value == null || !value.isJsonPrimitive() || value.getAsString().isBlank()) {
+            throw new ServiceException("'" + property + "' is required.");
+        }
+        return value.getAsString();
+    }
+
+    private static int parseYear(String year) {
+        try {
+            return Integer.parseInt(year.trim());
+        } catch (NumberFormatException e) {
+            throw new ServiceException("Invalid year: " + year, e);
+        }
+    }
+
+    private static JsonObject matchJson(SongInfo songInfo, Optional<SongMatchResult> match) {
+        JsonObject song = new JsonObject();
+        song.addProperty("song", songInfo.getSong());
+        JsonArray artists = new JsonArray();
+        songInfo.getArtists().forEach(artists::add);
+        song.add("artists", artists);
+        song.addProperty("year", songInfo.getChartYear());
+
+        JsonObject json = new JsonObject();
+        json.add("normalized", song);
+        json.add("match", match.map(SongMatchResult::toJson).orElse(null));
+        return json;
+    }
+
+    private static String json(Response resp, JsonObject json) {
+        resp.type("application/json");
+        return json.toString();
+    }
+
+    private static void error(Response resp, int status, String message) {
+        JsonObject json = new JsonObject();
+        json.addProperty("error", message);
+        resp.status(status);
+        resp.type("application/json");
+        resp.body(json.toString());
+    }
+}
@@ -0,0 +1,14 @@
+package ch.simschla.swisstophits.service;
+
+/**
+ * Thrown for invalid requests, answered with {@code 400 Bad Request}.
+ */
+public class ServiceException extends RuntimeException {
+    public ServiceException(String message) {
+        super(message);
+    }
+
+    public ServiceException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,286 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
+import ch.simschla.swisstophits.model.ChartInfo;
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.text.TextNormalizer;
+import com.neovisionaries.i18n.CountryCode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import lombok.NonNull;
+import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.specification.Album;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Artist;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+import se.michaelthelin.spotify.model_objects.specification.TrackSimplified;
+
+/**
+ * Fetches the catalog of artists with several chart songs across the requested years once and adds the tracks named
+ * like one of their chart songs to the {@link TrackIndex}. Their songs are then matched from the index, without
+ * searching each of them.
+ *
+ * <p>The artists prefetched are remembered with the time of prefetching in
+ * {@code matching-candidates/prefetched-artists.xml}, next to the index. They are not fetched again before
+ * {@code prefetchMaxAgeDays} passed, even if some of their songs have no candidates, e.g. as they are not on spotify.
+ */
+public class ArtistCatalogPrefetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtistCatalogPrefetcher.class);
+
+    // limits of the api per call
+    private static final int ALBUMS_PAGE_SIZE = 50;
+    private static final int ALBUMS_PER_CALL = 20;
+    private static final int TRACKS_PER_CALL = 50;
+    private static final int ALBUM_TRACKS_PAGE_SIZE = 50;
+
+    private static final Path PREFETCHED_PATH = Paths.get("matching-candidates", "prefetched-artists.xml");
+
+    @NonNull
+    private final SpotifyApi spotifyApi;
+
+    // epoch millis of the last prefetch by simplified artist name
+    private final Properties prefetched = new Properties();
+
+    private boolean dirty = false;
+
+    private int calls = 0;
+
+    public ArtistCatalogPrefetcher(@NonNull SpotifyApi spotifyApi) {
+        this.spotifyApi = spotifyApi;
+        load();
+    }
+
+    public void prefetch(@NonNull Collection<ChartInfo> charts) {
+        if (!TopHitsGeneratorMode.INSTANCE.isTrackIndexEnabled()) {
+            LOGGER.warn("Prefetching artists needs the track index, skipping.");
+            return;
+        }
+        int minSongs = TopHitsGeneratorMode.INSTANCE.getPrefetchMinSongs();
+        Map<String, List<SongInfo>> songsByArtist = new LinkedHashMap<>();
+        for (ChartInfo chart : charts) {
+            for (SongInfo song : chart.getChartSongs()) {
+                for (String artist : song.getArtists()) {
+                    songsByArtist
+                            .computeIfAbsent(TextNormalizer.simplify(artist), key -> new ArrayList<>())
+                            .add(song);
+                }
+            }
+        }
+        songsByArtist.forEach((artistKey, songs) -> {
+            if (songs.size() >= minSongs && !artistKey.isEmpty()) {
+                prefetchArtist(artistKey, songs);
+            }
+        });
+        TrackIndex.current().save();
+        save();
+    }
+
+    private void prefetchArtist(String artistKey, List<SongInfo> songs) {
+        if (isPrefetchedRecently(artistKey)) {
+            LOGGER.debug("Prefetched {} recently already.", artistKey);
+            return;
+        }
+        // re-runs: nothing to do if the index knows candidates for all songs already
+        if (songs.stream().noneMatch(song -> TrackIndex.current().query(song).isEmpty())) {
+            LOGGER.debug("Track index has candidates for all songs of {} already.", artistKey);
+            return;
+        }
+        int callsBefore = calls;
+        try {
+            String artistName = songs.get(0).getArtists().stream()
+                    .filter(artist -> TextNormalizer.simplify(artist).equals(artistKey))
+                    .findFirst()
+                    .orElse(artistKey);
+            Optional<String> artistId = findArtistId(artistName, artistKey);
+            if (artistId.isEmpty()) {
+                // not searched again either, the artist is not on spotify under that name
+                LOGGER.info("Could not find artist {} for prefetching.", artistName);
+                setPrefetched(artistKey);
+                return;
+            }
+            List<String> trackIds = findChartSongTrackIds(fetchAlbumIds(artistId.get()), songs);
+            List<TrackCandidate> tracks = fetchTracks(trackIds);
+            TrackIndex.current().addAll(tracks);
+            setPrefetched(artistKey);
+            LOGGER.info(
+                    "Prefetched {} tracks of {} for {} chart songs with {} calls.",
+                    tracks.size(),
+                    artistName,
+                    songs.size(),
+                    calls - callsBefore);
+        } catch (IOException | SpotifyWebApiException | ParseException e) {
+            throw new SpotifyException(e);
+        }
+    }
+
+    private Optional<String> findArtistId(String artistName, String artistKey)
+            throws IOException, SpotifyWebApiException, ParseException {
+        Paging<Artist> artists = call("searchArtists", "artist " + artistName, () -> spotifyApi
+                .searchArtists(artistName)
+                .market(CountryCode.CH)
+                .limit(5)
+                .build()
+                .execute());
+        return Arrays.stream(artists.getItems())
+                .filter(artist -> artistKey.equals(TextNormalizer.simplify(artist.getName())))
+                .map(Artist::getId)
+                .findFirst();
+    }
+
+    private List<String> fetchAlbumIds(String artistId) throws IOException, SpotifyWebApiException, ParseException {
+        List<String> albumIds = new ArrayList<>();
+        Paging<AlbumSimplified> albums;
+        do {
+            final int offset = albumIds.size();
+            albums = call("getArtistsAlbums", "albums of " + artistId, () -> spotifyApi
+                    .getArtistsAlbums(artistId)
+                    .album_type("album,single")
+                    .market(CountryCode.CH)
+                    .limit(ALBUMS_PAGE_SIZE)
+                    .offset(offset)
+                    .build()
+                    .execute());
+            Arrays.stream(albums.getItems()).map(AlbumSimplified::getId).forEach(albumIds::add);
+        } while (albums.getNext() != null && albums.getItems().length > 0);
+        return albumIds;
+    }
+
+    private List<String> findChartSongTrackIds(List<String> albumIds, List<SongInfo> songs)
+            throws IOException, SpotifyWebApiException, ParseException {
+        List<List<String>> songTokens =
+                songs.stream().map(song -> TextNormalizer.tokens(song.getSong())).toList();
+        List<String> trackIds = new ArrayList<>();
+        for (int from = 0; from < albumIds.size(); from += ALBUMS_PER_CALL) {
+            String[] batch = albumIds.subList(from, Math.min(albumIds.size(), from + ALBUMS_PER_CALL))
+                    .toArray(String[]::new);
+            Album[] albums = call("getSeveralAlbums", "albums " + Arrays.toString(batch), () -> spotifyApi
+                    .getSeveralAlbums(batch)
+                    .market(CountryCode.CH)
+                    .build()
+                    .execute());
+            for (Album album : albums) {
+                if (album == null || album.getTracks() == null) {
+                    continue;
+                }
+                for (TrackSimplified track : albumTracks(album)) {
+                    List<String> trackTokens = TextNormalizer.tokens(track.getName());
+                    if (songTokens.stream().anyMatch(tokens -> !tokens.isEmpty() && trackTokens.containsAll(tokens))) {
+                        trackIds.add(track.getId());
+                    }
+                }
+            }
+        }
+        return trackIds;
+    }
+
+    /**
+     * An album only comes with its first page of tracks, the others of long albums and compilations are fetched.
+     */
+    private List<TrackSimplified> albumTracks(Album album) throws IOException, SpotifyWebApiException, ParseException {
+        Paging<TrackSimplified> page = album.getTracks();
+        List<TrackSimplified> tracks = new ArrayList<>(Arrays.asList(page.getItems()));
+        while (page.getNext() != null && page.getItems().length > 0) {
+            final int offset = tracks.size();
+            page = call("getAlbumsTracks", "tracks of album " + album.getId(), () -> spotifyApi
+                    .getAlbumsTracks(album.getId())
+                    .market(CountryCode.CH)
+                    .limit(ALBUM_TRACKS_PAGE_SIZE)
+                    .offset(offset)
+                    .build()
+                    .execute());
+            tracks.addAll(Arrays.asList(page.getItems()));
+        }
+        return tracks;
+    }
+
+    /**
+     * Album tracks lack popularity and isrc, so the full tracks are fetched, but only for the few named like a song.
+     */
+    private List<TrackCandidate> fetchTracks(List<String> trackIds)
+            throws IOException, SpotifyWebApiException, ParseException {
+        List<TrackCandidate> tracks = new ArrayList<>(trackIds.size());
+        for (int from = 0; from < trackIds.size(); from += TRACKS_PER_CALL) {
+            String[] batch = trackIds.subList(from, Math.min(trackIds.size(), from + TRACKS_PER_CALL))
+                    .toArray(String[]::new);
+            Track[] fullTracks = call("getSeveralTracks", "tracks " + Arrays.toString(batch), () -> spotifyApi
+                    .getSeveralTracks(batch)
+                    .market(CountryCode.CH)
+                    .build()
+                    .execute());
+            Arrays.stream(fullTracks).filter(Objects::nonNull).map(TrackCandidate::of).forEach(tracks::add);
+        }
+        return tracks;
+    }
+
+    private <T> T call(String endpoint, String description, SpotifyCalls.Call<T> call)
+            throws IOException, SpotifyWebApiException, ParseException {
+        calls++;
+        return SpotifyCalls.execute(endpoint, description, call);
+    }
+
+    // ---- prefetched artists
+
+    private boolean isPrefetchedRecently(String artistKey) {
+        String prefetchedAt = prefetched.getProperty(artistKey);
+        if (prefetchedAt == null) {
+            return false;
+        }
+        Duration maxAge = Duration.ofDays(TopHitsGeneratorMode.INSTANCE.getPrefetchMaxAgeDays());
+        return Instant.ofEpochMilli(Long.parseLong(prefetchedAt)).plus(maxAge).isAfter(Instant.now());
+    }
+
+    private void setPrefetched(String artistKey) {
+        prefetched.setProperty(artistKey, String.valueOf(Instant.now().toEpochMilli()));
+        dirty = true;
+    }
+
+    private void save() {
+        if (!dirty) {
+            return;
+        }
+        if (TopHitsGeneratorMode.INSTANCE.isDryRunEnabled()) {
+            LOGGER.info("DRY-RUN. Not saving {} prefetched artists to {}", prefetched.size(), PREFETCHED_PATH);
+            return;
+        }
+        PREFETCHED_PATH.toFile().getParentFile().mkdirs();
+        try (OutputStream out = Files.newOutputStream(PREFETCHED_PATH)) {
+            prefetched.storeToXML(out, "PrefetchedArtists", StandardCharsets.UTF_8);
+            dirty = false;
+        } catch (IOException e) {
+            throw new SpotifyException(e);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(PREFETCHED_PATH)) {
+            return; // nothing to load
+        }
+        try (InputStream in = Files.newInputStream(PREFETCHED_PATH)) {
+            prefetched.loadFromXML(in);
+        } catch (IOException e) {
+            throw new SpotifyException(e);
+        }
+    }
+}
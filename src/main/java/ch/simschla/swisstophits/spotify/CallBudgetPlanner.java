@@ -0,0 +1,284 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
+import ch.simschla.swisstophits.spotify.CandidateRecording.RecordedSong;
+import ch.simschla.swisstophits.spotify.SongSearchResultProvider.SongMatchPriority;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Estimates the spotify api calls of a run before any call is made, from what is known locally:
+ *
+ * <ul>
+ *   <li>the candidates recorded by the last run of a year tell its songs and how many search pages each of them
+ *       needed, all recordings together tell the average for years never run
+ *   <li>songs with candidates in the {@link TrackIndex} are likely matched without searching, as likely as the
+ *       recordings show the index tier matched when it had candidates
+ *   <li>the match results written tell which playlists exist already, to be read and cleared before writing
+ * </ul>
+ *
+ * Dry runs and rematching do not read or write playlists. Covers and prefetching are not estimated.
+ */
+public class CallBudgetPlanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CallBudgetPlanner.class);
+
+    // songs of a chart year without recording
+    private static final int DEFAULT_SONGS_PER_YEAR = 50;
+
+    // search calls per song, as long as nothing is recorded
+    private static final double DEFAULT_SEARCH_CALLS_PER_SONG = 2d;
+
+    // page sizes of ListManager and SongManager
+    private static final int PLAYLISTS_PAGE_SIZE = 50;
+    private static final int PLAYLIST_ITEMS_PAGE_SIZE = 50;
+    private static final int WRITE_CHUNK_SIZE = 100;
+
+    private static final Pattern RECORDING_FILE_NAME = Pattern.compile("^(\\d{4})\\.json\\.gz$");
+
+    @Getter(lazy = true)
+    private final HistoricalRates historicalRates = computeHistoricalRates();
+
+    /**
+     * The estimated calls of one year.
+     */
+    @Value
+    public static class YearEstimate {
+        int year;
+        int songs;
+        boolean recorded;
+        double songsFromIndex;
+        long searchCalls;
+        long playlistReadCalls;
+        long writeCalls;
+
+        public long totalCalls() {
+            return searchCalls + playlistReadCalls + writeCalls;
+        }
+    }
+
+    @Value
+    static class HistoricalRates {
+        // of the songs searched in remote tiers
+        double searchCallsPerSong;
+        // of the songs with candidates in the track index
+        double indexHitRate;
+    }
+
+    public List<YearEstimate> plan(@NonNull int[] years) {
+        boolean dryRun = TopHitsGeneratorMode.INSTANCE.isDryRunEnabled();
+        boolean rematch = TopHitsGeneratorMode.INSTANCE.isRematchEnabled();
+        int existingPlaylists = existingPlaylists();
+        List<YearEstimate> estimates = new ArrayList<>(years.length);
+        for (int year : years) {
+            Optional<CandidateRecording> recording = CandidateRecording.read(year);
+            int songs = recording.map(r -> r.getSongs().size()).orElse(DEFAULT_SONGS_PER_YEAR);
+
+            double songsFromIndex = 0d;
+            double searchCalls = 0d;
+            if (!rematch) {
+                for (int i = 0; i < songs; i++) {
+                    final int index = i;
+                    Optional<RecordedSong> song = recording.map(r -> r.getSongs().get(index));
+                    double remoteCalls = song.map(s -> remoteSearchCalls(s, recording.get().getPageSize()))
+                            .filter(calls -> calls > 0d) // matched from the index back then
+                            .orElse(getHistoricalRates().getSearchCallsPerSong());
+                    double fromIndex = song.map(this::indexHitProbability).orElse(0d);
+                    songsFromIndex += fromIndex;
+                    searchCalls += (1d - fromIndex) * remoteCalls;
+                }
+            } else if (recording.isEmpty()) {
+                songs = 0; // skipped
+            }
+
+            long readCalls = 0;
+            long writeCalls = 0;
+            boolean syncs = !rematch || TopHitsGeneratorMode.INSTANCE.isRematchSyncEnabled();
+            if (!dryRun && syncs && songs > 0) {
+                boolean exists = Files.exists(SongManager.matchResultPath(year));
+                // every year fetches the list of all playlists, and each of them
+                readCalls += ceilDiv(existingPlaylists, PLAYLISTS_PAGE_SIZE) + existingPlaylists;
+                readCalls += Math.max(1, ceilDiv(songs, PLAYLIST_ITEMS_PAGE_SIZE));
+                if (exists) {
+                    writeCalls += ceilDiv(songs, WRITE_CHUNK_SIZE);
+                } else {
+                    readCalls += 1; // the current user, to create the playlist for
+                    writeCalls += 1;
+                }
+                writeCalls += ceilDiv(songs, WRITE_CHUNK_SIZE);
+            }
+            estimates.add(new YearEstimate(
+                    year,
+                    songs,
+                    recording.isPresent(),
+                    songsFromIndex,
+                    Math.round(searchCalls),
+                    readCalls,
+                    writeCalls));
+        }
+        return estimates;
+    }
+
+    /**
+     * Picks as many years as fit into the budget, cheapest first.
+     *
+     * @return the years picked, in chart order
+     */
+    public static List<Integer> selectWithinBudget(@NonNull List<YearEstimate> estimates, long budget) {
+        List<YearEstimate> cheapestFirst = estimates.stream()
+                .sorted(Comparator.comparingLong(YearEstimate::totalCalls).thenComparingInt(YearEstimate::getYear))
+                .toList();
+        List<Integer> selected = new ArrayList<>();
+        long planned = 0;
+        for (YearEstimate estimate : cheapestFirst) {
+            if (planned + estimate.totalCalls() > budget) {
+                break;
+            }
+            planned += estimate.totalCalls();
+            selected.add(estimate.getYear());
+        }
+        return selected.stream().sorted().toList();
+    }
+
+    public static String printPlan(@NonNull List<YearEstimate> estimates) {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format(
+                "| %4s | %5s | %8s | %10s | %6s | %5s | %6s | %6s |%n",
+                "Year", "Songs", "Recorded", "From index", "Search", "Reads", "Writes", "Total"));
+        table.append("| ---: | ----: | :------: | ---------: | -----: | ----: | -----: | -----: |\n");
+        long total = 0;
+        for (YearEstimate estimate : estimates) {
+            table.append(String.format(
+                    "| %4d | %5d | %8s | %10.1f | %6d | %5d | %6d | %6d |%n",
+                    estimate.getYear(),
+                    estimate.getSongs(),
+                    estimate.isRecorded() ? "yes" : "no",
+                    estimate.getSongsFromIndex(),
+                    estimate.getSearchCalls(),
+                    estimate.getPlaylistReadCalls(),
+                    estimate.getWriteCalls(),
+                    estimate.totalCalls()));
+            total += estimate.totalCalls();
+        }
+        table.append(String.format("%nEstimated api calls in total: %d%n", total));
+        return table.toString();
+    }
+
+    // ---- estimates per song
+
+    /**
+     * @return the search calls the remote tiers needed when the song was recorded
+     */
+    private static double remoteSearchCalls(RecordedSong song, int pageSize) {
+        double calls = 0d;
+        for (Map.Entry<SongMatchPriority, List<TrackCandidate>> tier :
+                song.getTracksByPriority().entrySet()) {
+            if (tier.getKey() != SongMatchPriority.MATCH_IN_TRACK_INDEX) {
+                calls += Math.max(1, ceilDiv(tier.getValue().size(), pageSize));
+            }
+        }
+        return calls;
+    }
+
+    private double indexHitProbability(RecordedSong song) {
+        if (!TopHitsGeneratorMode.INSTANCE.isTrackIndexEnabled()) {
+            return 0d;
+        }
+        if (TrackIndex.current().query(song.getSongInfo()).isEmpty()) {
+            return 0d;
+        }
+        return getHistoricalRates().getIndexHitRate();
+    }
+
+    private static HistoricalRates computeHistoricalRates() {
+        long remoteSongs = 0;
+        double remoteCalls = 0d;
+        long indexSongs = 0;
+        long indexHits = 0;
+        for (int year : recordedYears()) {
+            Optional<CandidateRecording> recording = CandidateRecording.read(year);
+            if (recording.isEmpty()) {
+                continue;
+            }
+            for (RecordedSong song : recording.get().getSongs()) {
+                Map<SongMatchPriority, List<TrackCandidate>> tiers = song.getTracksByPriority();
+                boolean searchedRemote =
+                        tiers.keySet().stream().anyMatch(tier -> tier != SongMatchPriority.MATCH_IN_TRACK_INDEX);
+                if (searchedRemote) {
+                    remoteSongs++;
+                    remoteCalls += remoteSearchCalls(song, recording.get().getPageSize());
+                }
+                List<TrackCandidate> indexTier = tiers.get(SongMatchPriority.MATCH_IN_TRACK_INDEX);
+                if (indexTier != null && !indexTier.isEmpty()) {
+                    indexSongs++;
+                    if (!searchedRemote) {
+                        indexHits++;
+                    }
+                }
+            }
+        }
+        HistoricalRates rates = new HistoricalRates(
+                remoteSongs == 0 ? DEFAULT_SEARCH_CALLS_PER_SONG : remoteCalls / remoteSongs,
+                indexSongs == 0 ? 0d : indexHits / (double) indexSongs);
+        LOGGER.debug(
+                "Historical rates of {} searched songs, {} with index candidates: {}", remoteSongs, indexSongs, rates);
+        return rates;
+    }
+
+    private static List<Integer> recordedYears() {
+        Path dir = CandidateRecording.pathForYear(0).getParent();
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> RECORDING_FILE_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Integer.parseInt(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new SpotifyException(e);
+        }
+    }
+
+    private static int existingPlaylists() {
+        Path dir = SongManager.matchResultPath(0).getParent();
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return (int) files.filter(file -> file.getFileName().toString().endsWith(".md"))
+                    .count();
+        } catch (IOException e) {
+            throw new SpotifyException(e);
+        }
+    }
+
+    private static int ceilDiv(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    /**
+     * @return the estimates by year
+     */
+    public static Map<Integer, YearEstimate> byYear(@NonNull List<YearEstimate> estimates) {
+        Map<Integer, YearEstimate> byYear = new TreeMap<>();
+        estimates.forEach(estimate -> byYear.put(estimate.getYear(), estimate));
+        return byYear;
+    }
+}
@@ -0,0 +1,276 @@
+package ch.simschla.swisstophits.spotify;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import ch.simschla.swisstophits.model.ChartInfo;
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.SongSearchResultProvider.SongMatchPriority;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * The candidates every tier returned for the songs of one chart year, so matching can be replayed without searching
+ * again. Tracks are kept as {@link TrackCandidate}s. The songs are kept as scraped too, so normalization can be
+ * replayed as well.
+ */
+@Value
+class CandidateRecording {
+
+    int chartYear;
+
+    int pageSize;
+
+    @NonNull
+    List<RecordedSong> songs;
+
+    @Value
+    static class RecordedSong {
+
+        @NonNull
+        SongInfo scrapedSongInfo;
+
+        // as searched for
+        @NonNull
+        SongInfo songInfo;
+
+        @NonNull
+        Map<SongMatchPriority, List<TrackCandidate>> tracksByPriority;
+
+        // not using equals, since URL#equals resolves the host
+        boolean isNormalized() {
+            return !scrapedSongInfo.getSong().equals(songInfo.getSong())
+                    || !scrapedSongInfo.getArtists().equals(songInfo.getArtists());
+        }
+
+        SongSearchResultProvider toSearchResult(int pageSize) {
+            SongSearchResultProvider searchResult = new SongSearchResultProvider();
+            tracksByPriority.forEach(
+                    (priority, tracks) -> searchResult.add(new RecordedTrackSearch(priority, tracks, pageSize)));
+            return searchResult;
+        }
+    }
+
+    static Path pathForYear(int chartYear) {
+        return Paths.get("matching-candidates", "spotify", chartYear + ".json.gz");
+    }
+
+    /**
+     * @return the chart as scraped, before normalization
+     */
+    ChartInfo scrapedChartInfo() {
+        return ChartInfo.builder()
+                .chartYear(chartYear)
+                .chartSongs(songs.stream().map(RecordedSong::getScrapedSongInfo).toList())
+                .build();
+    }
+
+    /**
+     * Writes gzipped json. Tracks showing up for several songs or tiers are only stored once, the tiers refer to them
+     * by index.
+     */
+    void write() {
+        Map<String, Integer> trackIndexes = new HashMap<>();
+        JsonArray tracksArray = new JsonArray();
+        JsonArray songsArray = new JsonArray(songs.size());
+        for (RecordedSong song : songs) {
+            JsonObject songJson = toJson(song.getSongInfo());
+            if (song.isNormalized()) {
+                songJson.add("scraped", toJson(song.getScrapedSongInfo()));
+            }
+            JsonObject tiersJson = new JsonObject();
+            song.getTracksByPriority().forEach((priority, tracks) -> {
+                JsonArray indexes = new JsonArray(tracks.size());
+                for (TrackCandidate track : tracks) {
+                    indexes.add(trackIndexes.computeIfAbsent(track.key(), key -> {
+                        tracksArray.add(toJson(track));
+                        return tracksArray.size() - 1;
+                    }));
+                }
+                tiersJson.add(priority.name(), indexes);
+            });
+            songJson.add("tiers", tiersJson);
+            songsArray.add(songJson);
+        }
+        JsonObject json = new JsonObject();
+        json.addProperty("chartYear", chartYear);
+        json.addProperty("pageSize", pageSize);
+        json.add("tracks", tracksArray);
+        json.add("songs", songsArray);
+
+        Path path = pathForYear(chartYear);
+        path.toFile().getParentFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(path, CREATE, WRITE, TRUNCATE_EXISTING)),
+                StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+        } catch (IOException e) {
+            throw new SpotifyException(e);
+        }
+    }
+
+    // plain json with the tracks inline, as written before the recordings were compacted
+    static Path legacyPathForYear(int chartYear) {
+        return Paths.get("matching-candidates", "spotify", chartYear + ".json");
+    }
+
+    static Optional<CandidateRecording> read(int chartYear) {
+        Path path = pathForYear(chartYear);
+        return read(Files.exists(path) ? path : legacyPathForYear(chartYear));
+    }
+
+    /**
+     * Reads both the gzipped recordings and the plain json ones written before, whose tiers hold the tracks
+     * themselves instead of indexes.
+     */
+    static Optional<CandidateRecording> read(@NonNull Path path) {
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try (Reader reader = new InputStreamReader(open(path), StandardCharsets.UTF_8)) {
+            JsonObject json = JsonParser.parseReader(reader).getAsJsonObject();
+            List<TrackCandidate> allTracks = new ArrayList<>();
+            if (json.has("tracks")) {
+                json.getAsJsonArray("tracks").forEach(track -> allTracks.add(toTrack(track.getAsJsonObject())));
+            }
+            List<RecordedSong> songs = new ArrayList<>();
+            for (JsonElement songElement : json.getAsJsonArray("songs")) {
+                JsonObject songJson = songElement.getAsJsonObject();
+                Map<SongMatchPriority, List<TrackCandidate>> tracksByPriority = new TreeMap<>();
+                for (Map.Entry<String, JsonElement> tier : songJson.getAsJsonObject("tiers").entrySet()) {
+                    List<TrackCandidate> tracks = new ArrayList<>();
+                    for (JsonElement track : tier.getValue().getAsJsonArray()) {
+                        tracks.add(
+                                track.isJsonObject()
+                                        ? toTrack(track.getAsJsonObject())
+                                        : allTracks.get(track.getAsInt()));
+                    }
+                    tracksByPriority.put(SongMatchPriority.valueOf(tier.getKey()), tracks);
+                }
+                SongInfo songInfo = toSongInfo(songJson);
+                SongInfo scrapedSongInfo =
+                        songJson.has("scraped") ? toSongInfo(songJson.getAsJsonObject("scraped")) : songInfo;
+                songs.add(new RecordedSong(scrapedSongInfo, songInfo, tracksByPriority));
+            }
+            return Optional.of(new CandidateRecording(
+                    json.get("chartYear").getAsInt(), json.get("pageSize").getAsInt(), songs));
+        } catch (IOException | RuntimeException e) {
+            throw new SpotifyException("Could not read candidates from " + path, e);
+        }
+    }
+
+    private static InputStream open(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        return path.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+
+    // ---- json
+
+    private static JsonObject toJson(SongInfo songInfo) {
+        JsonObject json = new JsonObject();
+        json.addProperty("position", songInfo.getPosition());
+        json.addProperty("song", songInfo.getSong());
+        json.add("artists", toJsonArray(songInfo.getArtists()));
+        json.addProperty("swissAct", songInfo.getSwissAct());
+        json.addProperty("chartYear", songInfo.getChartYear());
+        if (songInfo.getCoverImageUrl() != null) {
+            json.addProperty("coverImageUrl", songInfo.getCoverImageUrl().toString());
+        }
+        return json;
+    }
+
+    private static SongInfo toSongInfo(JsonObject json) {
+        try {
+            URL coverImageUrl = json.has("coverImageUrl") ? new URL(json.get("coverImageUrl").getAsString()) : null;
+            return SongInfo.builder()
+                    .position(json.get("position").getAsInt())
+                    .song(json.get("song").getAsString())
+                    .artists(toStringList(json.getAsJsonArray("artists")))
+                    .swissAct(json.get("swissAct").getAsBoolean())
+                    .chartYear(json.get("chartYear").getAsInt())
+                    .coverImageUrl(coverImageUrl)
+                    .build();
+        } catch (MalformedURLException e) {
+            throw new SpotifyException(e);
+        }
+    }
+
+    static JsonObject toJson(TrackCandidate track) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", track.getId());
+        json.addProperty("uri", track.getUri());
+        json.addProperty("name", track.getName());
+        json.add("artists", toJsonArray(track.getArtistNames()));
+        json.addProperty("album", track.getAlbumName());
+        json.addProperty("releaseDate", track.getReleaseDate());
+        json.addProperty("durationMs", track.getDurationMs());
+        json.addProperty("popularity", track.getPopularity());
+        json.addProperty("trackNumber", track.getTrackNumber());
+        json.addProperty("isrc", track.getIsrc());
+        return json;
+    }
+
+    static TrackCandidate toTrack(JsonObject json) {
+        String releaseDate = getString(json, "releaseDate");
+        releaseDate = releaseDate != null ? releaseDate.intern() : null;
+        // missing like in TrackCandidate.of, e.g. for local files
+        String albumName = getString(json, "album");
+        return TrackCandidate.builder()
+                .id(getString(json, "id"))
+                .uri(getString(json, "uri"))
+                .name(getString(json, "name"))
+                .artistNames(toStringList(json.getAsJsonArray("artists")).stream()
+                        .map(String::intern)
+                        .toList())
+                .albumName(albumName != null ? albumName.intern() : "")
+                .releaseDate(releaseDate)
+                .releaseYear(TrackCandidate.parseReleaseYear(releaseDate))
+                .durationMs(json.get("durationMs").getAsInt())
+                .popularity(json.get("popularity").getAsInt())
+                .trackNumber(json.get("trackNumber").getAsInt())
+                .isrc(getString(json, "isrc"))
+                .build();
+    }
+
+    private static String getString(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+
+    private static JsonArray toJsonArray(List<String> strings) {
+        JsonArray array = new JsonArray(strings.size());
+        strings.forEach(array::add);
+        return array;
+    }
+
+    private static List<String> toStringList(JsonArray array) {
+        List<String> strings = new ArrayList<>(array.size());
+        array.forEach(element -> strings.add(element.getAsString()));
+        return strings;
+    }
+}
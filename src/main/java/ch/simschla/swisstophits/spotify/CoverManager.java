@@ -0,0 +1,116 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.cover.CoverException;
+import ch.simschla.swisstophits.cover.CoverHashPersist;
+import ch.simschla.swisstophits.cover.CoverImage;
+import ch.simschla.swisstophits.cover.CoverImageEncoder;
+import ch.simschla.swisstophits.metrics.Metrics;
+import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.NonNull;
+import lombok.Value;
+import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.specification.Playlist;
+
+public class CoverManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoverManager.class);
+
+    @NonNull
+    private final SpotifyApi spotifyApi;
+
+    private final CoverHashPersist hashPersist;
+
+    private final CoverImageEncoder encoder = new CoverImageEncoder();
+
+    public CoverManager(@NonNull SpotifyApi spotifyApi) {
+        this.spotifyApi = spotifyApi;
+        this.hashPersist = CoverHashPersist.open();
+    }
+
+    public void updateCovers(@NonNull Map<Integer, Playlist> playlistsByYear) {
+        List<CoverUpload> uploads = playlistsByYear.entrySet().stream()
+                .map(entry -> pendingUpload(entry.getKey(), entry.getValue()))
+                .flatMap(Optional::stream)
+                .toList();
+        if (uploads.isEmpty()) {
+            LOGGER.info("All covers up to date.");
+            return;
+        }
+
+        // encoding is cpu bound, so spread it over all cores. uploading happens one by one afterwards.
+        LOGGER.info("Encoding {} covers.", uploads.size());
+        List<EncodedCover> encodedCovers = uploads.parallelStream()
+                .map(this::encode)
+                .flatMap(Optional::stream)
+                .toList();
+
+        for (EncodedCover encodedCover : encodedCovers) {
+            upload(encodedCover);
+        }
+    }
+
+    private Optional<CoverUpload> pendingUpload(Integer year, Playlist playlist) {
+        Optional<CoverImage> coverImage = CoverImage.forYear(year);
+        if (coverImage.isEmpty()) {
+            LOGGER.debug("{} - no cover image available", year);
+            return Optional.empty();
+        }
+        if (hashPersist.isUpToDate(playlist.getId(), coverImage.get().getContentHash())) {
+            LOGGER.debug("{} - cover up to date, skipping.", year);
+            Metrics.INSTANCE.counter("cache_lookups_total", "cache", "cover_hash", "result", "hit").increment();
+            return Optional.empty();
+        }
+        Metrics.INSTANCE.counter("cache_lookups_total", "cache", "cover_hash", "result", "miss").increment();
+        return Optional.of(new CoverUpload(playlist, coverImage.get()));
+    }
+
+    private Optional<EncodedCover> encode(CoverUpload upload) {
+        try {
+            return Optional.of(new EncodedCover(upload, encoder.encodeBase64(upload.getCoverImage())));
+        } catch (CoverException e) {
+            LOGGER.error("Could not encode cover {}", upload.getCoverImage().getPath(), e);
+            return Optional.empty();
+        }
+    }
+
+    private void upload(EncodedCover encodedCover) {
+        CoverUpload upload = encodedCover.getUpload();
+        Playlist playlist = upload.getPlaylist();
+        if (TopHitsGeneratorMode.INSTANCE.isDryRunEnabled()) {
+            LOGGER.info("DRY-RUN. Not uploading cover to playlist {}", playlist.getName());
+            return;
+        }
+        try {
+            LOGGER.info("Uploading cover {} to playlist {}", upload.getCoverImage().getPath(), playlist.getName());
+            SpotifyCalls.execute("uploadCustomPlaylistCoverImage", playlist.getName(), () -> this.spotifyApi
+                    .uploadCustomPlaylistCoverImage(playlist.getId())
+                    .image_data(encodedCover.getBase64())
+                    .build()
+                    .execute());
+            hashPersist.setContentHash(playlist.getId(), upload.getCoverImage().getContentHash());
+        } catch (IOException | SpotifyWebApiException | ParseException e) {
+            // a failing cover should not break the whole run, we just try again next time
+            LOGGER.error("Could not upload cover to playlist {}", playlist.getName(), e);
+        }
+    }
+
+    @Value
+    private static class CoverUpload {
+        Playlist playlist;
+        CoverImage coverImage;
+    }
+
+    @Value
+    private static class EncodedCover {
+        CoverUpload upload;
+        String base64;
+    }
+}
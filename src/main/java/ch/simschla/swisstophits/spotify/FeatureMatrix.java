@@ -0,0 +1,85 @@
+package ch.simschla.swisstophits.spotify;
+
+import java.util.Arrays;
+import lombok.NonNull;
+
+/**
+ * Feature values of all candidates of a song, stored column by column (one primitive array per {@link SongFeature},
+ * one row per candidate). Totals are computed as dot product of a row with the weight vector, column after column, so
+ * the inner loops run over contiguous arrays and nothing is allocated unless the matrix needs to grow.
+ */
+final class FeatureMatrix {
+
+    private static final int INITIAL_CAPACITY = 32;
+
+    private final double[][] columns = new double[SongFeature.COUNT][INITIAL_CAPACITY];
+
+    private boolean[] blocked = new boolean[INITIAL_CAPACITY];
+
+    private double[] totals = new double[INITIAL_CAPACITY];
+
+    private int rows = 0;
+
+    int addRow() {
+        if (rows == totals.length) {
+            int capacity = totals.length * 2;
+            for (int feature = 0; feature < columns.length; feature++) {
+                columns[feature] = Arrays.copyOf(columns[feature], capacity);
+            }
+            blocked = Arrays.copyOf(blocked, capacity);
+            totals = Arrays.copyOf(totals, capacity);
+        }
+        return rows++;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    void set(int row, @NonNull SongFeature feature, double value) {
+        columns[feature.ordinal()][row] = value;
+    }
+
+    double get(int row, @NonNull SongFeature feature) {
+        return columns[feature.ordinal()][row];
+    }
+
+    void setBlocked(int row, boolean isBlocked) {
+        blocked[row] = isBlocked;
+    }
+
+    boolean isBlocked(int row) {
+        return blocked[row];
+    }
+
+    void computeTotals(double[] weights) {
+        Arrays.fill(totals, 0, rows, 0d);
+        for (int feature = 0; feature < columns.length; feature++) {
+            final double[] column = columns[feature];
+            final double weight = weights[feature];
+            for (int row = 0; row < rows; row++) {
+                totals[row] += column[row] * weight;
+            }
+        }
+        for (int row = 0; row < rows; row++) {
+            if (blocked[row]) {
+                totals[row] = Double.MIN_VALUE;
+            }
+        }
+    }
+
+    double total(int row) {
+        return totals[row];
+    }
+
+    /**
+     * @return the weighted value per feature of the given row, indexed by {@link SongFeature#ordinal()}
+     */
+    double[] weightedRow(int row, double[] weights) {
+        double[] weighted = new double[columns.length];
+        for (int feature = 0; feature < columns.length; feature++) {
+            weighted[feature] = columns[feature][row] * weights[feature];
+        }
+        return weighted;
+    }
+}
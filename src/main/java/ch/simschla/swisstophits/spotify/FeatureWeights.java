@@ -0,0 +1,119 @@
+package ch.simschla.swisstophits.spotify;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Properties;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The weight per {@link SongFeature} and the acceptance threshold, read from {@code matcher-weights.properties} (or
+ * {@code -DmatcherWeights}) if present. Values missing in the file keep their default.
+ */
+final class FeatureWeights {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FeatureWeights.class);
+
+    private static final Path WEIGHTS_PATH =
+            Paths.get(System.getProperty("matcherWeights", "matcher-weights.properties"));
+
+    private static final String ACCEPTANCE_THRESHOLD = "acceptanceThreshold";
+
+    // was 22 before the fuzzy features, which add up to 6 points for close strings
+    private static final double DEFAULT_ACCEPTANCE_THRESHOLD = 25d;
+
+    private static volatile FeatureWeights current = null;
+
+    private final double[] weights;
+
+    private final double acceptanceThreshold;
+
+    private FeatureWeights(double[] weights, double acceptanceThreshold) {
+        this.weights = weights;
+        this.acceptanceThreshold = acceptanceThreshold;
+    }
+
+    double weight(@NonNull SongFeature feature) {
+        return weights[feature.ordinal()];
+    }
+
+    /**
+     * The weights indexed by {@link SongFeature#ordinal()}. Must not be modified.
+     */
+    double[] vector() {
+        return weights;
+    }
+
+    /**
+     * @return the points from which on a candidate is accepted, depends on the weights
+     */
+    double acceptanceThreshold() {
+        return acceptanceThreshold;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(weights) + ", accepted from " + acceptanceThreshold;
+    }
+
+    // ---- create
+
+    static FeatureWeights defaults() {
+        double[] weights = new double[SongFeature.COUNT];
+        for (SongFeature feature : SongFeature.values()) {
+            weights[feature.ordinal()] = feature.getDefaultWeight();
+        }
+        return new FeatureWeights(weights, DEFAULT_ACCEPTANCE_THRESHOLD);
+    }
+
+    static FeatureWeights of(@NonNull Properties properties) {
+        double[] weights = defaults().weights;
+        for (SongFeature feature : SongFeature.values()) {
+            weights[feature.ordinal()] = value(properties, feature.getKey(), weights[feature.ordinal()]);
+        }
+        return new FeatureWeights(weights, value(properties, ACCEPTANCE_THRESHOLD, DEFAULT_ACCEPTANCE_THRESHOLD));
+    }
+
+    private static double value(Properties properties, String key, double defaultValue) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new SpotifyException("Invalid value for " + key + ": " + value, e);
+        }
+    }
+
+    static FeatureWeights current() {
+        if (current == null) {
+            synchronized (FeatureWeights.class) {
+                if (current == null) {
+                    current = load();
+                }
+            }
+        }
+        return current;
+    }
+
+    private static FeatureWeights load() {
+        if (!Files.isRegularFile(WEIGHTS_PATH)) {
+            return defaults();
+        }
+        try (InputStream in = Files.newInputStream(WEIGHTS_PATH)) {
+            Properties properties = new Properties();
+            properties.load(in);
+            FeatureWeights weights = of(properties);
+            LOGGER.info("Loaded matcher weights from {}: {}", WEIGHTS_PATH, weights);
+            return weights;
+        } catch (IOException e) {
+            throw new SpotifyException(e);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ch.simschla.swisstophits.spotify;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * The accepted matches of one year, as written by {@link SongManager} to {@code matching-results/spotify/<year>.md}.
+ */
+@Value
+class GoldenMatchTable {
+
+    int chartYear;
+
+    @NonNull
+    Map<Integer, GoldenMatch> matchesByPosition;
+
+    @Value
+    static class GoldenMatch {
+
+        int position;
+
+        @NonNull
+        String chartInfo;
+
+        /**
+         * As described by {@link SongMatchingResultPrinter#describeTrack}, {@code -} for no match.
+         */
+        @NonNull
+        String match;
+
+        boolean isMatched() {
+            return !NO_MATCH.equals(match);
+        }
+    }
+
+    static final String NO_MATCH = SongMatchingResultPrinter.describeTrack(null);
+
+    static Path pathForYear(int chartYear) {
+        return SongManager.matchResultPath(chartYear);
+    }
+
+    static Optional<GoldenMatchTable> read(int chartYear) {
+        Path path = pathForYear(chartYear);
+        if (!Files.exists(path)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(parse(chartYear, Files.readString(path, StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            throw new SpotifyException(e);
+        }
+    }
+
+    static GoldenMatchTable parse(int chartYear, String markdown) {
+        Map<Integer, GoldenMatch> matchesByPosition = new TreeMap<>();
+        for (String line : markdown.split("\n")) {
+            line = line.strip();
+            if (!line.startsWith("|") || !line.endsWith("|")) {
+                continue;
+            }
+            String[] cells = line.substring(1, line.length() - 1).split("\\|", 3);
+            if (cells.length != 3 || !cells[0].strip().matches("\\d+")) {
+                continue; // header or separator
+            }
+            int position = Integer.parseInt(cells[0].strip());
+            matchesByPosition.put(position, new GoldenMatch(position, cells[1].strip(), cells[2].strip()));
+        }
+        return new GoldenMatchTable(chartYear, matchesByPosition);
+    }
+}
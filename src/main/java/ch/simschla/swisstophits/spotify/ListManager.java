@@ -50,38 +50,47 @@ public class ListManager {
     }
 
     public Optional<Playlist> fetchPlaylist(@NonNull Integer year) {
-        Pattern patternForYear = patternForYear(year);
+        return fetchPlaylist(nameForYear(year));
+    }
+
+    public Optional<Playlist> fetchPlaylist(@NonNull String name) {
         return getPlaylists().stream()
-                .filter(playlists -> patternForYear.matcher(playlists.getName()).matches())
+                .filter(playlist -> name.equals(playlist.getName()))
                 .findFirst();
     }
 
     public Playlist createPlaylist(@NonNull Integer year) {
+        return createPlaylist(nameForYear(year), descriptionForYear(year));
+    }
+
+    public Playlist createPlaylist(@NonNull String targetListName, @NonNull String description) {
         if (TopHitsGeneratorMode.INSTANCE.isDryRunEnabled()) {
-            LOGGER.info("DRY-RUN. Not creating playlist {}", year);
+            LOGGER.info("DRY-RUN. Not creating playlist {}", targetListName);
             return new Playlist.Builder()
                     .setId(UUID.randomUUID().toString())
-                    .setName(nameForYear(year))
+                    .setName(targetListName)
                     .build();
         }
-        final String targetListName = nameForYear(year);
-        if (fetchPlaylist(year).isPresent()) {
-            throw new SpotifyException(year + ": " + targetListName + " already exists!");
+        if (fetchPlaylist(targetListName).isPresent()) {
+            throw new SpotifyException(targetListName + " already exists!");
         }
 
         try {
-            Playlist playlist = this.spotifyApi
+            Playlist playlist = SpotifyCalls.execute("createPlaylist", targetListName, () -> this.spotifyApi
                     .createPlaylist(getCurrentUser().getId(), targetListName)
-                    .description(descriptionForYear(year))
+                    .description(description)
                     .collaborative(false)
                     .public_(true)
                     .build()
-                    .execute();
+                    .execute());
             getPlaylists().add(playlist); // remember for next time
             // grace period
             Thread.sleep(2000);
             return playlist;
-        } catch (IOException | SpotifyWebApiException | ParseException | InterruptedException e) {
+        } catch (IOException | SpotifyWebApiException | ParseException e) {
+            throw new SpotifyException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new SpotifyException(e);
         }
     }
@@ -93,12 +102,14 @@ public class ListManager {
             Paging<PlaylistSimplified> lastResult;
             int offset = 0;
             do {
-                lastResult = this.spotifyApi
-                        .getListOfCurrentUsersPlaylists()
-                        .limit(50)
-                        .offset(offset)
-                        .build()
-                        .execute();
+                final int currentOffset = offset;
+                lastResult = SpotifyCalls.execute(
+                        "getListOfCurrentUsersPlaylists", "playlists at " + currentOffset, () -> this.spotifyApi
+                                .getListOfCurrentUsersPlaylists()
+                                .limit(50)
+                                .offset(currentOffset)
+                                .build()
+                                .execute());
                 Arrays.stream(lastResult.getItems()).map(this::fetchPlaylist).forEachOrdered(playlists::add);
                 offset += fetchSize;
             } while (lastResult.getNext() != null);
@@ -110,11 +121,11 @@ public class ListManager {
 
     private Playlist fetchPlaylist(@NonNull PlaylistSimplified simplified) {
         try {
-            return this.spotifyApi
+            return SpotifyCalls.execute("getPlaylist", simplified.getName(), () -> this.spotifyApi
                     .getPlaylist(simplified.getId())
                     .market(CountryCode.CH)
                     .build()
-                    .execute();
+                    .execute());
         } catch (IOException | SpotifyWebApiException | ParseException e) {
             throw new SpotifyException(e);
         }
@@ -122,7 +133,10 @@ public class ListManager {
 
     private User fetchCurrentUser() {
         try {
-            return this.spotifyApi.getCurrentUsersProfile().build().execute();
+            return SpotifyCalls.execute("getCurrentUsersProfile", "current user", () -> this.spotifyApi
+                    .getCurrentUsersProfile()
+                    .build()
+                    .execute());
         } catch (SpotifyWebApiException | IOException | ParseException e) {
             throw new SpotifyException(e);
         }
@@ -132,10 +146,6 @@ public class ListManager {
         return TARGET_LIST_NAME_PATTERN.matcher(playlist.getName()).matches();
     }
 
-    private static Pattern patternForYear(@NonNull Integer year) {
-        return Pattern.compile("^\\Q" + TARGET_LIST_NAME_PREFIX + "\\E " + year + "$");
-    }
-
     public static String nameForYear(@NonNull Integer year) {
         return TARGET_LIST_NAME_PREFIX + " " + year;
     }
@@ -143,4 +153,11 @@ public class ListManager {
     private static String descriptionForYear(@NonNull Integer year) {
         return TARGET_LIST_DESCRIPTION_PREFIX + " " + year + ". " + TARGET_LIST_DESCRIPTION_SUFFIX;
     }
+
+    /**
+     * @return the description with the credits every playlist has
+     */
+    public static String descriptionWithCredits(@NonNull String description) {
+        return description + " " + TARGET_LIST_DESCRIPTION_SUFFIX;
+    }
 }
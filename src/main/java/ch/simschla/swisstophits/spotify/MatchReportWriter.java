@@ -0,0 +1,179 @@
+package ch.simschla.swisstophits.spotify;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import ch.simschla.swisstophits.model.ChartInfo;
+import ch.simschla.swisstophits.model.SongInfo;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the match results of a chart year in one pass over its songs: the markdown table to
+ * {@code matching-results/spotify/<year>.md} and one JSON record per chart position, with the tier, the score per
+ * feature and the track uri, to {@code <year>.jsonl} next to it.
+ *
+ * <p>Both are rendered to memory and hashed while rendered, a table of a year is a few kilobytes. A file is only
+ * written if its hash differs from the one of the file on disk, so unchanged years are not written and do not show up
+ * in git.
+ */
+class MatchReportWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchReportWriter.class);
+
+    private static final Path DIRECTORY = Paths.get("matching-results", "spotify");
+
+    private final ChartInfo chartInfo;
+
+    private final List<SongMatchResult> matches;
+
+    private final Path directory;
+
+    /**
+     * @param matches the matches in chart order, {@code null} for songs without a match
+     */
+    MatchReportWriter(@NonNull ChartInfo chartInfo, @NonNull List<SongMatchResult> matches) {
+        this(chartInfo, matches, DIRECTORY);
+    }
+
+    MatchReportWriter(@NonNull ChartInfo chartInfo, @NonNull List<SongMatchResult> matches, @NonNull Path directory) {
+        if (chartInfo.getChartSongs().size() != matches.size()) {
+            throw new SpotifyException("Chart of " + chartInfo.getChartYear() + " has "
+                    + chartInfo.getChartSongs().size() + " songs, but " + matches.size() + " match results are given.");
+        }
+        this.chartInfo = chartInfo;
+        this.matches = matches;
+        this.directory = directory;
+    }
+
+    static Path markdownPath(int chartYear) {
+        return markdownPath(DIRECTORY, chartYear);
+    }
+
+    static Path markdownPath(Path directory, int chartYear) {
+        return directory.resolve(chartYear + ".md");
+    }
+
+    static Path jsonLinesPath(Path directory, int chartYear) {
+        return directory.resolve(chartYear + ".jsonl");
+    }
+
+    /**
+     * @return whether the markdown table differs from the one written before
+     */
+    boolean write() {
+        int year = chartInfo.getChartYear();
+        HashingBuffer markdown = new HashingBuffer();
+        HashingBuffer jsonLines = new HashingBuffer();
+        try {
+            render(markdown.writer, jsonLines.writer);
+            markdown.writer.close();
+            jsonLines.writer.close();
+            boolean changed = writeIfChanged(markdownPath(directory, year), markdown);
+            writeIfChanged(jsonLinesPath(directory, year), jsonLines);
+            LOGGER.info("Match results for year {} {}.", year, changed ? "changed" : "did not change");
+            return changed;
+        } catch (IOException e) {
+            throw new SpotifyException(e);
+        }
+    }
+
+    private void render(Writer markdown, Writer jsonLines) throws IOException {
+        List<SongInfo> songs = chartInfo.getChartSongs();
+        // the table is padded to its widest cells, so the descriptions are needed before the first row
+        String[] songDescs = new String[songs.size()];
+        String[] matchDescs = new String[songs.size()];
+        for (int i = 0; i < songs.size(); i++) {
+            songDescs[i] = songs.get(i).toShortDesc();
+            matchDescs[i] = SongMatchingResultPrinter.describeTrack(
+                    matches.get(i) != null ? matches.get(i).getTrack() : null);
+        }
+        int songWidth = SongMatchingResultPrinter.maxLength(songDescs);
+        int matchWidth = SongMatchingResultPrinter.maxLength(matchDescs);
+
+        StringBuilder line = new StringBuilder("# Spotify matches for charts *")
+                .append(chartInfo.getChartYear())
+                .append("*\n\n");
+        SongMatchingResultPrinter.appendHeader(line, songWidth, matchWidth);
+        markdown.append(line);
+        for (int i = 0; i < songs.size(); i++) {
+            line.setLength(0);
+            SongMatchingResultPrinter.appendRow(line, i + 1, songDescs[i], songWidth, matchDescs[i], matchWidth);
+            markdown.append(line);
+            jsonLines.append(record(songs.get(i), matches.get(i)).toString()).append('\n');
+        }
+    }
+
+    private static JsonObject record(SongInfo songInfo, SongMatchResult match) {
+        JsonObject record = new JsonObject();
+        record.addProperty("year", songInfo.getChartYear());
+        record.addProperty("position", songInfo.getPosition());
+        record.addProperty("song", songInfo.getSong());
+        JsonArray artists = new JsonArray(songInfo.getArtists().size());
+        songInfo.getArtists().forEach(artists::add);
+        record.add("artists", artists);
+        record.addProperty("swissAct", songInfo.getSwissAct());
+        record.add("match", match != null ? match.toJson() : null);
+        return record;
+    }
+
+    // ---- writing
+
+    private static boolean writeIfChanged(Path path, HashingBuffer buffer) throws IOException {
+        if (Files.exists(path) && Arrays.equals(hash(path), buffer.digest.digest())) {
+            LOGGER.debug("{} did not change, not writing it.", path);
+            return false;
+        }
+        path.toAbsolutePath().getParent().toFile().mkdirs();
+        Files.write(path, buffer.bytes.toByteArray(), CREATE, WRITE, TRUNCATE_EXISTING);
+        return true;
+    }
+
+    private static byte[] hash(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                digest.update(chunk, 0, read);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new SpotifyException(e);
+        }
+    }
+
+    /**
+     * The rendered bytes, hashed as they are written.
+     */
+    private static final class HashingBuffer {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final MessageDigest digest = newDigest();
+        private final Writer writer =
+                new OutputStreamWriter(new DigestOutputStream(bytes, digest), StandardCharsets.UTF_8);
+    }
+}
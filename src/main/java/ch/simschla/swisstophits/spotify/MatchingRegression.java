@@ -0,0 +1,166 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.CandidateRecording.RecordedSong;
+import ch.simschla.swisstophits.spotify.GoldenMatchTable.GoldenMatch;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import lombok.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays the matcher against the recorded candidates of every year (see {@link CandidateRecording}) and compares
+ * the outcome with the accepted matches in {@code matching-results/spotify}. Does not call the spotify api.
+ *
+ * <p>Years to check can be restricted with {@code -Dyears=1990,1991}.
+ *
+ * <p>Candidates are not recorded by default. To record them, run {@code SwissTopHitsPlaylistsGenerator} with
+ * {@code -DrecordCandidates=true -Dyears=1995}. It searches the api as usual and writes
+ * {@code matching-candidates/spotify/1995.json.gz}. That directory is not committed. Recording works in a dry run
+ * (the default), so no playlist is touched. Then replay with {@code gradle matchingRegression -Dyears=1995}.
+ *
+ * <p>{@code MatchingRegressionTest} replays {@code candidates-1995.json.gz} from the test resources. That file is
+ * synthetic: it was built from the 1995 golden table, not searched. To pin real candidates, copy a recording there
+ * and update the expected precision, recall and changed positions of the test.
+ */
+public class MatchingRegression {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MatchingRegression.class);
+
+    @Value
+    static class YearResult {
+
+        int chartYear;
+
+        int songs;
+
+        // golden has a match
+        int expectedMatches;
+
+        // replay has a match
+        int actualMatches;
+
+        // replay has the same match as golden
+        int correctMatches;
+
+        List<Integer> changedPositions;
+
+        double precision() {
+            return actualMatches == 0 ? 1d : correctMatches / (double) actualMatches;
+        }
+
+        double recall() {
+            return expectedMatches == 0 ? 1d : correctMatches / (double) expectedMatches;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    "%d: %2d songs, precision %.3f, recall %.3f, changed positions %s",
+                    chartYear, songs, precision(), recall(), changedPositions);
+        }
+    }
+
+    static Optional<YearResult> replay(int chartYear) {
+        Optional<GoldenMatchTable> golden = GoldenMatchTable.read(chartYear);
+        Optional<CandidateRecording> recording = CandidateRecording.read(chartYear);
+        if (golden.isEmpty() || recording.isEmpty()) {
+            LOGGER.warn("No golden matches or recorded candidates for {}, skipping.", chartYear);
+            return Optional.empty();
+        }
+        return Optional.of(replay(golden.get(), recording.get()));
+    }
+
+    /**
+     * Chart entries which changed since the golden table was written are reported as changed positions, but counted
+     * neither for precision nor for recall.
+     */
+    static YearResult replay(GoldenMatchTable golden, CandidateRecording recording) {
+        int expectedMatches = 0;
+        int actualMatches = 0;
+        int correctMatches = 0;
+        List<Integer> changedPositions = new ArrayList<>();
+        for (RecordedSong song : recording.getSongs()) {
+            SongInfo songInfo = song.getSongInfo();
+            GoldenMatch expected = golden.getMatchesByPosition().get(songInfo.getPosition());
+            if (expected == null || !expected.getChartInfo().equals(songInfo.toShortDesc())) {
+                // chart entry itself changed, so the golden match does not apply
+                changedPositions.add(songInfo.getPosition());
+                continue;
+            }
+            String actual = SongMatchingResultPrinter.describeTrack(new SongMatcher(songInfo)
+                    .selectBestMatchingTrack(song.toSearchResult(recording.getPageSize()))
+                    .orElse(null));
+            boolean actualMatched = !GoldenMatchTable.NO_MATCH.equals(actual);
+
+            expectedMatches += expected.isMatched() ? 1 : 0;
+            actualMatches += actualMatched ? 1 : 0;
+            if (expected.getMatch().equals(actual)) {
+                correctMatches += actualMatched ? 1 : 0;
+            } else {
+                changedPositions.add(songInfo.getPosition());
+            }
+        }
+        return new YearResult(
+                golden.getChartYear(),
+                recording.getSongs().size(),
+                expectedMatches,
+                actualMatches,
+                correctMatches,
+                changedPositions);
+    }
+
+    private static int[] yearsToCheck() throws IOException {
+        String specificYears = System.getProperty("years");
+        if (specificYears != null) {
+            return Arrays.stream(specificYears.split(","))
+                    .map(String::trim)
+                    .filter(Predicate.not(String::isEmpty))
+                    .mapToInt(Integer::parseInt)
+                    .toArray();
+        }
+        Path goldenDir = GoldenMatchTable.pathForYear(0).getParent();
+        try (Stream<Path> files = Files.list(goldenDir)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.matches("\\d+\\.md"))
+                    .mapToInt(name -> Integer.parseInt(name.substring(0, name.length() - ".md".length())))
+                    .sorted()
+                    .toArray();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        List<YearResult> results = Arrays.stream(yearsToCheck())
+                .parallel()
+                .mapToObj(MatchingRegression::replay)
+                .flatMap(Optional::stream)
+                .toList();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        int expected = results.stream().mapToInt(YearResult::getExpectedMatches).sum();
+        int actual = results.stream().mapToInt(YearResult::getActualMatches).sum();
+        int correct = results.stream().mapToInt(YearResult::getCorrectMatches).sum();
+        int changed = results.stream()
+                .mapToInt(result -> result.getChangedPositions().size())
+                .sum();
+        StringBuilder report = new StringBuilder();
+        results.forEach(result -> report.append(result).append('\n'));
+        report.append(String.format(
+                "Total: %d years, precision %.3f, recall %.3f, %d changed positions, %d ms",
+                results.size(),
+                actual == 0 ? 1d : correct / (double) actual,
+                expected == 0 ? 1d : correct / (double) expected,
+                changed,
+                elapsedMs));
+        LOGGER.info("Matching regression:\n{}", report);
+    }
+}
@@ -0,0 +1,134 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.SongSearchResultProvider.SongMatchPriority;
+import com.neovisionaries.i18n.CountryCode;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Getter;
+import lombok.NonNull;
+import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.NotFoundException;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+/**
+ * A track search whose result pages are only fetched on demand. Nothing is fetched before the first call to
+ * {@link #firstPage()}.
+ */
+class PagedTrackSearch implements TrackSearch {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PagedTrackSearch.class);
+
+    // spotify does not allow to page beyond this offset
+    private static final int MAX_OFFSET = 1000;
+
+    @NonNull
+    private final SpotifyApi spotifyApi;
+
+    @NonNull
+    @Getter
+    private final SongMatchPriority priority;
+
+    @NonNull
+    @Getter
+    private final String searchString;
+
+    @NonNull
+    private final SongInfo songInfo;
+
+    private final int pageSize;
+
+    private final int maxPages;
+
+    private final List<TrackCandidate> tracks = new ArrayList<>();
+
+    private int loadedPages = 0;
+
+    private boolean exhausted = false;
+
+    PagedTrackSearch(
+            @NonNull SpotifyApi spotifyApi,
+            @NonNull SongMatchPriority priority,
+            @NonNull String searchString,
+            @NonNull SongInfo songInfo,
+            int pageSize,
+            int maxPages) {
+        this.spotifyApi = spotifyApi;
+        this.priority = priority;
+        this.searchString = searchString;
+        this.songInfo = songInfo;
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+    }
+
+    @Override
+    public synchronized List<TrackCandidate> firstPage() {
+        if (loadedPages == 0 && !exhausted) {
+            fetchNextPage();
+        }
+        return loadedTracks();
+    }
+
+    @Override
+    public synchronized boolean hasMorePages() {
+        return !exhausted && loadedPages < maxPages;
+    }
+
+    @Override
+    public synchronized List<TrackCandidate> loadNextPage() {
+        if (hasMorePages()) {
+            fetchNextPage();
+        }
+        return loadedTracks();
+    }
+
+    @Override
+    public synchronized boolean isStarted() {
+        return loadedPages > 0 || exhausted;
+    }
+
+    @Override
+    public synchronized List<TrackCandidate> loadedTracks() {
+        return List.copyOf(tracks);
+    }
+
+    private void fetchNextPage() {
+        final int offset = loadedPages * pageSize;
+        LOGGER.info(
+                "({}) Searching with '{}' for {} (page {})",
+                songInfo.getPosition(),
+                searchString,
+                songInfo.toShortDesc(),
+                loadedPages + 1);
+        try {
+            Paging<Track> trackPaging = SpotifyCalls.execute("search", "'" + searchString + "'", () -> this.spotifyApi
+                    .searchTracks(searchString)
+                    .market(CountryCode.CH)
+                    .limit(pageSize)
+                    .offset(offset)
+                    .build()
+                    .execute());
+            Arrays.stream(trackPaging.getItems()).map(TrackCandidate::of).forEach(tracks::add);
+            loadedPages++;
+            if (trackPaging.getNext() == null || offset + pageSize >= MAX_OFFSET) {
+                exhausted = true;
+            }
+        } catch (NotFoundException e) {
+            exhausted = true;
+        } catch (IOException | SpotifyWebApiException | ParseException e) {
+            throw new SpotifyException(e);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return searchString + " (" + loadedPages + " pages): " + tracks;
+    }
+}
@@ -0,0 +1,61 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.spotify.SongSearchResultProvider.SongMatchPriority;
+import java.util.List;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Hands out candidates known up front in pages. Recorded candidates are handed out in the page size they were fetched
+ * with, so the matcher sees them exactly as it did during the live search.
+ */
+class RecordedTrackSearch implements TrackSearch {
+
+    @NonNull
+    @Getter
+    private final SongMatchPriority priority;
+
+    @NonNull
+    private final List<TrackCandidate> tracks;
+
+    private final int pageSize;
+
+    private int loadedPages = 0;
+
+    RecordedTrackSearch(@NonNull SongMatchPriority priority, @NonNull List<TrackCandidate> tracks, int pageSize) {
+        this.priority = priority;
+        this.tracks = List.copyOf(tracks);
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    @Override
+    public synchronized List<TrackCandidate> firstPage() {
+        if (loadedPages == 0) {
+            loadedPages++;
+        }
+        return loadedTracks();
+    }
+
+    @Override
+    public synchronized boolean hasMorePages() {
+        return loadedPages * pageSize < tracks.size();
+    }
+
+    @Override
+    public synchronized List<TrackCandidate> loadNextPage() {
+        if (hasMorePages()) {
+            loadedPages++;
+        }
+        return loadedTracks();
+    }
+
+    @Override
+    public synchronized boolean isStarted() {
+        return loadedPages > 0;
+    }
+
+    @Override
+    public synchronized List<TrackCandidate> loadedTracks() {
+        return tracks.subList(0, Math.min(tracks.size(), loadedPages * pageSize));
+    }
+}
@@ -0,0 +1,79 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.metrics.RunProgress;
+import ch.simschla.swisstophits.model.ChartInfo;
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.CandidateRecording.RecordedSong;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Matches the songs of a year again from their recorded candidates, without calling the spotify api. Meant for
+ * iterating on the matching rules and weights.
+ */
+public class Rematcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Rematcher.class);
+
+    @NonNull
+    private final CandidateRecording recording;
+
+    private Rematcher(@NonNull CandidateRecording recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * @return the chart as it was scraped when the candidates were recorded
+     */
+    public ChartInfo getScrapedChartInfo() {
+        return recording.scrapedChartInfo();
+    }
+
+    /**
+     * Matches the songs of the (normalized) chart against the candidates recorded for the same position and writes
+     * the match results.
+     *
+     * <p>Whether the playlist needs an update is decided against the playlist itself, not against the match results
+     * on disk, since these are also written by rematches which do not sync.
+     *
+     * @return the matched tracks in chart order ({@code null} for songs without a match)
+     */
+    public List<TrackCandidate> rematch(@NonNull ChartInfo chartInfo) {
+        List<RecordedSong> songs = recording.getSongs();
+        if (chartInfo.getChartSongs().size() != songs.size()) {
+            throw new SpotifyException("Chart of " + chartInfo.getChartYear() + " has "
+                    + chartInfo.getChartSongs().size() + " songs, but candidates are recorded for " + songs.size());
+        }
+        List<SongMatchResult> matches = new ArrayList<>(songs.size());
+        for (int i = 0; i < songs.size(); i++) {
+            SongInfo songInfo = chartInfo.getChartSongs().get(i);
+            RecordedSong recordedSong = songs.get(i);
+            if (!songInfo.toShortDesc().equals(recordedSong.getSongInfo().toShortDesc())) {
+                LOGGER.info(
+                        "{} is now normalized to {}, a new search might find other candidates.",
+                        recordedSong.getSongInfo().toShortDesc(),
+                        songInfo.toShortDesc());
+            }
+            matches.add(new SongMatcher(songInfo)
+                    .selectBestRating(recordedSong.toSearchResult(recording.getPageSize()))
+                    .map(SongMatchResult::of)
+                    .orElse(null));
+            RunProgress.INSTANCE.songProcessed(chartInfo.getChartYear());
+        }
+        if (!SongManager.printMatchResult(chartInfo, matches)) {
+            LOGGER.info("Match results for {} did not change.", chartInfo.getChartYear());
+        }
+        return SongManager.tracks(matches);
+    }
+
+    /**
+     * @return the rematcher for the year, if candidates have been recorded for it
+     */
+    public static Optional<Rematcher> forYear(int chartYear) {
+        return CandidateRecording.read(chartYear).map(Rematcher::new);
+    }
+}
@@ -0,0 +1,43 @@
+package ch.simschla.swisstophits.spotify;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The features a candidate track is rated by. Feature values are within {@code [minValue, maxValue]}, the weight is the
+ * number of points a full match is worth.
+ */
+@RequiredArgsConstructor
+@Getter(AccessLevel.PACKAGE)
+enum SongFeature {
+    // sequential matches are boosted, so there is no fixed upper bound. always evaluated first, though.
+    SONG_NAME("songName", 10d, -0.5d, Double.POSITIVE_INFINITY),
+    ARTIST_NAMES("artistNames", 10d, -0.5d, 1d),
+    // catch typos, transliterations and punctuation variants the word based features miss
+    FUZZY_SONG_NAME("fuzzySongName", 3d, 0d, 1d),
+    FUZZY_ARTIST_NAMES("fuzzyArtistNames", 3d, 0d, 1d),
+    ARTIST_COUNT("artistCount", 2d, 0d, 1d),
+    REMIX("remix", -2d, 0d, 1d),
+    LIVE("live", -2d, 0d, 1d),
+    RADIO_VERSION("radioVersion", 2d, 0d, 1d),
+    POPULARITY("popularity", 5d, 0d, 1d),
+    RANKING("ranking", 5d, 0d, 1d),
+    RELEASE_DATE("releaseDate", 2d, -0.5d, 1d),
+    DURATION("duration", 2d, 0d, 1d),
+    TRACK_NUMBER("trackNumber", 2d, 0d, 1d);
+
+    static final int COUNT = values().length;
+
+    private final String key;
+
+    private final double defaultWeight;
+
+    private final double minValue;
+
+    private final double maxValue;
+
+    double maxContribution(double weight) {
+        return Math.max(weight * minValue, weight * maxValue);
+    }
+}
@@ -0,0 +1,41 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
+import ch.simschla.swisstophits.model.SongInfo;
+import java.util.Optional;
+import lombok.NonNull;
+import se.michaelthelin.spotify.SpotifyApi;
+
+/**
+ * Searches and matches single songs, e.g. on request of other tools. The tracks found are added to the
+ * {@link TrackIndex}, so songs looked up before are matched without searching.
+ */
+public class SongLookup {
+
+    @NonNull
+    private final SongSearcher searcher;
+
+    public SongLookup(@NonNull SpotifyApi spotifyApi) {
+        this.searcher = new SongSearcher(spotifyApi);
+    }
+
+    /**
+     * @param songInfo the (normalized) song
+     */
+    public Optional<SongMatchResult> lookup(@NonNull SongInfo songInfo) {
+        SongSearchResultProvider searchResult = searcher.search(songInfo);
+        Optional<SongMatchResult> match =
+                new SongMatcher(songInfo).selectBestRating(searchResult).map(SongMatchResult::of);
+        if (TopHitsGeneratorMode.INSTANCE.isTrackIndexEnabled()) {
+            TrackIndex.countLookup(match);
+            searchResult.loadedTracks().values().forEach(TrackIndex.current()::addAll);
+        }
+        return match;
+    }
+
+    public void saveTrackIndex() {
+        if (TopHitsGeneratorMode.INSTANCE.isTrackIndexEnabled()) {
+            TrackIndex.current().save();
+        }
+    }
+}
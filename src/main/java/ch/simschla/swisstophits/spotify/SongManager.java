@@ -1,25 +1,25 @@
 package ch.simschla.swisstophits.spotify;
 
-import static java.nio.file.StandardOpenOption.CREATE;
-import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
-import static java.nio.file.StandardOpenOption.WRITE;
-
+import ch.simschla.swisstophits.metrics.RunProgress;
 import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
 import ch.simschla.swisstophits.model.ChartInfo;
 import ch.simschla.swisstophits.model.SongInfo;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import lombok.NonNull;
 import org.apache.hc.core5.http.ParseException;
 import org.slf4j.Logger;
@@ -31,14 +31,11 @@ import se.michaelthelin.spotify.model_objects.special.SnapshotResult;
 import se.michaelthelin.spotify.model_objects.specification.Paging;
 import se.michaelthelin.spotify.model_objects.specification.Playlist;
 import se.michaelthelin.spotify.model_objects.specification.PlaylistTrack;
-import se.michaelthelin.spotify.model_objects.specification.Track;
 
 public class SongManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SongManager.class);
 
-    private static final SongMatchingResultPrinter MATCHING_RESULT_PRINTER = new SongMatchingResultPrinter();
-
     private final SpotifyApi spotifyApi;
     private final Playlist playlist;
 
@@ -47,7 +44,13 @@ public class SongManager {
         this.playlist = playlist;
     }
 
-    public void setTrackList(ChartInfo chartInfo, boolean forceRecreate) {
+    /**
+     * Searches the songs of the (normalized) chart and replaces the tracks of the playlist.
+     *
+     * @param scrapedChartInfo the chart as scraped, only used for recording the candidates
+     * @return the matched tracks in chart order ({@code null} for songs without a match), empty if not searched
+     */
+    public List<TrackCandidate> setTrackList(ChartInfo scrapedChartInfo, ChartInfo chartInfo, boolean forceRecreate) {
         try {
             // current state
             List<PlaylistTrack> allCurrentTracks = fetchAllTracks();
@@ -55,78 +58,186 @@ public class SongManager {
 
             if (allCurrentTracks.size() == chartInfo.getChartSongs().size() && !forceRecreate) {
                 LOGGER.info("Playlist up to date, skipping.");
-                return;
+                return List.of();
             }
 
             // search
             LOGGER.info(
                     "Searching {} songs for year {}.", chartInfo.getChartSongs().size(), chartInfo.getChartYear());
-            List<Track> foundTracks = new ArrayList<>(chartInfo.getChartSongs().size());
-            searchChartSongs(chartInfo, foundTracks);
+            RunProgress.INSTANCE.stage(chartInfo.getChartYear(), RunProgress.Stage.MATCHING);
+            List<SongMatchResult> matches = searchChartSongs(scrapedChartInfo, chartInfo);
+            RunProgress.INSTANCE.stage(chartInfo.getChartYear(), RunProgress.Stage.MATCHED);
 
             // set to playlist
-            if (foundTracks.isEmpty()) {
+            if (matches.isEmpty()) {
                 LOGGER.error("Could not find any tracks for chart year {}", chartInfo.getChartYear());
-                return;
+                return List.of();
             }
-            printMatchResult(chartInfo, foundTracks);
+            printMatchResult(chartInfo, matches);
 
-            // delete before recreating
-            if (!allCurrentTracks.isEmpty()) {
-                deleteCurrentTracks(allCurrentTracks);
-            }
+            List<TrackCandidate> foundTracks = tracks(matches);
+            replaceTracks(allCurrentTracks, foundTracks);
+            return foundTracks;
+        } catch (IOException | SpotifyWebApiException | ParseException e) {
+            throw new SpotifyException(e);
+        }
+    }
 
-            List<Track> tracksToSave =
-                    foundTracks.stream().filter(Objects::nonNull).toList();
-            setToPlaylist(tracksToSave);
+    /**
+     * Replaces the tracks of the playlist with already matched ones, e.g. by the {@link Rematcher}, unless the
+     * playlist already holds them in that order.
+     *
+     * @param foundTracks the matched tracks in chart order, {@code null} for songs without a match
+     * @return whether the playlist has been changed
+     */
+    public boolean replaceTrackList(List<TrackCandidate> foundTracks) {
+        try {
+            List<PlaylistTrack> allCurrentTracks = fetchAllTracks();
+            List<String> currentUris = allCurrentTracks.stream()
+                    .map(track -> track.getTrack().getUri())
+                    .toList();
+            List<String> foundUris = foundTracks.stream()
+                    .filter(Objects::nonNull)
+                    .map(TrackCandidate::getUri)
+                    .toList();
+            if (!allCurrentTracks.isEmpty() && currentUris.equals(foundUris)) {
+                LOGGER.info("Playlist {} already has the matched tracks, skipping.", playlist.getName());
+                return false;
+            }
+            replaceTracks(allCurrentTracks, foundTracks);
+            return true;
         } catch (IOException | SpotifyWebApiException | ParseException e) {
             throw new SpotifyException(e);
         }
     }
 
-    private void searchChartSongs(ChartInfo chartInfo, List<Track> foundTracks) {
-        SongSearcher searcher = new SongSearcher(this.spotifyApi);
-        for (SongInfo chartSong : chartInfo.getChartSongs()) {
-            LOGGER.debug("Searching for song: {}", chartSong);
+    private void replaceTracks(List<PlaylistTrack> allCurrentTracks, List<TrackCandidate> foundTracks)
+            throws IOException, ParseException, SpotifyWebApiException {
+        // delete before recreating
+        if (!allCurrentTracks.isEmpty()) {
+            deleteCurrentTracks(allCurrentTracks);
+        }
+
+        List<TrackCandidate> tracksToSave = foundTracks.stream().filter(Objects::nonNull).toList();
+        setToPlaylist(tracksToSave);
+    }
 
-            SongSearchResultProvider tracks = searcher.search(chartSong);
+    /**
+     * Searches and matches all songs concurrently.
+     *
+     * @return the matches in chart order, {@code null} for songs without a match
+     */
+    private List<SongMatchResult> searchChartSongs(ChartInfo scrapedChartInfo, ChartInfo chartInfo) {
+        SongSearcher searcher = new SongSearcher(this.spotifyApi);
+        List<SongInfo> chartSongs = chartInfo.getChartSongs();
+        SongMatchResult[] matches = new SongMatchResult[chartSongs.size()];
+        SongSearchResultProvider[] searchResults = new SongSearchResultProvider[chartSongs.size()];
+        if (chartSongs.isEmpty()) {
+            return List.of();
+        }
 
-            final Optional<Track> track = selectTrack(chartSong, tracks);
-            if (track.isEmpty()) {
-                LOGGER.warn("Could not select matching tracking for {}. Available: {}", chartSong, tracks);
-                foundTracks.add(null);
-                continue;
+        int threads = Math.max(1, Math.min(TopHitsGeneratorMode.INSTANCE.getSearchThreads(), chartSongs.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> searches = new ArrayList<>(chartSongs.size());
+            for (int i = 0; i < chartSongs.size(); i++) {
+                final int index = i;
+                searches.add(executor.submit(() -> {
+                    LOGGER.debug("Searching for song: {}", chartSongs.get(index));
+                    searchResults[index] = searcher.search(chartSongs.get(index));
+                    matches[index] = selectChartSongMatch(chartSongs.get(index), searchResults[index]);
+                    RunProgress.INSTANCE.songProcessed(chartInfo.getChartYear());
+                    if (TopHitsGeneratorMode.INSTANCE.isTrackIndexEnabled()) {
+                        searchResults[index].loadedTracks().values().forEach(TrackIndex.current()::addAll);
+                    }
+                }));
+            }
+            for (Future<?> search : searches) {
+                search.get();
             }
-            LOGGER.debug("Using {} for {}.", track.get(), chartSong);
-            foundTracks.add(track.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SpotifyException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SpotifyException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        if (TopHitsGeneratorMode.INSTANCE.isTrackIndexEnabled()) {
+            TrackIndex.current().save();
         }
+        if (TopHitsGeneratorMode.INSTANCE.isCandidateRecordingEnabled()) {
+            recordCandidates(scrapedChartInfo, chartInfo, searchResults);
+        }
+        return Arrays.asList(matches);
     }
 
-    private void printMatchResult(ChartInfo chartInfo, List<Track> tracks) {
-        String table = MATCHING_RESULT_PRINTER.printMatchTable(chartInfo, tracks);
-        LOGGER.info("Match Results for year {}:\n{}", chartInfo.getChartYear(), table);
-        writeToFile(chartInfo, table);
+    private SongMatchResult selectChartSongMatch(SongInfo chartSong, SongSearchResultProvider tracks) {
+        final Optional<SongMatchResult> match = selectMatch(chartSong, tracks);
+        if (TopHitsGeneratorMode.INSTANCE.isTrackIndexEnabled()) {
+            TrackIndex.countLookup(match);
+        }
+        if (match.isEmpty()) {
+            LOGGER.warn("Could not select matching tracking for {}. Available: {}", chartSong, tracks);
+            return null;
+        }
+        LOGGER.debug("Using {} for {}.", match.get().getTrack(), chartSong);
+        return match.get();
     }
 
-    private void writeToFile(ChartInfo chartInfo, String table) {
-        String print = "# Spotify matches for charts *" + chartInfo.getChartYear() + "*\n\n" + table;
-        Path path = Paths.get("matching-results", "spotify", chartInfo.getChartYear() + ".md");
-        path.toFile().getParentFile().mkdirs();
-        try {
-            Files.writeString(path, print, CREATE, WRITE, TRUNCATE_EXISTING);
-        } catch (IOException e) {
-            throw new SpotifyException(e);
+    private void recordCandidates(
+            ChartInfo scrapedChartInfo, ChartInfo chartInfo, SongSearchResultProvider[] searchResults) {
+        List<CandidateRecording.RecordedSong> songs = new ArrayList<>(searchResults.length);
+        for (int i = 0; i < searchResults.length; i++) {
+            songs.add(new CandidateRecording.RecordedSong(
+                    scrapedChartInfo.getChartSongs().get(i),
+                    chartInfo.getChartSongs().get(i),
+                    searchResults[i].loadedTracks()));
         }
+        new CandidateRecording(chartInfo.getChartYear(), TopHitsGeneratorMode.INSTANCE.getSearchPageSize(), songs)
+                .write();
+    }
+
+    /**
+     * Writes the match results as markdown table and as JSON lines, see {@link MatchReportWriter}.
+     *
+     * @param matches the matches in chart order, {@code null} for songs without a match
+     * @return whether the match results differ from the ones written before
+     */
+    static boolean printMatchResult(ChartInfo chartInfo, List<SongMatchResult> matches) {
+        return new MatchReportWriter(chartInfo, matches).write();
+    }
+
+    static Path matchResultPath(int chartYear) {
+        return MatchReportWriter.markdownPath(chartYear);
+    }
+
+    /**
+     * @return the short descriptions of the songs in the match results written before, by position
+     */
+    public static Optional<SortedMap<Integer, String>> matchedSongDescs(int chartYear) {
+        return GoldenMatchTable.read(chartYear).map(table -> {
+            SortedMap<Integer, String> songDescs = new TreeMap<>();
+            table.getMatchesByPosition().forEach((position, match) -> songDescs.put(position, match.getChartInfo()));
+            return songDescs;
+        });
+    }
+
+    /**
+     * @return the tracks of the matches, {@code null} for songs without a match
+     */
+    static List<TrackCandidate> tracks(List<SongMatchResult> matches) {
+        return matches.stream()
+                .map(match -> match != null ? match.getTrack() : null)
+                .toList();
     }
 
     @NonNull
-    private Optional<Track> selectTrack(SongInfo chartSong, SongSearchResultProvider tracks) {
-        SongMatcher songMatcher = new SongMatcher(chartSong);
-        return tracks.resultStream()
-                .map(songMatcher::selectBestMatchingTrack)
-                .filter(Optional::isPresent)
-                .map(Optional::get)
-                .findFirst();
+    private Optional<SongMatchResult> selectMatch(SongInfo chartSong, SongSearchResultProvider tracks) {
+        return new SongMatcher(chartSong).selectBestRating(tracks).map(SongMatchResult::of);
     }
 
     private List<PlaylistTrack> fetchAllTracks() throws IOException, ParseException, SpotifyWebApiException {
@@ -140,12 +251,13 @@ public class SongManager {
             final List<PlaylistTrack> tracks = new ArrayList<>(fetchSize);
             Paging<PlaylistTrack> cur;
             do {
-                cur = spotifyApi
+                final int currentOffset = offset;
+                cur = SpotifyCalls.execute("getPlaylistsItems", playlist.getName(), () -> spotifyApi
                         .getPlaylistsItems(playlist.getId())
                         .limit(50)
-                        .offset(offset)
+                        .offset(currentOffset)
                         .build()
-                        .execute();
+                        .execute());
                 tracks.addAll(Arrays.asList(cur.getItems()));
                 offset += fetchSize;
             } while (cur.getNext() != null);
@@ -173,26 +285,31 @@ public class SongManager {
                         return jsonObject;
                     })
                     .forEach(tracksArray::add);
-            SnapshotResult result = this.spotifyApi
-                    .removeItemsFromPlaylist(playlist.getId(), tracksArray)
-                    .build()
-                    .execute();
+            SnapshotResult result = SpotifyCalls.execute(
+                    "removeItemsFromPlaylist", playlist.getName(), () -> this.spotifyApi
+                            .removeItemsFromPlaylist(playlist.getId(), tracksArray)
+                            .build()
+                            .execute());
         });
     }
 
-    private void setToPlaylist(List<Track> tracks) throws IOException, ParseException, SpotifyWebApiException {
+    private void setToPlaylist(List<TrackCandidate> tracks) throws IOException, ParseException, SpotifyWebApiException {
         if (TopHitsGeneratorMode.INSTANCE.isDryRunEnabled()) {
             LOGGER.info("DRY-RUN. Not saving to playlist {}", playlist.getName());
             return;
         }
         LOGGER.info("Saving {} tracks to playlist {}", tracks.size(), playlist.getName());
-        AtomicInteger offset = new AtomicInteger(0);
-        JsonArray jsonArray = new JsonArray(tracks.size());
-        for (Track track : tracks) {
-            jsonArray.add(track.getUri());
-        }
-
-        this.spotifyApi.addItemsToPlaylist(playlist.getId(), jsonArray).build().execute();
+        // at most 100 items per request, appended in order
+        inChunks(tracks, 100, curList -> {
+            JsonArray jsonArray = new JsonArray(curList.size());
+            for (TrackCandidate track : curList) {
+                jsonArray.add(track.getUri());
+            }
+            SpotifyCalls.execute("addItemsToPlaylist", playlist.getName(), () -> this.spotifyApi
+                    .addItemsToPlaylist(playlist.getId(), jsonArray)
+                    .build()
+                    .execute());
+        });
     }
 
     private static <T> void inChunks(List<T> elements, Integer chunkSize, ChunkConsumer<List<T>> chunkConsumer)
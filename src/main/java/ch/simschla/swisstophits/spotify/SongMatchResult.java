@@ -0,0 +1,56 @@
+package ch.simschla.swisstophits.spotify;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * The track matched for a song, with the tier it was found in and the weighted score per {@link SongFeature}.
+ */
+@Value
+public class SongMatchResult {
+
+    @NonNull
+    TrackCandidate track;
+
+    @NonNull
+    String tier;
+
+    double score;
+
+    @NonNull
+    Map<String, Double> featureScores;
+
+    /**
+     * @return the track with the tier, the score and the score per feature
+     */
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", track.getId());
+        json.addProperty("uri", track.getUri());
+        json.addProperty("name", track.getName());
+        JsonArray artists = new JsonArray();
+        track.getArtistNames().forEach(artists::add);
+        json.add("artists", artists);
+        json.addProperty("album", track.getAlbumName());
+        json.addProperty("releaseDate", track.getReleaseDate());
+        json.addProperty("tier", tier);
+        json.addProperty("score", score);
+        JsonObject features = new JsonObject();
+        featureScores.forEach(features::addProperty);
+        json.add("features", features);
+        return json;
+    }
+
+    static SongMatchResult of(SongRating rating) {
+        Map<String, Double> featureScores = new LinkedHashMap<>();
+        for (SongFeature feature : SongFeature.values()) {
+            featureScores.put(feature.getKey(), rating.getScore(feature));
+        }
+        return new SongMatchResult(
+                rating.getTrack(), rating.getPriority().name(), rating.getCalculatedScore(), featureScores);
+    }
+}
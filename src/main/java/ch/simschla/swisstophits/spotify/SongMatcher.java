@@ -2,61 +2,194 @@ package ch.simschla.swisstophits.spotify;
 
 import static java.util.function.Predicate.not;
 
+import ch.simschla.swisstophits.metrics.Metrics;
+import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
 import ch.simschla.swisstophits.model.SongInfo;
-import java.text.Normalizer;
+import ch.simschla.swisstophits.normalizer.SongInfoNormalizer;
+import ch.simschla.swisstophits.spotify.SongSearchResultProvider.SongMatchPriority;
+import ch.simschla.swisstophits.text.FuzzySimilarity;
+import ch.simschla.swisstophits.text.TextNormalizer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.NonNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import se.michaelthelin.spotify.model_objects.specification.Track;
 
 public class SongMatcher {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SongMatcher.class);
 
+    // below, strings are considered unrelated
+    private static final double MIN_SIGNATURE_SIMILARITY = 0.2d;
+    private static final double MIN_FUZZY_SIMILARITY = 0.8d;
+
     @NonNull
     private final SongInfo songToLookFor;
 
+    @NonNull
+    private final FeatureWeights weights;
+
+    // derived from the song to look for, so computed once instead of for every candidate
+    @Getter(lazy = true, value = AccessLevel.PRIVATE)
+    private final List<String> searchArtists = new SongInfoNormalizer().searchArtists(songToLookFor);
+
+    @Getter(lazy = true, value = AccessLevel.PRIVATE)
+    private final List<String> songToLookForTokens = selectTokens(songToLookFor.getSong());
+
+    @Getter(lazy = true, value = AccessLevel.PRIVATE)
+    private final List<String> songToLookForArtistWords = songToLookForArtists().toList();
+
+    @Getter(lazy = true, value = AccessLevel.PRIVATE)
+    private final String songToLookForArtistsJoined = String.join(" ", getSongToLookForArtistWords());
+
+    @Getter(lazy = true, value = AccessLevel.PRIVATE)
+    private final String simplifiedSongToLookFor = simplified(songToLookFor.getSong());
+
+    @Getter(lazy = true, value = AccessLevel.PRIVATE)
+    private final long songToLookForSignature = FuzzySimilarity.trigramSignature(getSimplifiedSongToLookFor());
+
+    @Getter(lazy = true, value = AccessLevel.PRIVATE)
+    private final List<String> simplifiedSongToLookForArtists =
+            getSearchArtists().stream().map(this::simplified).toList();
+
+    @Getter(lazy = true, value = AccessLevel.PRIVATE)
+    private final long[] songToLookForArtistSignatures = getSimplifiedSongToLookForArtists().stream()
+            .mapToLong(FuzzySimilarity::trigramSignature)
+            .toArray();
+
+    // the artists of the candidate being rated, reused across candidates; a matcher rates on one thread only
+    private String[] trackArtists = new String[4];
+
+    private long[] trackArtistSignatures = new long[4];
+
     public SongMatcher(@NonNull SongInfo songToLookFor) {
+        this(songToLookFor, FeatureWeights.current());
+    }
+
+    SongMatcher(@NonNull SongInfo songToLookFor, @NonNull FeatureWeights weights) {
         this.songToLookFor = songToLookFor;
+        this.weights = weights;
+    }
+
+    /**
+     * Walks through the tiers in order of priority and merges their tracks into one candidate pool, so every track is
+     * only rated once no matter in how many tiers it shows up. Within a tier, further pages are only pulled as long as
+     * no candidate reaches the acceptance threshold.
+     */
+    Optional<TrackCandidate> selectBestMatchingTrack(SongSearchResultProvider searchResult) {
+        return selectBestRating(searchResult).map(SongRating::getTrack);
+    }
+
+    /**
+     * Like {@link #selectBestMatchingTrack(SongSearchResultProvider)}, with the score per feature of the match.
+     */
+    Optional<SongRating> selectBestRating(SongSearchResultProvider searchResult) {
+        RatingCalculator ratingCalculator = new RatingCalculator();
+        Optional<SongRating> match = Optional.empty();
+        String matchingTier = "NONE";
+        Iterator<TrackSearch> searches = searchResult.searchStream().iterator();
+        while (match.isEmpty() && searches.hasNext()) {
+            TrackSearch search = searches.next();
+            List<TrackCandidate> tracks = search.firstPage();
+            match = addAndSelect(ratingCalculator, search.getPriority(), tracks);
+            while (match.isEmpty() && search.hasMorePages()) {
+                List<TrackCandidate> moreTracks = search.loadNextPage();
+                if (moreTracks.size() == tracks.size()) {
+                    break; // nothing new
+                }
+                tracks = moreTracks;
+                match = addAndSelect(ratingCalculator, search.getPriority(), tracks);
+            }
+            if (match.isPresent()) {
+                matchingTier = search.getPriority().name();
+            }
+        }
+        Metrics.INSTANCE.counter("song_matches_total", "tier", matchingTier).increment();
+        Metrics.INSTANCE.histogram("song_matching_cpu_seconds").observeNanos(ratingCalculator.cpuNanos);
+        return match;
+    }
+
+    /**
+     * Rates the tracks and selects the best one, the cpu time spent is added to the calculator. Searching is not
+     * included, since the searches only load their pages before.
+     */
+    private Optional<SongRating> addAndSelect(
+            RatingCalculator ratingCalculator, SongMatchPriority priority, List<TrackCandidate> tracks) {
+        long cpuStart = Metrics.currentThreadCpuNanos();
+        ratingCalculator.addTracks(priority, tracks);
+        Optional<SongRating> match = selectBestRating(ratingCalculator);
+        ratingCalculator.cpuNanos += Metrics.currentThreadCpuNanos() - cpuStart;
+        return match;
+    }
+
+    public Optional<TrackCandidate> selectBestMatchingTrack(List<TrackCandidate> tracks) {
+        RatingCalculator ratingCalculator = new RatingCalculator();
+        ratingCalculator.addTracks(SongMatchPriority.EXACT_MATCH, tracks);
+        return selectBestRating(ratingCalculator).map(SongRating::getTrack);
     }
 
-    public Optional<Track> selectBestMatchingTrack(List<Track> tracks) {
-        if (tracks.isEmpty()) {
+    /**
+     * All ratings with a score of at least {@code minVal}, best first, every candidate rated completely.
+     */
+    List<SongRating> sortedRatings(List<TrackCandidate> tracks, double minVal) {
+        RatingCalculator ratingCalculator = new RatingCalculator();
+        ratingCalculator.addTracks(SongMatchPriority.EXACT_MATCH, tracks);
+        return ratingCalculator.sortedRatings(minVal);
+    }
+
+    private Optional<SongRating> selectBestRating(RatingCalculator ratingCalculator) {
+        if (ratingCalculator.isEmpty()) {
             return Optional.empty();
         }
-        RatingCalculator ratingCalculator = new RatingCalculator(tracks);
-        List<SongRating> ratings = ratingCalculator.sortedRatings(22d);
-        if (ratings.isEmpty()) {
+        Optional<SongRating> rating = ratingCalculator.bestRating(weights.acceptanceThreshold());
+        if (TopHitsGeneratorMode.INSTANCE.isMatchVerificationEnabled()) {
+            verifyAgainstExhaustiveRating(ratingCalculator, rating);
+        }
+        if (rating.isEmpty()) {
             LOGGER.debug("--> no match in limit.");
             return Optional.empty();
         }
-        LOGGER.info("Found match for {}. Rating: {}", songToLookFor.toShortDesc(), ratings.get(0));
-        LOGGER.debug(
-                "--> First 5 were: {}",
-                ratingCalculator.sortedRatings(0d).stream()
-                        .limit(5)
-                        .map(Object::toString)
-                        .collect(Collectors.joining("\n\n")));
-        return Optional.of(ratings.get(0).getTrack());
+        LOGGER.info("Found match for {}. Rating: {}", songToLookFor.toShortDesc(), rating.get());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug(
+                    "--> First 5 were: {}",
+                    ratingCalculator.sortedRatings(0d).stream()
+                            .limit(5)
+                            .map(Object::toString)
+                            .collect(Collectors.joining("\n\n")));
+        }
+        return rating;
+    }
+
+    private void verifyAgainstExhaustiveRating(RatingCalculator ratingCalculator, Optional<SongRating> rating) {
+        List<SongRating> exhaustive = ratingCalculator.sortedRatings(weights.acceptanceThreshold());
+        Optional<TrackCandidate> expected = exhaustive.stream().findFirst().map(SongRating::getTrack);
+        Optional<TrackCandidate> actual = rating.map(SongRating::getTrack);
+        if (!expected.equals(actual)) {
+            LOGGER.error(
+                    "Bounded rating differs from exhaustive rating for {}: {} vs. {}",
+                    songToLookFor.toShortDesc(),
+                    rating,
+                    exhaustive.stream().findFirst());
+        }
     }
 
-    private boolean isBlocklisted(Track track) {
+    private boolean isBlocklisted(TrackCandidate track) {
         return matchesKaraoke(track) || isLive(track) || isInstrumental(track) /*|| isRemix(track)*/;
     }
 
-    private boolean matchesKaraoke(Track t) {
+    private boolean matchesKaraoke(TrackCandidate t) {
         if (simplified(songToLookFor.getSong()).contains("karaoke")) {
             return false;
         }
@@ -64,21 +197,19 @@ public class SongMatcher {
             return false;
         }
         return simplified(t.getName()).contains("karaoke")
-                || simplified(t.getAlbum().getName()).contains("karaoke")
-                || Arrays.stream(t.getArtists())
-                        .map(artist -> simplified(artist.getName()))
-                        .anyMatch(a -> a.contains("karaoke"));
+                || simplified(t.getAlbumName()).contains("karaoke")
+                || t.getArtistNames().stream().map(this::simplified).anyMatch(a -> a.contains("karaoke"));
     }
 
-    private boolean isInstrumental(Track t) {
+    private boolean isInstrumental(TrackCandidate t) {
         if (simplified(songToLookFor.getSong()).contains("instrumental")) {
             return false;
         }
         return simplified(t.getName()).contains("instrumental")
-                || simplified(t.getAlbum().getName()).contains("instrumental");
+                || simplified(t.getAlbumName()).contains("instrumental");
     }
 
-    private boolean isRemix(Track track) {
+    private boolean isRemix(TrackCandidate track) {
         return (trackNameContainsButNotSongToLookFor(track, "mix")
                         && !trackNameContainsButNotSongToLookFor(track, "radio mix"))
                 || trackNameContainsButNotSongToLookFor(track, "remix")
@@ -88,24 +219,24 @@ public class SongMatcher {
                 || trackNameContainsButNotSongToLookFor(track, "new version");
     }
 
-    private boolean isRadioVersion(Track track) {
+    private boolean isRadioVersion(TrackCandidate track) {
         return !isRemix(track)
                 && (trackNameContainsButNotSongToLookFor(track, "radio edit")
                         || trackNameContainsButNotSongToLookFor(track, "radio version")
                         || trackNameContainsButNotSongToLookFor(track, "radio mix"));
     }
 
-    private boolean trackNameContainsButNotSongToLookFor(Track track, String searchString) {
+    private boolean trackNameContainsButNotSongToLookFor(TrackCandidate track, String searchString) {
         return containsWord(
-                        (track.getName() + " " + track.getAlbum().getName()).toLowerCase(), searchString.toLowerCase())
+                        (track.getName() + " " + track.getAlbumName()).toLowerCase(), searchString.toLowerCase())
                 && !containsWord(songToLookFor.getSong().toLowerCase(), searchString.toLowerCase());
     }
 
-    private boolean isLive(Track track) {
+    private boolean isLive(TrackCandidate track) {
         return trackNameContainsButNotSongToLookFor(track, "live");
     }
 
-    private boolean songNameIsContainedIn(Track t) {
+    private boolean songNameIsContainedIn(TrackCandidate t) {
         String trackSongName = simplified(t.getName());
         String songToLookForName = simplified(songToLookFor.getSong());
         return containsWord(trackSongName, songToLookForName) || containsWord(songToLookForName, trackSongName);
@@ -115,7 +246,7 @@ public class SongMatcher {
         return s.matches(".*\\b" + word + "\\b.*");
     }
 
-    private boolean songNamePartsAreContainedIn(Track t) {
+    private boolean songNamePartsAreContainedIn(TrackCandidate t) {
         Set<String> trackSongParts = Arrays.stream(t.getName().split("-"))
                 .map(String::trim)
                 .filter(not(String::isEmpty))
@@ -140,16 +271,15 @@ public class SongMatcher {
         return part.matches("(?i)(radio version|radio edit|\\(.* Theme\\)|\\(.* Version\\))");
     }
 
-    private boolean allArtistNamesAreContainedIn(Track t) {
+    private boolean allArtistNamesAreContainedIn(TrackCandidate t) {
         final String trackArtists = trackArtists(t) // remove fill-words
                 .collect(Collectors.joining(" "));
 
-        return songToLookForArtists().allMatch(trackArtists::contains);
+        return getSongToLookForArtistWords().stream().allMatch(trackArtists::contains);
     }
 
     private Stream<String> songToLookForArtists() {
-        return songToLookFor.getArtists().stream()
-                .map(this::replaceExceptionalArtistCases)
+        return getSearchArtists().stream()
                 .flatMap(artistName -> Arrays.stream(artistName.split("\\s+")))
                 .map(String::trim)
                 .filter(not(String::isEmpty))
@@ -158,9 +288,9 @@ public class SongMatcher {
                 .map(this::simplified);
     }
 
-    private Stream<String> trackArtists(Track t) {
-        return Arrays.stream(t.getArtists())
-                .map(s -> simplified(s.getName()))
+    private Stream<String> trackArtists(TrackCandidate t) {
+        return t.getArtistNames().stream()
+                .map(this::simplified)
                 .flatMap(s -> Arrays.stream(s.split("\\s+")))
                 .map(String::trim)
                 .filter(not(String::isEmpty))
@@ -168,170 +298,356 @@ public class SongMatcher {
                 .filter(not(this::isFillWord));
     }
 
-    private boolean noOtherArtistNamesAreContainedIn(Track t) {
-        String songArtists = songToLookForArtists().collect(Collectors.joining(" "));
-        return trackArtists(t).noneMatch(not(songArtists::contains));
+    private boolean noOtherArtistNamesAreContainedIn(TrackCandidate t) {
+        return trackArtists(t).noneMatch(not(getSongToLookForArtistsJoined()::contains));
     }
 
-    private boolean anyArtistNameIsContainedIn(Track t) {
-        final Set<String> trackArtists = Arrays.stream(t.getArtists())
-                .map(s -> simplified(s.getName()))
+    private boolean anyArtistNameIsContainedIn(TrackCandidate t) {
+        final Set<String> trackArtists = t.getArtistNames().stream()
+                .map(this::simplified)
                 .filter(s -> s.length() > 1) // remove one-char things
                 .filter(not(this::isFillWord)) // remove fill-words
                 .collect(Collectors.toSet());
 
-        return songToLookFor.getArtists().stream()
-                .map(this::replaceExceptionalArtistCases)
+        return getSearchArtists().stream()
                 .filter(s -> s.length() > 1) // remove one-char things
                 .filter(not(this::isFillWord)) // remove fill-words
                 .map(this::simplified)
                 .anyMatch(trackArtists::contains);
     }
 
-    private String replaceExceptionalArtistCases(String orig) {
-        if (orig.equalsIgnoreCase("star academy") || orig.equalsIgnoreCase("star academy 1")) {
-            return "Star Academy I";
+    private double fuzzySongNameSimilarity(TrackCandidate track) {
+        // version suffixes like " - Remastered 2011" would only dilute the similarity
+        String name = track.getName();
+        int suffix = name.indexOf(" - ");
+        String simplifiedName = simplified(suffix > 0 ? name.substring(0, suffix) : name);
+        return fuzzySimilarity(
+                getSimplifiedSongToLookFor(),
+                getSongToLookForSignature(),
+                simplifiedName,
+                FuzzySimilarity.trigramSignature(simplifiedName));
+    }
+
+    private double fuzzyArtistNamesSimilarity(TrackCandidate track) {
+        List<String> artists = getSimplifiedSongToLookForArtists();
+        if (artists.isEmpty()) {
+            return 0d;
+        }
+        // each track artist simplified once, not once per artist looked for
+        List<String> trackArtistNames = track.getArtistNames();
+        int trackArtistCount = trackArtistNames.size();
+        if (trackArtists.length < trackArtistCount) {
+            trackArtists = new String[trackArtistCount];
+            trackArtistSignatures = new long[trackArtistCount];
         }
-        if (orig.equalsIgnoreCase("star academy 3")) {
-            return "Star Academy III";
+        for (int j = 0; j < trackArtistCount; j++) {
+            trackArtists[j] = simplified(trackArtistNames.get(j));
+            trackArtistSignatures[j] = FuzzySimilarity.trigramSignature(trackArtists[j]);
         }
-        if (songToLookFor.getChartYear() <= 1994 && orig.equalsIgnoreCase("the symbol")) {
-            return "Prince";
+
+        // most similar track artist per artist looked for
+        long[] signatures = getSongToLookForArtistSignatures();
+        double sum = 0d;
+        for (int i = 0; i < artists.size(); i++) {
+            double best = 0d;
+            for (int j = 0; j < trackArtistCount; j++) {
+                best = Math.max(
+                        best,
+                        fuzzySimilarity(artists.get(i), signatures[i], trackArtists[j], trackArtistSignatures[j]));
+            }
+            sum += best;
         }
-        return orig;
+        return sum / artists.size();
+    }
+
+    /**
+     * @return 0 for unrelated strings, up to 1 for equal ones
+     */
+    private static double fuzzySimilarity(
+            String expected, long expectedSignature, String actual, long actualSignature) {
+        if (expected.isEmpty() || actual.isEmpty()) {
+            // e.g. titles in scripts simplifying to nothing, there is nothing to compare
+            return 0d;
+        }
+        if (FuzzySimilarity.signatureSimilarity(expectedSignature, actualSignature) < MIN_SIGNATURE_SIMILARITY) {
+            return 0d;
+        }
+        double similarity = FuzzySimilarity.jaroWinkler(expected, actual, MIN_FUZZY_SIMILARITY);
+        return similarity == 0d ? 0d : (similarity - MIN_FUZZY_SIMILARITY) / (1d - MIN_FUZZY_SIMILARITY);
     }
 
     private boolean isFillWord(String word) {
-        return word.matches("(?i)(&|und|and|feat\\.?|featuring|the|der|die|das)");
+        return TextNormalizer.isFillWord(word);
     }
 
     private String simplified(String original) {
-        if (original == null) {
-            return null;
-        }
-
-        String simplified = Normalizer.normalize(original, Normalizer.Form.NFKD)
-                .replaceAll("[^\\p{ASCII}]", "")
-                .toLowerCase(); // case insensitive
-        return Arrays.stream(simplified.split("\\s"))
-                .map(String::trim)
-                .filter(not(this::isFillWord))
-                .map(s -> s.replaceAll("[^a-z0-9]", " ")) // no special chars)
-                .map(String::trim)
-                .filter(not(String::isEmpty))
-                .collect(Collectors.joining(" "));
+        return TextNormalizer.simplify(original);
     }
 
-    private int releaseDelta(String releaseDate) {
-        try {
-            return Integer.parseInt(releaseDate.substring(0, 4)) - songToLookFor.getChartYear();
-        } catch (NumberFormatException e) {
-            return 0;
-        }
+    private int releaseDelta(int releaseYear) {
+        return releaseYear == 0 ? 0 : releaseYear - songToLookFor.getChartYear();
     }
 
+    /**
+     * Pool of all candidates seen so far for one song, keyed by track id. Features which only depend on the track
+     * itself are computed once per track, the ones relative to the other candidates (popularity, duration) are updated
+     * whenever the pool changes.
+     *
+     * <p>The track features are evaluated in stages from cheap to expensive. A candidate is only advanced to its next
+     * stage as long as the upper bound of its score (evaluated features plus the best possible outcome of all pending
+     * ones) could still beat the best completely rated candidate and the acceptance threshold.
+     */
     private class RatingCalculator {
 
-        private final Map<Track, SongRating> ratings = new HashMap<>();
-        private final List<Track> allTracks;
+        // song name is evaluated right away, since it has the biggest impact and no fixed upper bound
+        private static final int STAGE_ARTIST_NAMES = 0;
+        private static final int STAGE_FUZZY = 1;
+        private static final int STAGE_VERSION = 2;
+        private static final int STAGE_BLOCKLIST = 3;
+        private static final int STAGE_COMPLETE = 4;
+
+        private static final SongFeature[][] FEATURES_BY_STAGE = {
+            {SongFeature.ARTIST_NAMES},
+            {SongFeature.FUZZY_SONG_NAME, SongFeature.FUZZY_ARTIST_NAMES},
+            {SongFeature.LIVE, SongFeature.REMIX, SongFeature.RADIO_VERSION},
+            {}
+        };
+
+        private final FeatureMatrix features = new FeatureMatrix();
+
+        private final Map<String, Integer> rowsByTrack = new HashMap<>();
+
+        private final List<TrackCandidate> tracks = new ArrayList<>();
+
+        private final List<SongMatchPriority> priorities = new ArrayList<>();
+
+        private int[] upstreamRanks = new int[0];
+
+        private int[] stages = new int[0];
 
-        public RatingCalculator(List<Track> allTracks) {
-            this.allTracks = allTracks;
-            rateAllTracks();
+        private Integer[] rowsByLength = new Integer[0];
+
+        // best possible contribution of all features evaluated in the given stage or later
+        private final double[] pendingMaxByStage = new double[STAGE_COMPLETE + 1];
+
+        private long cpuNanos = 0L;
+
+        RatingCalculator() {
+            for (int stage = STAGE_COMPLETE - 1; stage >= 0; stage--) {
+                double pendingMax = pendingMaxByStage[stage + 1];
+                for (SongFeature feature : FEATURES_BY_STAGE[stage]) {
+                    pendingMax += feature.maxContribution(weights.weight(feature));
+                }
+                pendingMaxByStage[stage] = pendingMax;
+            }
         }
 
-        private void rateAllTracks() {
-            for (Track track : allTracks) {
-                rate(track);
+        void addTracks(SongMatchPriority priority, List<TrackCandidate> tracksToAdd) {
+            for (int rank = 0; rank < tracksToAdd.size(); rank++) {
+                TrackCandidate track = tracksToAdd.get(rank);
+                Integer row = rowsByTrack.get(track.key());
+                if (row == null) {
+                    row = rate(track, priority);
+                    rowsByTrack.put(track.key(), row);
+                }
+
+                // rely on upstream ranking, keep the best one seen in any tier
+                double ranking = (tracksToAdd.size() - rank) / (1.0d * tracksToAdd.size());
+                if (ranking > features.get(row, SongFeature.RANKING)) {
+                    features.set(row, SongFeature.RANKING, ranking);
+                    upstreamRanks[row] = rank;
+                }
             }
-            Collection<SongRating> allRatings = this.ratings.values();
-            allRatings.forEach(rating -> rating.calculateScore(allRatings));
+            updateRelativeFeatures();
+            features.computeTotals(weights.vector());
         }
 
-        private void rate(Track track) {
-            SongRating rating = new SongRating(track);
+        boolean isEmpty() {
+            return features.rows() == 0;
+        }
 
-            rating.setBlocked(isBlocklisted(track));
-            if (rating.isBlocked()) {
-                ratings.put(track, rating);
-                return; // nothing else to do
+        /**
+         * The best rating with a score of at least {@code minVal}. Only rates candidates as far as needed to be sure.
+         */
+        Optional<SongRating> bestRating(double minVal) {
+            while (true) {
+                int bestRow = bestCompleteRow();
+                double target = bestRow < 0 ? minVal : Math.max(minVal, features.total(bestRow));
+                boolean advanced = false;
+                for (int row = 0; row < features.rows(); row++) {
+                    if (stages[row] != STAGE_COMPLETE && upperBound(row) >= target) {
+                        evaluateNextStage(row);
+                        advanced = true;
+                    }
+                }
+                if (!advanced) {
+                    return bestRow >= 0 && features.total(bestRow) >= minVal
+                            ? Optional.of(toRating(bestRow))
+                            : Optional.empty();
+                }
+                features.computeTotals(weights.vector());
             }
+        }
 
-            rating.setSongNameScore(calculateSongNameRating(track));
-
-            if (songToLookFor.getArtists().size() == track.getArtists().length) {
-                rating.setArtistCountScore(2d);
+        /**
+         * All ratings with a score of at least {@code minVal}, best first. Rates all candidates completely.
+         */
+        public List<SongRating> sortedRatings(double minVal) {
+            for (int row = 0; row < features.rows(); row++) {
+                while (stages[row] != STAGE_COMPLETE) {
+                    evaluateNextStage(row);
+                }
             }
-            if (allArtistNamesAreContainedIn(track) && noOtherArtistNamesAreContainedIn(track)) {
-                rating.setArtistNamesScore(10d);
-            } else if (allArtistNamesAreContainedIn(track)) {
-                rating.setArtistNamesScore(7d);
-            } else if (anyArtistNameIsContainedIn(track)) {
-                rating.setArtistNamesScore(5d);
-            } else {
-                rating.setArtistNamesScore(-5d);
+            features.computeTotals(weights.vector());
+
+            List<Integer> rows = new ArrayList<>();
+            for (int row = 0; row < features.rows(); row++) {
+                if (features.total(row) >= minVal) {
+                    rows.add(row);
+                }
             }
+            rows.sort(Comparator.comparingDouble(features::total).reversed());
+            return rows.stream().map(this::toRating).toList();
+        }
 
-            rating.setPopularityScore(track.getPopularity()
-                    * 5d
-                    / allTracks.stream().mapToDouble(Track::getPopularity).max().orElseThrow());
+        private int bestCompleteRow() {
+            int bestRow = -1;
+            for (int row = 0; row < features.rows(); row++) {
+                // strictly greater, so ties go to the candidate seen first
+                if (stages[row] == STAGE_COMPLETE
+                        && (bestRow < 0 || features.total(row) > features.total(bestRow))) {
+                    bestRow = row;
+                }
+            }
+            return bestRow;
+        }
 
-            // rely on upstream ranking
+        private double upperBound(int row) {
+            return features.total(row) + pendingMaxByStage[stages[row]];
+        }
 
-            rating.setRankingScore(5.0d * ((allTracks.size() - allTracks.indexOf(track)) / (1.0d * allTracks.size())));
+        private void updateRelativeFeatures() {
+            final int rows = features.rows();
+            double maxPopularity = 0d;
+            for (int row = 0; row < rows; row++) {
+                maxPopularity = Math.max(maxPopularity, tracks.get(row).getPopularity());
+            }
+            for (int row = 0; row < rows; row++) {
+                features.set(
+                        row,
+                        SongFeature.POPULARITY,
+                        maxPopularity > 0 ? tracks.get(row).getPopularity() / maxPopularity : 0d);
+            }
 
             // shorter is better (longer tracks tend to be remixes)
-            List<Track> sortedByLength = allTracks.stream()
-                    .sorted(Comparator.comparing(Track::getDurationMs))
-                    .toList();
-            rating.setDurationScore(
-                    2.0d * ((allTracks.size() - sortedByLength.indexOf(track)) / (1.0d * allTracks.size())));
-
-            // TODO: maybe we could use trackNumber on album as a ranking part?
-
-            if (isLive(track)) {
-                rating.setLiveScore(-2.0d);
+            if (rowsByLength.length != rows) {
+                rowsByLength = new Integer[rows];
+                for (int row = 0; row < rows; row++) {
+                    rowsByLength[row] = row;
+                }
+                Arrays.sort(rowsByLength, Comparator.comparingInt(row -> tracks.get(row).getDurationMs()));
+            }
+            int lengthRank = 0;
+            for (int i = 0; i < rows; i++) {
+                int row = rowsByLength[i];
+                if (i > 0 && tracks.get(row).getDurationMs() != tracks.get(rowsByLength[i - 1]).getDurationMs()) {
+                    lengthRank = i;
+                }
+                features.set(row, SongFeature.DURATION, (rows - lengthRank) / (1.0d * rows));
             }
-            if (isRemix(track)) {
-                rating.setRemixScore(-2.0d);
+        }
+
+        private int rate(TrackCandidate track, SongMatchPriority priority) {
+            final int row = features.addRow();
+            tracks.add(track);
+            priorities.add(priority);
+            if (upstreamRanks.length <= row) {
+                int capacity = Math.max(16, upstreamRanks.length * 2);
+                upstreamRanks = Arrays.copyOf(upstreamRanks, capacity);
+                stages = Arrays.copyOf(stages, capacity);
             }
 
-            if (isRadioVersion(track)) {
-                rating.setRadioVersionScore(2.0d);
+            // cheap ones first
+
+            if (songToLookFor.getArtists().size() == track.getArtistNames().size()) {
+                features.set(row, SongFeature.ARTIST_COUNT, 1d);
             }
 
             // below zero here means better, but to far away from chart year is probably remix or re-recorded or
             // birthday version
-            int deltaYears = releaseDelta(track.getAlbum().getReleaseDate());
+            int deltaYears = releaseDelta(track.getReleaseYear());
             if (deltaYears == 0 || deltaYears == -1) {
-                rating.setReleaseDateScore(2d);
+                features.set(row, SongFeature.RELEASE_DATE, 1d);
             } else if (deltaYears > -4 && deltaYears < -1) {
-                rating.setReleaseDateScore(1d);
+                features.set(row, SongFeature.RELEASE_DATE, 0.5d);
             } else if (deltaYears > 1 || Math.abs(deltaYears) > 10) {
-                rating.setReleaseDateScore(-1d);
+                features.set(row, SongFeature.RELEASE_DATE, -0.5d);
             }
 
             // usually singles are in the first 7 tracks, so boost that
             if (track.getTrackNumber() <= 3) {
-                rating.setTrackNumberScore(2d);
+                features.set(row, SongFeature.TRACK_NUMBER, 1d);
             } else if (track.getTrackNumber() <= 7) {
-                rating.setTrackNumberScore(1d);
+                features.set(row, SongFeature.TRACK_NUMBER, 0.5d);
             }
 
-            ratings.put(track, rating);
+            // TODO: maybe we could use trackNumber on album as a ranking part?
+
+            features.set(row, SongFeature.SONG_NAME, calculateSongNameRating(track) / 10d);
+
+            stages[row] = STAGE_ARTIST_NAMES;
+            return row;
         }
 
-        public List<SongRating> sortedRatings(double minVal) {
-            return ratings.values().stream()
-                    .sorted(Comparator.comparing(SongRating::getCalculatedScore).reversed())
-                    .filter(r -> r.getCalculatedScore() >= minVal)
-                    .toList();
+        private void evaluateNextStage(int row) {
+            TrackCandidate track = tracks.get(row);
+            switch (stages[row]) {
+                case STAGE_ARTIST_NAMES -> {
+                    if (allArtistNamesAreContainedIn(track) && noOtherArtistNamesAreContainedIn(track)) {
+                        features.set(row, SongFeature.ARTIST_NAMES, 1d);
+                    } else if (allArtistNamesAreContainedIn(track)) {
+                        features.set(row, SongFeature.ARTIST_NAMES, 0.7d);
+                    } else if (anyArtistNameIsContainedIn(track)) {
+                        features.set(row, SongFeature.ARTIST_NAMES, 0.5d);
+                    } else {
+                        features.set(row, SongFeature.ARTIST_NAMES, -0.5d);
+                    }
+                }
+                case STAGE_FUZZY -> {
+                    features.set(row, SongFeature.FUZZY_SONG_NAME, fuzzySongNameSimilarity(track));
+                    features.set(row, SongFeature.FUZZY_ARTIST_NAMES, fuzzyArtistNamesSimilarity(track));
+                }
+                case STAGE_VERSION -> {
+                    if (isLive(track)) {
+                        features.set(row, SongFeature.LIVE, 1d);
+                    }
+                    if (isRemix(track)) {
+                        features.set(row, SongFeature.REMIX, 1d);
+                    }
+                    if (isRadioVersion(track)) {
+                        features.set(row, SongFeature.RADIO_VERSION, 1d);
+                    }
+                }
+                case STAGE_BLOCKLIST -> features.setBlocked(row, isBlocklisted(track));
+                default -> throw new IllegalStateException("Already completely rated: " + track);
+            }
+            stages[row]++;
+        }
+
+        private SongRating toRating(int row) {
+            return new SongRating(
+                    tracks.get(row),
+                    priorities.get(row),
+                    upstreamRanks[row],
+                    features.isBlocked(row),
+                    features.total(row),
+                    features.weightedRow(row, weights.vector()));
         }
     }
 
-    private double calculateSongNameRating(Track track) {
+    private double calculateSongNameRating(TrackCandidate track) {
         // check for words, the more "in the front" the words match, the better, sequential matches might be boosted?
-        List<String> songToLookForParts = selectTokens(songToLookFor.getSong());
+        List<String> songToLookForParts = getSongToLookForTokens();
         List<String> trackNameParts = selectTokens(track.getName());
 
         List<Integer> trackNamePositions =
@@ -370,12 +686,6 @@ public class SongMatcher {
     }
 
     private List<String> selectTokens(String origString) {
-        return Arrays.stream(origString.split("\\b"))
-                .filter(Objects::nonNull)
-                .map(this::simplified)
-                .map(String::trim)
-                .filter(not(String::isEmpty))
-                .distinct()
-                .toList();
+        return TextNormalizer.tokens(origString);
     }
 }
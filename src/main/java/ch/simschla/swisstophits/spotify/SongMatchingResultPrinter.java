@@ -1,83 +1,48 @@
 package ch.simschla.swisstophits.spotify;
 
-import ch.simschla.swisstophits.model.ChartInfo;
-import ch.simschla.swisstophits.model.SongInfo;
-import java.util.Arrays;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
-import lombok.NonNull;
-import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
-import se.michaelthelin.spotify.model_objects.specification.Track;
-
 public class SongMatchingResultPrinter {
 
-    public String printMatchTable(@NonNull ChartInfo chartInfo, @NonNull List<Track> tracks) {
-        if (chartInfo.getChartSongs().size() != tracks.size()) {
-            throw new IllegalStateException("Match results are not on par. Charts "
-                    + chartInfo.getChartSongs().size() + " elements, but tracks " + tracks.size() + " elements.");
-        }
-        LinkedHashMap<String, String> matchResults = new LinkedHashMap<>();
-        int maxLengthSong = 0;
-        int maxLengthMatch = 0;
-        for (int i = 0; i < tracks.size(); i++) {
-            Track track = tracks.get(i);
-            SongInfo songInfo = chartInfo.getChartSongs().get(i);
-            String songInfoShortDesc = songInfo.toShortDesc();
-            String trackShortDesc = describeTrack(track);
-
-            matchResults.put(songInfoShortDesc, trackShortDesc);
-
-            maxLengthMatch = Math.max(maxLengthMatch, trackShortDesc.length());
-            maxLengthSong = Math.max(maxLengthSong, songInfoShortDesc.length());
+    static String describeTrack(TrackCandidate track) {
+        if (track == null) {
+            return "-";
         }
+        return track.getName() + " " + track.getArtistNames() + ", " + track.getAlbumName() + " ("
+                + track.getReleaseDate() + ")";
+    }
 
-        // print header
-        final StringBuilder table = new StringBuilder();
-        table.append("| ")
-                .append(String.format("%4s", "#"))
-                .append(" | ")
-                .append(String.format("%-" + maxLengthSong + "s", "Charts-Info"))
-                .append(" | ")
-                .append(String.format("%-" + maxLengthMatch + "s", "Spotify Match"))
-                .append(" |\n");
-        table.append("| ")
-                .append("---:")
-                .append(" | ")
-                .append(":" + repeat("-", maxLengthSong - 1))
-                .append(" | ")
-                .append(":" + repeat("-", maxLengthMatch - 1))
-                .append(" |\n");
+    // ---- table parts, padded to the widest cell of each column
 
-        int pos = 1;
-        for (Map.Entry<String, String> entry : matchResults.entrySet()) {
-            table.append("| ")
-                    .append(String.format("%4d", pos++))
-                    .append(" | ")
-                    .append(String.format("%-" + maxLengthSong + "s", entry.getKey()))
-                    .append(" | ")
-                    .append(String.format("%-" + maxLengthMatch + "s", entry.getValue()))
-                    .append(" |\n");
+    static int maxLength(String[] cells) {
+        int maxLength = 0;
+        for (String cell : cells) {
+            maxLength = Math.max(maxLength, cell.length());
         }
+        return maxLength;
+    }
 
-        return table.toString();
+    static void appendHeader(StringBuilder table, int songWidth, int matchWidth) {
+        table.append("| ").append("   #").append(" | ");
+        appendPadded(table, "Charts-Info", songWidth);
+        table.append(" | ");
+        appendPadded(table, "Spotify Match", matchWidth);
+        table.append(" |\n");
+        table.append("| ").append("---:").append(" | ");
+        table.append(':').append("-".repeat(Math.max(0, songWidth - 1)));
+        table.append(" | ");
+        table.append(':').append("-".repeat(Math.max(0, matchWidth - 1)));
+        table.append(" |\n");
     }
 
-    private String describeTrack(Track track) {
-        if (track == null) {
-            return "-";
-        }
-        return String.format(
-                "%s %s, %s (%s)",
-                track.getName(),
-                Arrays.stream(track.getArtists()).map(ArtistSimplified::getName).collect(Collectors.toList()),
-                track.getAlbum().getName(),
-                track.getAlbum().getReleaseDate());
+    static void appendRow(StringBuilder table, int position, String song, int songWidth, String match, int matchWidth) {
+        String pos = String.valueOf(position);
+        table.append("| ").append(" ".repeat(Math.max(0, 4 - pos.length()))).append(pos).append(" | ");
+        appendPadded(table, song, songWidth);
+        table.append(" | ");
+        appendPadded(table, match, matchWidth);
+        table.append(" |\n");
     }
 
-    private String repeat(String s, int times) {
-        return IntStream.range(0, times).mapToObj(i -> s).collect(Collectors.joining(""));
+    private static void appendPadded(StringBuilder table, String cell, int width) {
+        table.append(cell).append(" ".repeat(Math.max(0, width - cell.length())));
     }
 }
@@ -1,69 +1,46 @@
 package ch.simschla.swisstophits.spotify;
 
-import java.util.Collection;
-import java.util.stream.Stream;
-import lombok.AccessLevel;
-import lombok.Data;
+import ch.simschla.swisstophits.spotify.SongSearchResultProvider.SongMatchPriority;
 import lombok.NonNull;
-import lombok.Setter;
-import se.michaelthelin.spotify.model_objects.specification.Track;
+import lombok.Value;
 
-@Data
+/**
+ * The rating of one candidate track, with the weighted score per {@link SongFeature}.
+ */
+@Value
 class SongRating {
 
-    @Setter(value = AccessLevel.PRIVATE)
-    Double calculatedScore;
-
-    boolean blocked;
-
-    double songNameScore;
-
-    double artistCountScore;
-
-    double artistNamesScore;
-
-    double remixScore;
-
-    double liveScore;
-
-    double radioVersionScore;
-
-    double popularityScore;
+    @NonNull
+    TrackCandidate track;
 
-    double rankingScore;
+    SongMatchPriority priority;
 
-    double releaseDateScore;
+    int upstreamRank;
 
-    double durationScore;
+    boolean blocked;
 
-    double trackNumberScore;
+    double calculatedScore;
 
     @NonNull
-    final Track track;
+    double[] scores;
 
-    void calculateScore(Collection<SongRating> all) {
-        if (calculatedScore != null) {
-            return; // already done
-        }
+    double getScore(@NonNull SongFeature feature) {
+        return scores[feature.ordinal()];
+    }
 
-        if (blocked) {
-            calculatedScore = Double.MIN_VALUE;
-            return;
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("SongRating(calculatedScore=")
+                .append(calculatedScore)
+                .append(", blocked=")
+                .append(blocked)
+                .append(", priority=")
+                .append(priority)
+                .append(", upstreamRank=")
+                .append(upstreamRank);
+        for (SongFeature feature : SongFeature.values()) {
+            sb.append(", ").append(feature.getKey()).append("Score=").append(getScore(feature));
         }
-
-        calculatedScore = Stream.of(
-                        getSongNameScore(),
-                        getArtistNamesScore(),
-                        getArtistCountScore(),
-                        getRemixScore(),
-                        getLiveScore(),
-                        getRadioVersionScore(),
-                        getPopularityScore(),
-                        getRankingScore(),
-                        getReleaseDateScore(),
-                        getDurationScore(),
-                        getTrackNumberScore())
-                .reduce(Double::sum)
-                .orElseThrow();
+        return sb.append(", track=").append(track).append(")").toString();
     }
 }
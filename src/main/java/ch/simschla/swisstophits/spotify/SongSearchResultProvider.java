@@ -1,39 +1,49 @@
 package ch.simschla.swisstophits.spotify;
 
-import ch.simschla.swisstophits.lang.MemoizingSupplier;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
-import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.builder.ToStringBuilder;
-import se.michaelthelin.spotify.model_objects.specification.Track;
 
 public class SongSearchResultProvider {
 
-    private final Map<SongMatchPriority, MemoizingSupplier<List<Track>>> searchResultSuppliers = new TreeMap<>();
+    private final Map<SongMatchPriority, TrackSearch> searches = new TreeMap<>();
 
-    void add(SongMatchPriority priority, Supplier<List<Track>> tracksSupplier) {
-        // wrap tracksSupplier with memoization and add to searchResultSuppliers
+    void add(TrackSearch search) {
+        searches.put(search.getPriority(), search);
+    }
 
-        searchResultSuppliers.put(priority, new MemoizingSupplier<>(tracksSupplier));
+    /**
+     * The searches of all tiers, in order of priority. Each search only hits the api once it is asked for results.
+     */
+    Stream<TrackSearch> searchStream() {
+        return searches.values().stream();
     }
 
-    public Stream<List<Track>> resultStream() {
-        return searchResultSuppliers.values().stream().map(Supplier::get);
+    /**
+     * @return the tracks loaded so far by the tiers which actually searched, in order of priority
+     */
+    Map<SongMatchPriority, List<TrackCandidate>> loadedTracks() {
+        Map<SongMatchPriority, List<TrackCandidate>> loadedTracks = new TreeMap<>();
+        searches.entrySet().stream()
+                .filter(entry -> entry.getValue().isStarted())
+                .forEach(entry -> loadedTracks.put(entry.getKey(), entry.getValue().loadedTracks()));
+        return loadedTracks;
     }
 
     @Override
     public String toString() {
         ToStringBuilder builder = new ToStringBuilder(this);
-        searchResultSuppliers.entrySet().stream()
-                .filter(entry -> entry.getValue().isResolved())
+        searches.entrySet().stream()
+                .filter(entry -> entry.getValue().isStarted())
                 .forEach(entry -> builder.append(
-                        String.valueOf(entry.getKey()), entry.getValue().get()));
+                        String.valueOf(entry.getKey()), entry.getValue().loadedTracks()));
         return builder.build();
     }
 
     enum SongMatchPriority {
+        MATCH_IN_TRACK_INDEX,
         EXACT_MATCH,
         MATCH_WITHOUT_ARTIST_TAGS,
         MATCH_WITHOUT_YEAR_TAG,
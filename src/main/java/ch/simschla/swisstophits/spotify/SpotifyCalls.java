@@ -0,0 +1,70 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.metrics.Metrics;
+import java.io.IOException;
+import org.apache.hc.core5.http.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+
+/**
+ * Executes spotify api calls. When rate limited, waits as long as the api asks for and retries a few times. Counts
+ * and times the calls per endpoint in the {@link Metrics}.
+ */
+final class SpotifyCalls {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpotifyCalls.class);
+
+    private static final int MAX_RETRIES = 3;
+
+    private SpotifyCalls() {}
+
+    @FunctionalInterface
+    interface Call<T> {
+        T execute() throws IOException, SpotifyWebApiException, ParseException;
+    }
+
+    /**
+     * @param endpoint the name of the api endpoint, e.g. {@code search}, used as metrics label
+     * @param description what is called, for logging
+     */
+    static <T> T execute(String endpoint, String description, Call<T> call)
+            throws IOException, SpotifyWebApiException, ParseException {
+        for (int retries = MAX_RETRIES; ; retries--) {
+            long start = System.nanoTime();
+            try {
+                T result = call.execute();
+                record(endpoint, start, "ok");
+                return result;
+            } catch (TooManyRequestsException e) {
+                record(endpoint, start, "rate_limited");
+                // songs are searched concurrently, so we might run into the rate limit
+                if (retries <= 0) {
+                    throw e;
+                }
+                LOGGER.info("Rate limited, retrying {} in {}s", description, e.getRetryAfter());
+                sleepSeconds(Math.max(1, e.getRetryAfter()));
+            } catch (IOException | SpotifyWebApiException | ParseException | RuntimeException e) {
+                record(endpoint, start, e.getClass().getSimpleName());
+                throw e;
+            }
+        }
+    }
+
+    private static void record(String endpoint, long start, String outcome) {
+        Metrics.INSTANCE.histogram("spotify_call_seconds", "endpoint", endpoint).observeSince(start);
+        Metrics.INSTANCE
+                .counter("spotify_calls_total", "endpoint", endpoint, "outcome", outcome)
+                .increment();
+    }
+
+    private static void sleepSeconds(int seconds) {
+        try {
+            Thread.sleep(seconds * 1000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SpotifyException(e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package ch.simschla.swisstophits.spotify;
+
+import java.util.Arrays;
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.Value;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+
+/**
+ * The parts of a spotify track the matcher and the result printer need. Search results are converted right away, so
+ * the full track object graphs (album, images, markets, urls) can be collected early.
+ */
+@Value
+@Builder
+public class TrackCandidate {
+
+    String id;
+
+    String uri;
+
+    @NonNull
+    String name;
+
+    @NonNull
+    @Singular
+    List<String> artistNames;
+
+    @NonNull
+    String albumName;
+
+    // as delivered, e.g. 1990, 1990-11 or 1990-11-09
+    String releaseDate;
+
+    // 0 if unknown
+    int releaseYear;
+
+    int durationMs;
+
+    int popularity;
+
+    int trackNumber;
+
+    String isrc;
+
+    /**
+     * @return a key identifying the track, even if it has no id
+     */
+    String key() {
+        return id != null ? id : uri + "|" + name;
+    }
+
+    /**
+     * Artist names, album name and release date repeat a lot between candidates, so they are interned.
+     */
+    public static TrackCandidate of(@NonNull Track track) {
+        AlbumSimplified album = track.getAlbum();
+        String releaseDate = album != null ? intern(album.getReleaseDate()) : null;
+        return TrackCandidate.builder()
+                .id(track.getId())
+                .uri(track.getUri())
+                .name(track.getName() != null ? track.getName() : "")
+                .artistNames(
+                        track.getArtists() != null
+                                ? Arrays.stream(track.getArtists())
+                                        .map(ArtistSimplified::getName)
+                                        .map(TrackCandidate::intern)
+                                        .toList()
+                                : List.of())
+                .albumName(album != null && album.getName() != null ? intern(album.getName()) : "")
+                .releaseDate(releaseDate)
+                .releaseYear(parseReleaseYear(releaseDate))
+                .durationMs(track.getDurationMs() != null ? track.getDurationMs() : 0)
+                .popularity(track.getPopularity() != null ? track.getPopularity() : 0)
+                .trackNumber(track.getTrackNumber() != null ? track.getTrackNumber() : 0)
+                .isrc(isrc(track))
+                .build();
+    }
+
+    private static String isrc(Track track) {
+        if (track.getExternalIds() == null || track.getExternalIds().getExternalIds() == null) {
+            return null;
+        }
+        return track.getExternalIds().getExternalIds().get("isrc");
+    }
+
+    public static int parseReleaseYear(String releaseDate) {
+        if (releaseDate == null || releaseDate.length() < 4) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(releaseDate.substring(0, 4));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String intern(String s) {
+        return s != null ? s.intern() : null;
+    }
+}
@@ -0,0 +1,244 @@
+package ch.simschla.swisstophits.spotify;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import ch.simschla.swisstophits.metrics.Metrics;
+import ch.simschla.swisstophits.mode.TopHitsGeneratorMode;
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.SongSearchResultProvider.SongMatchPriority;
+import ch.simschla.swisstophits.text.TextNormalizer;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * All tracks any search has returned so far, indexed by the simplified words of their name and artists. Persisted to
+ * {@code matching-candidates/track-index.json.gz}, only the tracks are stored, the index is rebuilt on load.
+ */
+class TrackIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrackIndex.class);
+
+    private static final Path INDEX_PATH = Paths.get("matching-candidates", "track-index.json.gz");
+
+    // more would hardly add a better candidate, but cost rating time
+    static final int MAX_CANDIDATES = 50;
+
+    private static volatile TrackIndex current = null;
+
+    private final List<TrackCandidate> tracks = new ArrayList<>();
+
+    private final Map<String, Integer> idsByKey = new HashMap<>();
+
+    private final Map<String, Postings> postingsByToken = new HashMap<>();
+
+    private boolean dirty = false;
+
+    TrackIndex() {}
+
+    synchronized int size() {
+        return tracks.size();
+    }
+
+    synchronized void addAll(@NonNull Collection<TrackCandidate> tracksToAdd) {
+        for (TrackCandidate track : tracksToAdd) {
+            if (add(track)) {
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * @return the tracks containing all words of the song name and at least one of the artists, most popular first
+     */
+    synchronized List<TrackCandidate> query(@NonNull SongInfo songInfo) {
+        return candidates(songInfo);
+    }
+
+    /**
+     * Counts the lookup of a searched song as hit if its match has been taken from the index, so no remote tier has
+     * been searched. Estimating and prefetching query the index as well, but are not counted.
+     */
+    static void countLookup(@NonNull Optional<SongMatchResult> match) {
+        boolean hit = match.map(m -> SongMatchPriority.MATCH_IN_TRACK_INDEX.name().equals(m.getTier()))
+                .orElse(false);
+        Metrics.INSTANCE
+                .counter("cache_lookups_total", "cache", "track_index", "result", hit ? "hit" : "miss")
+                .increment();
+    }
+
+    private List<TrackCandidate> candidates(SongInfo songInfo) {
+        List<String> songTokens = TextNormalizer.tokens(songInfo.getSong());
+        if (songTokens.isEmpty()) {
+            return List.of();
+        }
+        Postings[] postings = new Postings[songTokens.size()];
+        for (int i = 0; i < songTokens.size(); i++) {
+            postings[i] = postingsByToken.get(songTokens.get(i));
+            if (postings[i] == null) {
+                return List.of();
+            }
+        }
+        // intersect starting with the rarest word
+        Arrays.sort(postings, Comparator.comparingInt(p -> p.size));
+        Set<String> artistTokens = new LinkedHashSet<>();
+        songInfo.getArtists().forEach(artist -> artistTokens.addAll(TextNormalizer.tokens(artist)));
+
+        List<TrackCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < postings[0].size; i++) {
+            int id = postings[0].ids[i];
+            boolean containsAll = true;
+            for (int j = 1; j < postings.length && containsAll; j++) {
+                containsAll = postings[j].contains(id);
+            }
+            if (containsAll && hasAnyArtistToken(tracks.get(id), artistTokens)) {
+                candidates.add(tracks.get(id));
+            }
+        }
+        return candidates.stream()
+                .sorted(Comparator.comparingInt(TrackCandidate::getPopularity).reversed())
+                .limit(MAX_CANDIDATES)
+                .toList();
+    }
+
+    private static boolean hasAnyArtistToken(TrackCandidate track, Set<String> artistTokens) {
+        for (String artist : track.getArtistNames()) {
+            for (String token : TextNormalizer.tokens(artist)) {
+                if (artistTokens.contains(token)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean add(TrackCandidate track) {
+        if (idsByKey.containsKey(track.key())) {
+            return false;
+        }
+        int id = tracks.size();
+        tracks.add(track);
+        idsByKey.put(track.key(), id);
+
+        Set<String> tokens = new LinkedHashSet<>(TextNormalizer.tokens(track.getName()));
+        track.getArtistNames().forEach(artist -> tokens.addAll(TextNormalizer.tokens(artist)));
+        for (String token : tokens) {
+            postingsByToken.computeIfAbsent(token, t -> new Postings()).add(id);
+        }
+        return true;
+    }
+
+    /**
+     * Ids of the tracks containing a word, ascending since tracks are only ever appended.
+     */
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size = 0;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+
+    // ---- persisting
+
+    synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        if (TopHitsGeneratorMode.INSTANCE.isDryRunEnabled()) {
+            LOGGER.info("DRY-RUN. Not saving {} tracks to {}", tracks.size(), INDEX_PATH);
+            return;
+        }
+        save(INDEX_PATH);
+    }
+
+    synchronized void save(@NonNull Path path) {
+        JsonArray tracksArray = new JsonArray(tracks.size());
+        tracks.stream().map(CandidateRecording::toJson).forEach(tracksArray::add);
+        JsonObject json = new JsonObject();
+        json.add("tracks", tracksArray);
+
+        path.toAbsolutePath().getParent().toFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(path, CREATE, WRITE, TRUNCATE_EXISTING)),
+                StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+            dirty = false;
+        } catch (IOException e) {
+            throw new SpotifyException(e);
+        }
+        LOGGER.info("Saved {} tracks to {}", tracks.size(), path);
+    }
+
+    private synchronized void read(Path path) {
+        if (!Files.exists(path)) {
+            return; // nothing to load
+        }
+        try (Reader reader =
+                new InputStreamReader(new GZIPInputStream(Files.newInputStream(path)), StandardCharsets.UTF_8)) {
+            JsonParser.parseReader(reader)
+                    .getAsJsonObject()
+                    .getAsJsonArray("tracks")
+                    .forEach(track -> add(CandidateRecording.toTrack(track.getAsJsonObject())));
+        } catch (IOException | RuntimeException e) {
+            throw new SpotifyException("Could not read track index from " + path, e);
+        }
+        LOGGER.info("Loaded {} tracks from {}", tracks.size(), path);
+    }
+
+    // ---- create
+
+    /**
+     * @return the index of the tracks saved to the path, empty if there is none
+     */
+    static TrackIndex load(@NonNull Path path) {
+        TrackIndex trackIndex = new TrackIndex();
+        trackIndex.read(path);
+        return trackIndex;
+    }
+
+    static TrackIndex current() {
+        if (current == null) {
+            synchronized (TrackIndex.class) {
+                if (current == null) {
+                    current = load(INDEX_PATH);
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,30 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.spotify.SongSearchResultProvider.SongMatchPriority;
+import java.util.List;
+
+/**
+ * The candidates of one search tier, handed out page by page.
+ */
+interface TrackSearch {
+
+    SongMatchPriority getPriority();
+
+    /**
+     * @return the tracks of the first page, fetching it if needed
+     */
+    List<TrackCandidate> firstPage();
+
+    boolean hasMorePages();
+
+    /**
+     * Fetches the next page.
+     *
+     * @return all tracks loaded so far, in upstream order
+     */
+    List<TrackCandidate> loadNextPage();
+
+    boolean isStarted();
+
+    List<TrackCandidate> loadedTracks();
+}
@@ -50,6 +50,17 @@ public class SpotifyAuth {
         spotifyApi.setRefreshToken(authPersist.refreshToken());
     }
 
+    /**
+     * Like {@link #authorized(SpotifyApi)}, but fails instead of asking the user for access, for callers nobody is
+     * watching, e.g. request threads of a service.
+     */
+    public void authorizedWithoutUser(SpotifyApi spotifyApi) {
+        if (!authPersist.hasValidAccessToken() && !authPersist.hasValidRefreshToken()) {
+            throw new SpotifyAuthException("No refresh token, access has to be granted interactively.");
+        }
+        authorized(spotifyApi);
+    }
+
     private void refreshAccessToken(@NonNull SpotifyApi spotifyApi) {
         try {
             AuthorizationCodePKCERefreshRequest pkceRefreshRequest =
@@ -94,7 +105,7 @@ public class SpotifyAuth {
             throws IOException, InterruptedException {
         AuthorizationCodeUriRequest authorizationCodeUriRequest = spotifyApi
                 .authorizationCodePKCEUri(codeChallenge)
-                .scope(AuthorizationScope.PLAYLIST_MODIFY_PUBLIC)
+                .scope(AuthorizationScope.PLAYLIST_MODIFY_PUBLIC, AuthorizationScope.UGC_IMAGE_UPLOAD)
                 .build();
 
         URI uri = authorizationCodeUriRequest.execute();
@@ -0,0 +1,143 @@
+package ch.simschla.swisstophits.text;
+
+import java.util.Arrays;
+import lombok.NonNull;
+
+/**
+ * Similarity of short strings such as song titles and artist names, meant for strings simplified with
+ * {@link TextNormalizer#simplify(String)}.
+ *
+ * <p>A 64 bit signature of the character trigrams allows to rule out unrelated strings with a few bit operations,
+ * only the remaining ones are compared with Jaro-Winkler. Comparing does not allocate, the match flags are kept in
+ * per thread scratch buffers.
+ */
+public final class FuzzySimilarity {
+
+    private static final double WINKLER_SCALING = 0.1d;
+
+    private static final int WINKLER_MAX_PREFIX = 4;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private FuzzySimilarity() {}
+
+    /**
+     * @return a bit per trigram of the string padded with a blank on both sides, hashed into 64 bits
+     */
+    public static long trigramSignature(@NonNull CharSequence s) {
+        long signature = 0L;
+        char first = ' ';
+        char second = ' ';
+        for (int i = 0; i <= s.length(); i++) {
+            char third = i < s.length() ? s.charAt(i) : ' ';
+            int hash = (first * 31 + second) * 31 + third;
+            hash ^= hash >>> 7;
+            hash *= 0x9E3779B1;
+            signature |= 1L << (hash >>> 26);
+            first = second;
+            second = third;
+        }
+        return signature;
+    }
+
+    /**
+     * @return the jaccard similarity of the two signatures, an estimate of the share of trigrams in common
+     */
+    public static double signatureSimilarity(long signature, long otherSignature) {
+        int union = Long.bitCount(signature | otherSignature);
+        return union == 0 ? 1d : Long.bitCount(signature & otherSignature) / (double) union;
+    }
+
+    /**
+     * The Jaro-Winkler similarity, or 0 if it can not reach {@code minSimilarity}. The length difference alone often
+     * tells so, without comparing any characters.
+     */
+    public static double jaroWinkler(@NonNull CharSequence s, @NonNull CharSequence t, double minSimilarity) {
+        int sLength = s.length();
+        int tLength = t.length();
+        if (sLength == 0 || tLength == 0) {
+            return sLength == tLength ? 1d : 0d;
+        }
+        int shorter = Math.min(sLength, tLength);
+        double maxJaro = (shorter / (double) sLength + shorter / (double) tLength + 1d) / 3d;
+        if (winkler(maxJaro, WINKLER_MAX_PREFIX) < minSimilarity) {
+            return 0d;
+        }
+
+        Scratch scratch = SCRATCH.get();
+        boolean[] sMatched = scratch.sMatched(sLength);
+        boolean[] tMatched = scratch.tMatched(tLength);
+        int window = Math.max(0, Math.max(sLength, tLength) / 2 - 1);
+        int matches = 0;
+        for (int i = 0; i < sLength; i++) {
+            int from = Math.max(0, i - window);
+            int to = Math.min(tLength - 1, i + window);
+            for (int j = from; j <= to; j++) {
+                if (!tMatched[j] && s.charAt(i) == t.charAt(j)) {
+                    sMatched[i] = true;
+                    tMatched[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            scratch.clear(sLength, tLength);
+            return 0d;
+        }
+
+        int transpositions = 0;
+        int j = 0;
+        for (int i = 0; i < sLength; i++) {
+            if (sMatched[i]) {
+                while (!tMatched[j]) {
+                    j++;
+                }
+                if (s.charAt(i) != t.charAt(j)) {
+                    transpositions++;
+                }
+                j++;
+            }
+        }
+        scratch.clear(sLength, tLength);
+
+        double jaro = (matches / (double) sLength
+                        + matches / (double) tLength
+                        + (matches - transpositions / 2d) / matches)
+                / 3d;
+        int prefix = 0;
+        while (prefix < Math.min(WINKLER_MAX_PREFIX, shorter) && s.charAt(prefix) == t.charAt(prefix)) {
+            prefix++;
+        }
+        double similarity = winkler(jaro, prefix);
+        return similarity < minSimilarity ? 0d : similarity;
+    }
+
+    private static double winkler(double jaro, int prefix) {
+        return jaro + prefix * WINKLER_SCALING * (1d - jaro);
+    }
+
+    private static final class Scratch {
+        private boolean[] sMatched = new boolean[64];
+        private boolean[] tMatched = new boolean[64];
+
+        boolean[] sMatched(int length) {
+            if (sMatched.length < length) {
+                sMatched = new boolean[length];
+            }
+            return sMatched;
+        }
+
+        boolean[] tMatched(int length) {
+            if (tMatched.length < length) {
+                tMatched = new boolean[length];
+            }
+            return tMatched;
+        }
+
+        void clear(int sLength, int tLength) {
+            Arrays.fill(sMatched, 0, sLength, false);
+            Arrays.fill(tMatched, 0, tLength, false);
+        }
+    }
+}
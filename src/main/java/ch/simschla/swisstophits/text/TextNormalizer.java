@@ -0,0 +1,227 @@
+package ch.simschla.swisstophits.text;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+import lombok.NonNull;
+
+/**
+ * Text folding shared by searching and matching.
+ *
+ * <p>Equivalent to decomposing with {@link Normalizer.Form#NFKD} and dropping all non-ascii characters, but strings
+ * which are ascii already are returned as they are and all other characters up to the general punctuation block are
+ * folded with a precomputed table.
+ */
+public final class TextNormalizer {
+
+    private static final Set<String> FILL_WORDS =
+            Set.of("&", "und", "and", "feat", "feat.", "featuring", "the", "der", "die", "das");
+
+    private static final char TABLE_END = '\u2070';
+
+    private static final String[] FOLD_TABLE = new String[TABLE_END];
+
+    static {
+        for (char c = 0x80; c < TABLE_END; c++) {
+            FOLD_TABLE[c] = foldWithNormalizer(String.valueOf(c));
+        }
+    }
+
+    // as the word boundaries of the jvm, which differ between java versions for non-ascii letters
+    private static final Pattern WORD_BOUNDARY = Pattern.compile("\\b");
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private TextNormalizer() {}
+
+    public static boolean isAscii(@NonNull CharSequence s) {
+        return firstNonAscii(s) < 0;
+    }
+
+    public static String toAscii(String s) {
+        if (s == null) {
+            return null;
+        }
+        int firstNonAscii = firstNonAscii(s);
+        if (firstNonAscii < 0) {
+            return s;
+        }
+        StringBuilder out = BUFFERS.get().out;
+        out.setLength(0);
+        out.append(s, 0, firstNonAscii);
+        for (int i = firstNonAscii; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                out.append(c);
+            } else if (c < TABLE_END) {
+                out.append(FOLD_TABLE[c]);
+            } else {
+                int codePoint = s.codePointAt(i);
+                out.append(foldWithNormalizer(Character.toString(codePoint)));
+                i += Character.charCount(codePoint) - 1;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * Folds to ascii, lowercases and drops fill words. Other characters than {@code [a-z0-9]} become spaces within a
+     * word and are trimmed at its ends, words are separated by single spaces.
+     */
+    public static String simplify(String s) {
+        if (s == null) {
+            return null;
+        }
+        Buffers buffers = BUFFERS.get();
+        StringBuilder out = buffers.out;
+        StringBuilder word = buffers.word;
+        out.setLength(0);
+        word.setLength(0);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                appendSimplified(out, word, c);
+            } else {
+                String folded;
+                if (c < TABLE_END) {
+                    folded = FOLD_TABLE[c];
+                } else {
+                    int codePoint = s.codePointAt(i);
+                    folded = foldWithNormalizer(Character.toString(codePoint));
+                    i += Character.charCount(codePoint) - 1;
+                }
+                for (int j = 0; j < folded.length(); j++) {
+                    appendSimplified(out, word, folded.charAt(j));
+                }
+            }
+        }
+        flushWord(out, word);
+        return out.toString();
+    }
+
+    /**
+     * The distinct, {@link #simplify(String) simplified} parts of the string between word boundaries (as in regular
+     * expressions), in order of their first occurrence. Fill words are therefore also dropped if joined to other words
+     * by punctuation, e.g. {@code the-end} gives {@code [end]}.
+     */
+    public static List<String> tokens(String s) {
+        if (s == null || s.isEmpty()) {
+            return List.of();
+        }
+        List<String> tokens = new ArrayList<>();
+        if (!isAscii(s)) {
+            for (String part : WORD_BOUNDARY.split(s)) {
+                addToken(tokens, simplify(part));
+            }
+            return tokens;
+        }
+        // in ascii, words are runs of [A-Za-z0-9_], the parts between them simplify to nothing
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean isWordChar = i < s.length() && isAsciiWordChar(s.charAt(i));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                addToken(tokens, simplify(s.substring(start, i)));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    private static void addToken(List<String> tokens, String token) {
+        if (!token.isEmpty() && !tokens.contains(token)) {
+            tokens.add(token);
+        }
+    }
+
+    private static boolean isAsciiWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    public static boolean isFillWord(@NonNull String word) {
+        return FILL_WORDS.contains(toLowerAscii(word));
+    }
+
+    private static void appendSimplified(StringBuilder out, StringBuilder word, char asciiChar) {
+        if (isWhitespace(asciiChar)) {
+            flushWord(out, word);
+        } else {
+            word.append(asciiChar >= 'A' && asciiChar <= 'Z' ? (char) (asciiChar + ('a' - 'A')) : asciiChar);
+        }
+    }
+
+    private static void flushWord(StringBuilder out, StringBuilder word) {
+        if (word.length() == 0) {
+            return;
+        }
+        if (!isFillWordLowerCase(word)) {
+            boolean started = false;
+            int spacesPending = 0;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                    if (!started) {
+                        if (out.length() > 0) {
+                            out.append(' ');
+                        }
+                        started = true;
+                    }
+                    for (; spacesPending > 0; spacesPending--) {
+                        out.append(' ');
+                    }
+                    out.append(c);
+                } else if (started) {
+                    spacesPending++; // one per character within the word, as replacing them by spaces would
+                }
+            }
+        }
+        word.setLength(0);
+    }
+
+    private static boolean isFillWordLowerCase(StringBuilder word) {
+        // fill words are short, so avoid creating strings for longer words
+        return word.length() <= 9 && FILL_WORDS.contains(word.toString());
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int firstNonAscii(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String toLowerAscii(String s) {
+        StringBuilder lower = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            lower.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return lower.toString();
+    }
+
+    private static String foldWithNormalizer(String s) {
+        String decomposed = Normalizer.normalize(s, Normalizer.Form.NFKD);
+        StringBuilder ascii = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (c < 0x80) {
+                ascii.append(c);
+            }
+        }
+        return ascii.length() == 0 ? "" : ascii.toString();
+    }
+
+    private static final class Buffers {
+        private final StringBuilder out = new StringBuilder(128);
+        private final StringBuilder word = new StringBuilder(32);
+    }
+}
@@ -0,0 +1,166 @@
+package ch.simschla.swisstophits.archive;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.simschla.swisstophits.model.ChartInfo;
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.TrackCandidate;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChartArchiveTest {
+
+    private static final SongInfo ROMEO_AND_JULIET = SongInfo.builder()
+            .position(1)
+            .song("Romeo & Juliet")
+            .artist("Loredana")
+            .artist("Mozzik")
+            .swissAct(true)
+            .chartYear(2020)
+            .coverImageUrl(url("https://hitparade.ch/cdimag/loredana-romeo_juliet_s.jpg"))
+            .build();
+
+    private static final SongInfo DANCE_MONKEY = SongInfo.builder()
+            .position(2)
+            .song("Dance Monkey")
+            .artist("Tones And I")
+            .chartYear(2020)
+            .build();
+
+    private static final TrackCandidate ROMEO_AND_JULIET_TRACK = TrackCandidate.builder()
+            .id("track-1")
+            .uri("spotify:track:track-1")
+            .name("Romeo & Juliet")
+            .artistName("Loredana")
+            .artistName("Mozzik")
+            .albumName("King Lori")
+            .releaseDate("2019-12-06")
+            .releaseYear(2019)
+            .durationMs(171_000)
+            .build();
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsTheWrittenChartsBack() {
+        Path path = tempDir.resolve("charts.bin");
+        ChartArchive.update(chart(2020, ROMEO_AND_JULIET, DANCE_MONKEY), Arrays.asList(ROMEO_AND_JULIET_TRACK, null));
+        ChartArchive.update(
+                chart(1995, DANCE_MONKEY.withSong("Wish You Were Here")), Arrays.asList((TrackCandidate) null));
+        ChartArchive.flush(path);
+
+        ChartArchive archive = ChartArchive.open(path).orElseThrow();
+        assertArrayEquals(new int[] {1995, 2020}, archive.years());
+        assertEquals(3, archive.songCount());
+        assertFalse(archive.contains(2000));
+        assertTrue(archive.songs(2000).isEmpty());
+
+        List<ArchivedSong> songs = archive.songs(2020);
+        assertEquals(2, songs.size());
+        // not comparing the songs, URL.equals resolves the host
+        SongInfo first = songs.get(0).getSongInfo();
+        assertEquals(ROMEO_AND_JULIET.toShortDesc(), first.toShortDesc());
+        assertEquals(1, first.getPosition());
+        assertEquals(2020, first.getChartYear());
+        assertEquals(ROMEO_AND_JULIET.getCoverImageUrl().toString(), first.getCoverImageUrl().toString());
+        assertEquals(DANCE_MONKEY, songs.get(1).getSongInfo());
+        assertNull(songs.get(1).getTrack());
+
+        TrackCandidate track = songs.get(0).matchedTrack().orElseThrow();
+        assertEquals(ROMEO_AND_JULIET_TRACK.getId(), track.getId());
+        assertEquals(ROMEO_AND_JULIET_TRACK.getUri(), track.getUri());
+        assertEquals(ROMEO_AND_JULIET_TRACK.getName(), track.getName());
+        assertEquals(ROMEO_AND_JULIET_TRACK.getArtistNames(), List.copyOf(track.getArtistNames()));
+        assertEquals(ROMEO_AND_JULIET_TRACK.getAlbumName(), track.getAlbumName());
+        assertEquals(ROMEO_AND_JULIET_TRACK.getReleaseDate(), track.getReleaseDate());
+        assertEquals(ROMEO_AND_JULIET_TRACK.getReleaseYear(), track.getReleaseYear());
+        assertEquals(ROMEO_AND_JULIET_TRACK.getDurationMs(), track.getDurationMs());
+
+        assertEquals(
+                List.of(ROMEO_AND_JULIET.toShortDesc(), DANCE_MONKEY.toShortDesc()),
+                archive.chartInfo(2020).orElseThrow().getChartSongs().stream()
+                        .map(SongInfo::toShortDesc)
+                        .toList());
+    }
+
+    @Test
+    void mergesTheUpdatedYearsIntoTheArchive() {
+        Path path = tempDir.resolve("charts.bin");
+        ChartArchive.update(chart(2020, ROMEO_AND_JULIET), Arrays.asList(ROMEO_AND_JULIET_TRACK));
+        ChartArchive.update(chart(2021, DANCE_MONKEY.withSong("Bad Habits")), Arrays.asList((TrackCandidate) null));
+        ChartArchive.flush(path);
+
+        ChartArchive.update(chart(2020, DANCE_MONKEY), Arrays.asList((TrackCandidate) null));
+        ChartArchive.update(chart(2022, DANCE_MONKEY.withSong("As It Was")), Arrays.asList((TrackCandidate) null));
+        ChartArchive.flush(path);
+
+        ChartArchive archive = ChartArchive.open(path).orElseThrow();
+        assertArrayEquals(new int[] {2020, 2021, 2022}, archive.years());
+        assertEquals(List.of(DANCE_MONKEY), archive.chartInfo(2020).orElseThrow().getChartSongs());
+        assertEquals("Bad Habits", archive.songs(2021).get(0).getSongInfo().getSong());
+    }
+
+    @Test
+    void doesNotWriteWithoutUpdates() {
+        Path path = tempDir.resolve("charts.bin");
+        ChartArchive.flush(path);
+
+        assertFalse(Files.exists(path));
+    }
+
+    @Test
+    void rejectsASongWithoutItsTrack() {
+        ChartInfo chart = chart(2020, ROMEO_AND_JULIET, DANCE_MONKEY);
+        List<TrackCandidate> tracks = List.of(ROMEO_AND_JULIET_TRACK);
+
+        assertThrows(ArchiveException.class, () -> ChartArchive.update(chart, tracks));
+    }
+
+    @Test
+    void rejectsATruncatedArchive() throws IOException {
+        Path path = tempDir.resolve("charts.bin");
+        ChartArchive.update(chart(2020, ROMEO_AND_JULIET), Arrays.asList(ROMEO_AND_JULIET_TRACK));
+        ChartArchive.flush(path);
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+
+        assertThrows(ArchiveException.class, () -> ChartArchive.open(path));
+    }
+
+    private static ChartInfo chart(int year, SongInfo... songs) {
+        return ChartInfo.builder()
+                .chartYear(year)
+                .chartSongs(Arrays.stream(songs)
+                        .map(song -> SongInfo.builder()
+                                .position(song.getPosition())
+                                .song(song.getSong())
+                                .artists(song.getArtists())
+                                .swissAct(song.getSwissAct())
+                                .chartYear(year)
+                                .coverImageUrl(song.getCoverImageUrl())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    private static URL url(String url) {
+        try {
+            return new URL(url);
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ch.simschla.swisstophits.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class NameDictionaryTest {
+
+    // the dictionary is run-wide, so the names are made unique to each test
+    private static final NameDictionary DICTIONARY = NameDictionary.ARTISTS;
+
+    @Test
+    void looksUpTheNamesOfTheirIds() {
+        int loredana = DICTIONARY.id("NameDictionaryTest Loredana");
+        int mozzik = DICTIONARY.id("NameDictionaryTest Mozzik");
+
+        assertNotEquals(loredana, mozzik);
+        assertEquals(loredana, DICTIONARY.id("NameDictionaryTest Loredana"));
+        assertEquals(loredana, DICTIONARY.id(new String("NameDictionaryTest Loredana")));
+        assertEquals("NameDictionaryTest Loredana", DICTIONARY.name(loredana));
+        assertEquals("NameDictionaryTest Mozzik", DICTIONARY.name(mozzik));
+    }
+
+    @Test
+    void keepsTheIdsWhenGrowing() {
+        List<String> names = IntStream.range(0, 1000)
+                .mapToObj(i -> "NameDictionaryTest growing " + i)
+                .toList();
+        List<Integer> ids = names.stream().map(DICTIONARY::id).toList();
+
+        for (int i = 0; i < names.size(); i++) {
+            assertEquals(names.get(i), DICTIONARY.name(ids.get(i)));
+            assertEquals(ids.get(i), DICTIONARY.id(names.get(i)));
+        }
+    }
+
+    @Test
+    void givesConcurrentlyAddedNamesOneIdEach() throws Exception {
+        List<String> names = IntStream.range(0, 500)
+                .mapToObj(i -> "NameDictionaryTest concurrent " + i)
+                .toList();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                results.add(executor.submit(() -> names.stream().map(DICTIONARY::id).toList()));
+            }
+            List<Integer> ids = results.get(0).get();
+            for (Future<List<Integer>> result : results) {
+                assertEquals(ids, result.get());
+            }
+            for (int i = 0; i < names.size(); i++) {
+                assertEquals(names.get(i), DICTIONARY.name(ids.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsUnknownIds() {
+        assertThrows(IllegalArgumentException.class, () -> DICTIONARY.name(-1));
+        assertThrows(IllegalArgumentException.class, () -> DICTIONARY.name(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void convertsCompactSongsBack() {
+        SongInfo songInfo = SongInfo.builder()
+                .position(2)
+                .song("Romeo & Juliet")
+                .artist("NameDictionaryTest Loredana")
+                .artist("NameDictionaryTest Mozzik")
+                .swissAct(true)
+                .chartYear(2020)
+                .build();
+
+        CompactSongInfo compact = CompactSongInfo.of(songInfo);
+
+        assertEquals(List.of("NameDictionaryTest Loredana", "NameDictionaryTest Mozzik"), compact.getArtists());
+        assertEquals(songInfo, compact.toSongInfo());
+        assertEquals(compact, CompactSongInfo.of(compact.toSongInfo()));
+    }
+}
@@ -0,0 +1,62 @@
+package ch.simschla.swisstophits.normalizer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import ch.simschla.swisstophits.model.SongInfo;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SongInfoRulesTest {
+
+    private static final SongInfoRules RULES = SongInfoRules.parse(
+            List.of(
+                    "# comment",
+                    "song\t2003\tMia Aegerter\tHie u jetzt - Right Here Right Now\t=\tHie u jetzt",
+                    "artist\t..1994\tThe Symbol\tPrince",
+                    "search\t*\tStar Academy 3\tStar Academy III"),
+            "test");
+
+    @Test
+    void appliesSongRulesOnlyInTheirYears() {
+        SongInfo songInfo = songInfo("Hie u jetzt - Right Here Right Now", "Mia Aegerter");
+
+        assertEquals("Hie u jetzt", RULES.apply(2003, songInfo).getSong());
+        assertSame(songInfo, RULES.apply(2004, songInfo));
+    }
+
+    @Test
+    void appliesArtistRulesOnlyInTheirYears() {
+        SongInfo songInfo = songInfo("Sexy MF", "the symbol");
+
+        assertEquals(List.of("Prince"), RULES.apply(1992, songInfo).getArtists());
+        assertEquals(List.of("the symbol"), RULES.apply(1995, songInfo).getArtists());
+    }
+
+    @Test
+    void appliesSearchRulesOnlyToTheSearchedArtist() {
+        SongInfo songInfo = songInfo("Si Tu Savais", "star academy 3");
+
+        assertEquals("Star Academy III", RULES.searchArtist(2003, "star academy 3"));
+        assertEquals("Star Academy", RULES.searchArtist(2003, "Star Academy"));
+        assertSame(songInfo, RULES.apply(2003, songInfo));
+    }
+
+    @Test
+    void reportsTheLineOfAnInvalidRule() {
+        NormalizerException e = assertThrows(
+                NormalizerException.class, () -> SongInfoRules.parse(List.of("artist\t19x\tA\tB"), "rules.tsv"));
+
+        assertEquals("rules.tsv:1: Invalid year range: 19x", e.getMessage());
+    }
+
+    private static SongInfo songInfo(String song, String artist) {
+        return SongInfo.builder()
+                .position(1)
+                .song(song)
+                .artist(artist)
+                .chartYear(2003)
+                .build();
+    }
+}
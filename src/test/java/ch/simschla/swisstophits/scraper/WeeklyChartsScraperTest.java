@@ -0,0 +1,72 @@
+package ch.simschla.swisstophits.scraper;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.scraper.exception.ScrapingException;
+import ch.simschla.swisstophits.scraper.pages.weekly.WeeklyChartsPage;
+import com.gargoylesoftware.htmlunit.WebClient;
+import java.net.URL;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class WeeklyChartsScraperTest {
+
+    private static final LocalDate CHART_WEEK = LocalDate.of(2020, 1, 5);
+
+    @Test
+    void parsesTheEntriesOfAWeeklyChart() {
+        List<SongInfo> songs = weeklySongs("weekly-chart-2020-01-05.html");
+
+        assertEquals(4, songs.size());
+        SongInfo first = songs.get(0);
+        assertEquals("Blinding Lights", first.getSong());
+        assertEquals(List.of("The Weeknd"), List.copyOf(first.getArtists()));
+        assertEquals(1, first.getPosition());
+        assertEquals(2020, first.getChartYear());
+        assertFalse(first.getSwissAct());
+        assertEquals(
+                "https://hitparade.ch/cdimag/the_weeknd-blinding_lights_s.jpg",
+                first.getCoverImageUrl().toString());
+
+        SongInfo second = songs.get(1);
+        assertEquals("Romeo & Juliet", second.getSong());
+        assertEquals(List.of("Loredana", "Mozzik"), List.copyOf(second.getArtists()));
+        assertEquals(2, second.getPosition());
+        assertTrue(second.getSwissAct());
+
+        assertEquals("Dance Monkey", songs.get(2).getSong());
+        assertEquals(3, songs.get(2).getPosition());
+    }
+
+    @Test
+    void takesThePositionFromTheRankOfTheEntry() {
+        List<SongInfo> songs = weeklySongs("weekly-chart-2020-01-05.html");
+
+        // rank 4 is missing on the page, the re-entry below it stays on 5
+        SongInfo reEntry = songs.get(3);
+        assertEquals("All I Want For Christmas Is You", reEntry.getSong());
+        assertEquals(5, reEntry.getPosition());
+    }
+
+    @Test
+    void rejectsAnEntryWithoutRank() {
+        assertThrows(ScrapingException.class, () -> weeklySongs("weekly-chart-without-rank.html"));
+    }
+
+    @Test
+    void rejectsAPageWithAnotherLayout() {
+        assertThrows(ScrapingException.class, () -> weeklySongs("weekly-chart-unknown-layout.html"));
+    }
+
+    private static List<SongInfo> weeklySongs(String page) {
+        URL pageUrl = WeeklyChartsScraperTest.class.getResource(page);
+        try (WebClient webClient = WebClientFactory.createWebClient()) {
+            return WeeklyChartsScraper.weeklySongs(new WeeklyChartsPage(webClient, pageUrl), CHART_WEEK);
+        }
+    }
+}
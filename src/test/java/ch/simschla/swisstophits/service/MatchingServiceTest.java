@@ -0,0 +1,120 @@
+package ch.simschla.swisstophits.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.simschla.swisstophits.spotify.auth.SpotifyAuthException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+
+class MatchingServiceTest {
+
+    @Test
+    void answersWith503IfTheAuthorizationCanNotBeRefreshed() throws Exception {
+        int port = freePort();
+        MatchingService service = new MatchingService(
+                port,
+                () -> {
+                    throw new SpotifyAuthException("No refresh token.");
+                },
+                year -> Optional.empty());
+        service.start();
+        try {
+            HttpResponse<String> response = post(port, "/match", "{\"song\":\"Conquest Of Paradise\","
+                    + "\"artists\":[\"Vangelis\"],\"year\":1993}");
+
+            assertEquals(503, response.statusCode());
+            assertTrue(response.body().contains("authorization"), response.body());
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    void answersWith400IfAnArtistIsNoName() throws Exception {
+        int port = freePort();
+        MatchingService service = new MatchingService(
+                port,
+                () -> {
+                    throw new IllegalStateException("not used");
+                },
+                year -> Optional.empty());
+        service.start();
+        try {
+            String[] invalidArtists = {"[\"Vangelis\",{\"name\":\"Vangelis\"}]", "[null]", "[[]]", "[\" \"]"};
+            for (String artists : invalidArtists) {
+                HttpResponse<String> response = post(
+                        port,
+                        "/match",
+                        "{\"song\":\"Conquest Of Paradise\",\"artists\":" + artists + ",\"year\":1993}");
+
+                assertEquals(400, response.statusCode(), artists);
+                assertTrue(response.body().contains("artists"), response.body());
+            }
+        } finally {
+            service.stop();
+        }
+    }
+
+    @Test
+    void letsARunningSyncFinishOnStop() throws Exception {
+        int port = freePort();
+        CountDownLatch syncStarted = new CountDownLatch(1);
+        AtomicBoolean syncFinished = new AtomicBoolean();
+        MatchingService service = new MatchingService(
+                port,
+                () -> {
+                    throw new IllegalStateException("not used");
+                },
+                year -> {
+                    syncStarted.countDown();
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return Optional.empty();
+                    }
+                    syncFinished.set(true);
+                    return Optional.empty();
+                });
+        service.start();
+        Thread request = new Thread(() -> {
+            try {
+                post(port, "/years/1993/sync", "");
+            } catch (IOException | InterruptedException e) {
+                // the service stops while answering
+            }
+        });
+        request.start();
+        syncStarted.await();
+
+        service.stop();
+
+        assertTrue(syncFinished.get());
+        request.join();
+    }
+
+    private static HttpResponse<String> post(int port, String path, String body)
+            throws IOException, InterruptedException {
+        return HttpClient.newHttpClient()
+                .send(
+                        HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                                .POST(HttpRequest.BodyPublishers.ofString(body))
+                                .build(),
+                        HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ch.simschla.swisstophits.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import ch.simschla.swisstophits.spotify.CandidateRecording.RecordedSong;
+import ch.simschla.swisstophits.spotify.SongSearchResultProvider.SongMatchPriority;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CandidateRecordingTest {
+
+    // as written by the first version of the recording
+    private static final String LEGACY_RECORDING = "{\"chartYear\":1995,\"pageSize\":20,\"songs\":[{\"position\":1,"
+            + "\"song\":\"Conquest Of Paradise\",\"artists\":[\"Vangelis\"],\"swissAct\":false,\"chartYear\":1995,"
+            + "\"tiers\":{\"EXACT_MATCH\":[{\"id\":\"t1\",\"uri\":\"spotify:track:t1\","
+            + "\"name\":\"Conquest of Paradise\","
+            + "\"artists\":[\"Vangelis\"],\"album\":\"1492: Conquest of Paradise\",\"releaseDate\":\"1992-09-22\","
+            + "\"durationMs\":290000,\"popularity\":60,\"trackNumber\":1}],\"MATCH_WITHOUT_TAGS\":[]}}]}";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsTheLegacyPlainJsonRecording() throws IOException {
+        Path path = dir.resolve("1995.json");
+        Files.writeString(path, LEGACY_RECORDING, StandardCharsets.UTF_8);
+
+        CandidateRecording recording = CandidateRecording.read(path).orElseThrow();
+
+        assertEquals(1995, recording.getChartYear());
+        assertEquals(20, recording.getPageSize());
+        RecordedSong song = recording.getSongs().get(0);
+        assertEquals("Conquest Of Paradise [Vangelis]", song.getSongInfo().toShortDesc());
+        assertEquals(song.getSongInfo().toShortDesc(), song.getScrapedSongInfo().toShortDesc());
+        List<TrackCandidate> exact = song.getTracksByPriority().get(SongMatchPriority.EXACT_MATCH);
+        assertEquals(
+                "Conquest of Paradise [Vangelis], 1492: Conquest of Paradise (1992-09-22)",
+                SongMatchingResultPrinter.describeTrack(exact.get(0)));
+        assertEquals(1992, exact.get(0).getReleaseYear());
+        assertEquals(List.of(), song.getTracksByPriority().get(SongMatchPriority.MATCH_WITHOUT_TAGS));
+    }
+
+    @Test
+    void readsATrackWithoutAlbum() {
+        JsonObject json = JsonParser.parseString("{\"id\":\"t1\",\"uri\":\"spotify:track:t1\","
+                        + "\"name\":\"Conquest of Paradise\",\"artists\":[\"Vangelis\"],\"durationMs\":290000,"
+                        + "\"popularity\":60,\"trackNumber\":1}")
+                .getAsJsonObject();
+
+        TrackCandidate track = CandidateRecording.toTrack(json);
+
+        assertEquals("", track.getAlbumName());
+        assertEquals(0, track.getReleaseYear());
+    }
+}
@@ -0,0 +1,72 @@
+package ch.simschla.swisstophits.spotify;
+
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.GoldenMatchTable.GoldenMatch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The chart songs and their accepted matches, as read back from the committed {@code matching-results}.
+ */
+final class GoldenTables {
+
+    static final int FIRST_YEAR = 1968;
+
+    static final int LAST_YEAR = 2022;
+
+    private static final Pattern CHART_INFO = Pattern.compile("(.*) \\[(.*)\\]( \\[CH\\])?");
+
+    private static final Pattern TRACK = Pattern.compile("(.*) \\[(.*)\\], (.*) \\((.*)\\)");
+
+    private GoldenTables() {}
+
+    record Row(SongInfo song, TrackCandidate match) {}
+
+    static List<Row> rows(int year) {
+        Optional<GoldenMatchTable> table = GoldenMatchTable.read(year);
+        if (table.isEmpty()) {
+            return List.of();
+        }
+        List<Row> rows = new ArrayList<>();
+        for (GoldenMatch match : table.get().getMatchesByPosition().values()) {
+            Matcher chartInfo = CHART_INFO.matcher(match.getChartInfo());
+            if (!chartInfo.matches()) {
+                continue;
+            }
+            SongInfo song = SongInfo.builder()
+                    .position(match.getPosition())
+                    .song(chartInfo.group(1))
+                    .artists(artists(chartInfo.group(2)))
+                    .swissAct(chartInfo.group(3) != null)
+                    .chartYear(year)
+                    .build();
+            rows.add(new Row(song, match.isMatched() ? track(year, match).orElse(null) : null));
+        }
+        return rows;
+    }
+
+    private static Optional<TrackCandidate> track(int year, GoldenMatch match) {
+        Matcher track = TRACK.matcher(match.getMatch());
+        if (!track.matches()) {
+            return Optional.empty();
+        }
+        String releaseDate = "null".equals(track.group(4)) ? null : track.group(4);
+        return Optional.of(TrackCandidate.builder()
+                .id(year + "-" + match.getPosition())
+                .uri("spotify:track:" + year + "-" + match.getPosition())
+                .name(track.group(1))
+                .artistNames(artists(track.group(2)))
+                .albumName(track.group(3))
+                .releaseDate(releaseDate)
+                .releaseYear(TrackCandidate.parseReleaseYear(releaseDate))
+                .build());
+    }
+
+    private static List<String> artists(String artists) {
+        return artists.isEmpty() ? List.of() : Arrays.asList(artists.split(", "));
+    }
+}
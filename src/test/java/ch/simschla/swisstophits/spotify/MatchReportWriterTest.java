@@ -0,0 +1,163 @@
+package ch.simschla.swisstophits.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.simschla.swisstophits.model.ChartInfo;
+import ch.simschla.swisstophits.model.SongInfo;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MatchReportWriterTest {
+
+    private static final int YEAR = 1995;
+
+    private static final SongInfo WISH_YOU_WERE_HERE = SongInfo.builder()
+            .position(1)
+            .song("Wish You Were Here")
+            .artist("Rednex")
+            .chartYear(YEAR)
+            .build();
+
+    private static final SongInfo ZOMBIE = SongInfo.builder()
+            .position(2)
+            .song("Zombie")
+            .artist("The Cranberries")
+            .chartYear(YEAR)
+            .build();
+
+    private static final TrackCandidate SINGLE = TrackCandidate.builder()
+            .id("single")
+            .uri("spotify:track:single")
+            .name("Wish You Were Here")
+            .artistName("Rednex")
+            .albumName("Sex & Violins")
+            .releaseDate("1994-08-12")
+            .releaseYear(1994)
+            .durationMs(200_000)
+            .build();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesTheMarkdownTable() throws IOException {
+        assertTrue(writer(match(SINGLE), null).write());
+
+        assertEquals(
+                """
+                # Spotify matches for charts *1995*
+
+                |    # | Charts-Info                 | Spotify Match                                           |
+                | ---: | :-------------------------- | :------------------------------------------------------ |
+                |    1 | Wish You Were Here [Rednex] | Wish You Were Here [Rednex], Sex & Violins (1994-08-12) |
+                |    2 | Zombie [The Cranberries]    | -                                                       |
+                """,
+                Files.readString(MatchReportWriter.markdownPath(directory, YEAR), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writesOneRecordPerChartPosition() throws IOException {
+        writer(match(SINGLE), null).write();
+
+        List<String> lines =
+                Files.readAllLines(MatchReportWriter.jsonLinesPath(directory, YEAR), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+
+        JsonObject first = JsonParser.parseString(lines.get(0)).getAsJsonObject();
+        assertEquals(YEAR, first.get("year").getAsInt());
+        assertEquals(1, first.get("position").getAsInt());
+        assertEquals("Wish You Were Here", first.get("song").getAsString());
+        assertEquals("Rednex", first.getAsJsonArray("artists").get(0).getAsString());
+        assertFalse(first.get("swissAct").getAsBoolean());
+        JsonObject match = first.getAsJsonObject("match");
+        assertEquals("spotify:track:single", match.get("uri").getAsString());
+        assertEquals("EXACT_MATCH", match.get("tier").getAsString());
+        assertEquals(30d, match.get("score").getAsDouble());
+        assertEquals(12d, match.getAsJsonObject("features").get("song").getAsDouble());
+
+        JsonObject second = JsonParser.parseString(lines.get(1)).getAsJsonObject();
+        assertEquals("Zombie", second.get("song").getAsString());
+        assertTrue(second.get("match").isJsonNull());
+    }
+
+    @Test
+    void keepsARowPerPositionForRepeatedSongs() throws IOException {
+        ChartInfo chartInfo = ChartInfo.builder()
+                .chartYear(YEAR)
+                .chartSong(WISH_YOU_WERE_HERE)
+                .chartSong(SongInfo.builder()
+                        .position(2)
+                        .song("Wish You Were Here")
+                        .artist("Rednex")
+                        .chartYear(YEAR)
+                        .build())
+                .build();
+
+        new MatchReportWriter(chartInfo, Arrays.asList(null, null), directory).write();
+
+        String markdown = Files.readString(MatchReportWriter.markdownPath(directory, YEAR), StandardCharsets.UTF_8);
+        assertTrue(markdown.contains("|    1 | Wish You Were Here [Rednex] | - |"));
+        assertTrue(markdown.contains("|    2 | Wish You Were Here [Rednex] | - |"));
+    }
+
+    @Test
+    void replacesTheFilesOnlyIfChanged() throws IOException {
+        assertTrue(writer(match(SINGLE), null).write());
+        Path markdown = MatchReportWriter.markdownPath(directory, YEAR);
+        String written = Files.readString(markdown, StandardCharsets.UTF_8);
+
+        assertFalse(writer(match(SINGLE), null).write());
+        assertEquals(written, Files.readString(markdown, StandardCharsets.UTF_8));
+
+        assertTrue(writer(null, null).write());
+        assertTrue(Files.readString(markdown, StandardCharsets.UTF_8).contains("|    1 | Wish You Were Here [Rednex]"));
+        assertFalse(Files.readString(markdown, StandardCharsets.UTF_8).contains("Sex & Violins"));
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of("1995.jsonl", "1995.md"), files.map(path -> path.getFileName().toString())
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    @Test
+    void rejectsMissingMatchResults() {
+        ChartInfo chartInfo = chart();
+        List<SongMatchResult> matches = List.of(match(SINGLE));
+
+        assertThrows(SpotifyException.class, () -> new MatchReportWriter(chartInfo, matches, directory));
+    }
+
+    private MatchReportWriter writer(SongMatchResult first, SongMatchResult second) {
+        return new MatchReportWriter(chart(), Arrays.asList(first, second), directory);
+    }
+
+    private static ChartInfo chart() {
+        return ChartInfo.builder()
+                .chartYear(YEAR)
+                .chartSong(WISH_YOU_WERE_HERE)
+                .chartSong(ZOMBIE)
+                .build();
+    }
+
+    private static SongMatchResult match(TrackCandidate track) {
+        Map<String, Double> featureScores = new LinkedHashMap<>();
+        featureScores.put("song", 12d);
+        featureScores.put("artist", 18d);
+        return new SongMatchResult(track, "EXACT_MATCH", 30d, featureScores);
+    }
+}
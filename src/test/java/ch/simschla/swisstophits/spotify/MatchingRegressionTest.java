@@ -0,0 +1,54 @@
+package ch.simschla.swisstophits.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import ch.simschla.swisstophits.spotify.MatchingRegression.YearResult;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MatchingRegressionTest {
+
+    private static final int YEAR = 1995;
+
+    @Test
+    void replaysTheRecordedYear() {
+        YearResult result = MatchingRegression.replay(GoldenMatchTable.read(YEAR).orElseThrow(), recording());
+
+        assertEquals(YEAR, result.getChartYear());
+        assertEquals(55, result.getSongs());
+        assertEquals(List.of(3, 12, 15, 25, 38, 44, 46), result.getChangedPositions());
+        assertEquals(0.939, result.precision(), 0.0005);
+        assertEquals(0.868, result.recall(), 0.0005);
+    }
+
+    @Test
+    void leavesChangedChartEntriesOutOfPrecisionAndRecall() throws IOException {
+        YearResult unchanged = MatchingRegression.replay(GoldenMatchTable.read(YEAR).orElseThrow(), recording());
+        String markdown = Files.readString(GoldenMatchTable.pathForYear(YEAR), StandardCharsets.UTF_8)
+                .replace("Have You Ever Really Loved A Woman? [Bryan Adams]   ", "Another Song [Another Artist]      ");
+
+        YearResult result = MatchingRegression.replay(GoldenMatchTable.parse(YEAR, markdown), recording());
+
+        assertEquals(1, result.getChangedPositions().get(0));
+        assertEquals(unchanged.getExpectedMatches() - 1, result.getExpectedMatches());
+        assertEquals(unchanged.getActualMatches() - 1, result.getActualMatches());
+        assertEquals(unchanged.getCorrectMatches() - 1, result.getCorrectMatches());
+    }
+
+    // synthetic, see MatchingRegression on how to record real candidates
+    private static CandidateRecording recording() {
+        try {
+            Path path = Path.of(MatchingRegressionTest.class
+                    .getResource("candidates-" + YEAR + ".json.gz")
+                    .toURI());
+            return CandidateRecording.read(path).orElseThrow();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package ch.simschla.swisstophits.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.GoldenTables.Row;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class SongMatcherTest {
+
+    private static final double DELTA = 1e-9;
+
+    private static final SongInfo WISH_YOU_WERE_HERE = SongInfo.builder()
+            .position(3)
+            .song("Wish You Were Here")
+            .artist("Rednex")
+            .chartYear(1995)
+            .build();
+
+    private static final TrackCandidate SINGLE = TrackCandidate.builder()
+            .id("single")
+            .name("Wish You Were Here")
+            .artistName("Rednex")
+            .albumName("Sex & Violins")
+            .releaseDate("1994-08-12")
+            .releaseYear(1994)
+            .durationMs(200_000)
+            .popularity(50)
+            .trackNumber(2)
+            .build();
+
+    private static final TrackCandidate LIVE = TrackCandidate.builder()
+            .id("live")
+            .name("Wish You Were Here - Live")
+            .artistName("Rednex")
+            .artistName("Someone Else")
+            .albumName("Live in Oslo")
+            .releaseDate("2010")
+            .releaseYear(2010)
+            .durationMs(250_000)
+            .popularity(25)
+            .trackNumber(9)
+            .build();
+
+    private static final TrackCandidate RADIO_EDIT = TrackCandidate.builder()
+            .id("radio-edit")
+            .name("Wish You Were Here - Radio Edit")
+            .artistName("Rednex")
+            .albumName("Wish You Were Here")
+            .releaseDate("1995-01-01")
+            .releaseYear(1995)
+            .durationMs(180_000)
+            .popularity(0)
+            .trackNumber(1)
+            .build();
+
+    /**
+     * The points as rated before the features became weighted columns, the fuzzy features did not exist then.
+     */
+    @Test
+    void defaultWeightsGiveThePointsOfTheFormerRating() {
+        FeatureWeights weights = weights(Map.of("fuzzySongName", "0", "fuzzyArtistNames", "0"));
+        List<SongRating> ratings = new SongMatcher(WISH_YOU_WERE_HERE, weights)
+                .sortedRatings(List.of(SINGLE, LIVE, RADIO_EDIT), 0d);
+
+        SongRating single = ratings.get(0);
+        assertEquals(SINGLE, single.getTrack());
+        // four of four words in order, weighted 3.375, 2.25, 1.5, 1 and boosted by 0.1 per sequential match
+        double singleSongName = 10d * (3.375 + 1.1 * 2.25 + 1.2 * 1.5 + 1.3 * 1) / (3.375 + 2.25 + 1.5 + 1);
+        assertEquals(singleSongName, single.getScore(SongFeature.SONG_NAME), DELTA);
+        assertEquals(10d, single.getScore(SongFeature.ARTIST_NAMES), DELTA);
+        assertEquals(2d, single.getScore(SongFeature.ARTIST_COUNT), DELTA);
+        assertEquals(2d, single.getScore(SongFeature.RELEASE_DATE), DELTA);
+        assertEquals(2d, single.getScore(SongFeature.TRACK_NUMBER), DELTA);
+        assertEquals(5d, single.getScore(SongFeature.RANKING), DELTA);
+        assertEquals(5d, single.getScore(SongFeature.POPULARITY), DELTA);
+        assertEquals(2d * 2 / 3, single.getScore(SongFeature.DURATION), DELTA);
+        assertEquals(
+                singleSongName + 10 + 2 + 2 + 2 + 5 + 5 + 2d * 2 / 3, single.getCalculatedScore(), DELTA);
+
+        SongRating radioEdit = ratings.get(1);
+        assertEquals(RADIO_EDIT, radioEdit.getTrack());
+        // six words, the first four match
+        double radioEditSongName = 10d
+                * (7.59375 + 1.1 * 5.0625 + 1.2 * 3.375 + 1.3 * 2.25)
+                / (7.59375 + 5.0625 + 3.375 + 2.25 + 1.5 + 1);
+        assertEquals(radioEditSongName, radioEdit.getScore(SongFeature.SONG_NAME), DELTA);
+        assertEquals(2d, radioEdit.getScore(SongFeature.RADIO_VERSION), DELTA);
+        assertEquals(5d / 3, radioEdit.getScore(SongFeature.RANKING), DELTA);
+        assertEquals(0d, radioEdit.getScore(SongFeature.POPULARITY), DELTA);
+        assertEquals(2d, radioEdit.getScore(SongFeature.DURATION), DELTA);
+        assertEquals(
+                radioEditSongName + 10 + 2 + 2 + 2 + 2 + 5d / 3 + 0 + 2, radioEdit.getCalculatedScore(), DELTA);
+        assertFalse(radioEdit.isBlocked());
+
+        SongRating live = ratings.get(2);
+        assertEquals(LIVE, live.getTrack());
+        assertTrue(live.isBlocked());
+        assertEquals(Double.MIN_VALUE, live.getCalculatedScore());
+        assertEquals(-2d, live.getScore(SongFeature.LIVE), DELTA);
+        assertEquals(7d, live.getScore(SongFeature.ARTIST_NAMES), DELTA);
+        assertEquals(-1d, live.getScore(SongFeature.RELEASE_DATE), DELTA);
+    }
+
+    /**
+     * Rates each chart song of the committed tables against its accepted match, a live and a remix version of it and
+     * the matches of the neighbouring positions, with random popularity, duration (with ties) and track number.
+     */
+    @Test
+    void boundedRatingSelectsTheSameAsExhaustiveRating() {
+        Random random = new Random(34);
+        int pools = 0;
+        int accepted = 0;
+        List<String> differences = new ArrayList<>();
+        for (int year = GoldenTables.FIRST_YEAR; year <= GoldenTables.LAST_YEAR; year++) {
+            List<Row> rows = GoldenTables.rows(year);
+            List<TrackCandidate> matches =
+                    rows.stream().map(Row::match).filter(Objects::nonNull).toList();
+            for (int i = 0; i < rows.size(); i++) {
+                Row row = rows.get(i);
+                List<TrackCandidate> pool = new ArrayList<>();
+                if (row.match() != null) {
+                    pool.add(vary(row.match(), row.match().getName(), random));
+                    pool.add(vary(row.match(), row.match().getName() + " - Live", random));
+                    pool.add(vary(row.match(), row.match().getName() + " - Remix", random));
+                }
+                for (int j = Math.max(0, i - 8); j < Math.min(matches.size(), i + 8); j++) {
+                    pool.add(vary(matches.get(j), matches.get(j).getName(), random));
+                }
+                Collections.shuffle(pool, random);
+
+                SongMatcher matcher = new SongMatcher(row.song(), FeatureWeights.defaults());
+                Optional<TrackCandidate> bounded = matcher.selectBestMatchingTrack(pool);
+                Optional<TrackCandidate> exhaustive =
+                        matcher.sortedRatings(pool, FeatureWeights.defaults().acceptanceThreshold()).stream()
+                                .findFirst()
+                                .map(SongRating::getTrack);
+                if (!bounded.equals(exhaustive)) {
+                    differences.add(row.song().toShortDesc() + ": " + bounded + " vs. " + exhaustive);
+                }
+                pools++;
+                accepted += bounded.isPresent() ? 1 : 0;
+            }
+        }
+        assertEquals(List.of(), differences);
+        assertTrue(pools > 3000, "pools rated: " + pools);
+        assertTrue(accepted > pools / 2, "pools with an accepted match: " + accepted);
+    }
+
+    @Test
+    void givesNoFuzzyPointsForStringsSimplifyingToNothing() {
+        SongInfo tokyo = SongInfo.builder()
+                .position(1)
+                .song("東京")
+                .artist("東京事変")
+                .chartYear(2005)
+                .build();
+        TrackCandidate osaka = TrackCandidate.builder()
+                .id("osaka")
+                .name("大阪")
+                .artistName("大阪ブルース")
+                .albumName("大阪")
+                .releaseDate("2005")
+                .releaseYear(2005)
+                .build();
+
+        SongRating rating = new SongMatcher(tokyo).sortedRatings(List.of(osaka), 0d).get(0);
+
+        assertEquals(0d, rating.getScore(SongFeature.FUZZY_SONG_NAME), DELTA);
+        assertEquals(0d, rating.getScore(SongFeature.FUZZY_ARTIST_NAMES), DELTA);
+    }
+
+    @Test
+    void acceptsFromTheConfiguredThreshold() {
+        assertEquals(Optional.of(SINGLE), new SongMatcher(WISH_YOU_WERE_HERE).selectBestMatchingTrack(List.of(SINGLE)));
+
+        SongMatcher strict = new SongMatcher(WISH_YOU_WERE_HERE, weights(Map.of("acceptanceThreshold", "100")));
+        assertEquals(Optional.empty(), strict.selectBestMatchingTrack(List.of(SINGLE)));
+    }
+
+    /**
+     * The search rules of the committed normalizer-rules.tsv apply to matching, also without normalizing.
+     */
+    @Test
+    void matchesTheArtistOfASearchRule() {
+        SongInfo symbol = SongInfo.builder()
+                .position(1)
+                .song("Sexy MF")
+                .artist("The Symbol")
+                .chartYear(1992)
+                .build();
+        TrackCandidate prince = TrackCandidate.builder()
+                .id("prince")
+                .name("Sexy MF")
+                .artistName("Prince")
+                .albumName("Love Symbol")
+                .releaseDate("1992-10-13")
+                .releaseYear(1992)
+                .build();
+
+        SongRating rating = new SongMatcher(symbol).sortedRatings(List.of(prince), 0d).get(0);
+
+        assertEquals(10d, rating.getScore(SongFeature.ARTIST_NAMES), DELTA);
+    }
+
+    private static TrackCandidate vary(TrackCandidate track, String name, Random random) {
+        return TrackCandidate.builder()
+                .id(track.getId() + "|" + name)
+                .uri(track.getUri())
+                .name(name)
+                .artistNames(track.getArtistNames())
+                .albumName(track.getAlbumName())
+                .releaseDate(track.getReleaseDate())
+                .releaseYear(track.getReleaseYear())
+                .durationMs(150_000 + 10_000 * random.nextInt(20))
+                .popularity(random.nextInt(101))
+                .trackNumber(1 + random.nextInt(15))
+                .build();
+    }
+
+    static FeatureWeights weights(Map<String, String> weights) {
+        Properties properties = new Properties();
+        properties.putAll(weights);
+        return FeatureWeights.of(properties);
+    }
+}
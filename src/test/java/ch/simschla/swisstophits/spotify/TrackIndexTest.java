@@ -0,0 +1,137 @@
+package ch.simschla.swisstophits.spotify;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.simschla.swisstophits.metrics.Metrics;
+import ch.simschla.swisstophits.model.SongInfo;
+import ch.simschla.swisstophits.spotify.SongSearchResultProvider.SongMatchPriority;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TrackIndexTest {
+
+    private static final TrackCandidate TRACK = TrackCandidate.builder()
+            .id("t1")
+            .name("Conquest of Paradise")
+            .artistName("Vangelis")
+            .albumName("1492: Conquest of Paradise")
+            .build();
+
+    private static final SongInfo CONQUEST_OF_PARADISE = song("Conquest of Paradise", "Vangelis");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void findsTracksContainingAllWordsOfTheSong() {
+        TrackIndex index = index(
+                TRACK,
+                track("t2", "Conquest of Paradise - Remastered", 10, "Vangelis"),
+                track("t3", "Paradise", 90, "Vangelis"),
+                track("t4", "Conquest", 90, "Vangelis"));
+
+        assertEquals(List.of("t2", "t1"), ids(index.query(CONQUEST_OF_PARADISE)));
+        assertTrue(index.query(song("Conquest of Heaven", "Vangelis")).isEmpty());
+    }
+
+    @Test
+    void findsOnlyTracksOfAnyOfTheArtists() {
+        TrackIndex index = index(
+                track("t1", "Mambo No. 5", 0, "Lou Bega"),
+                track("t2", "Mambo No. 5", 0, "Perez Prado", "Bega Orchestra"),
+                track("t3", "Mambo No. 5", 0, "Perez Prado"));
+
+        assertEquals(List.of("t1", "t2"), ids(index.query(song("Mambo No. 5", "Lou Bega"))));
+        assertEquals(List.of("t2", "t3"), ids(index.query(song("Mambo No. 5", "DJ Bobo", "Perez Prado"))));
+        assertTrue(index.query(song("Mambo No. 5", "DJ Bobo")).isEmpty());
+    }
+
+    @Test
+    void returnsTheMostPopularCandidatesOnly() {
+        List<TrackCandidate> tracks = new ArrayList<>();
+        IntStream.range(0, TrackIndex.MAX_CANDIDATES + 10)
+                .forEach(i -> tracks.add(track("t" + i, "Conquest of Paradise", i, "Vangelis")));
+        TrackIndex index = index(tracks.toArray(TrackCandidate[]::new));
+
+        List<TrackCandidate> candidates = index.query(CONQUEST_OF_PARADISE);
+
+        assertEquals(TrackIndex.MAX_CANDIDATES, candidates.size());
+        assertEquals(TrackIndex.MAX_CANDIDATES + 9, candidates.get(0).getPopularity());
+        assertEquals(10, candidates.get(candidates.size() - 1).getPopularity());
+    }
+
+    @Test
+    void rebuildsTheIndexOfTheSavedTracks() {
+        Path path = tempDir.resolve("track-index.json.gz");
+        TrackIndex index = index(
+                TRACK,
+                track("t2", "Conquest of Paradise", 50, "Vangelis"),
+                track("t3", "Chariots of Fire", 0, "Vangelis"));
+        index.save(path);
+
+        TrackIndex loaded = TrackIndex.load(path);
+
+        assertEquals(3, loaded.size());
+        assertEquals(List.of("t2", "t1"), ids(loaded.query(CONQUEST_OF_PARADISE)));
+        assertEquals(List.of("t3"), ids(loaded.query(song("Chariots of Fire", "Vangelis"))));
+    }
+
+    @Test
+    void countsOnlyMatchesTakenFromTheIndexAsHits() {
+        long hits = lookups("hit");
+        long misses = lookups("miss");
+
+        TrackIndex.countLookup(Optional.of(match(SongMatchPriority.MATCH_IN_TRACK_INDEX)));
+        TrackIndex.countLookup(Optional.of(match(SongMatchPriority.EXACT_MATCH)));
+        TrackIndex.countLookup(Optional.empty());
+
+        assertEquals(hits + 1, lookups("hit"));
+        assertEquals(misses + 2, lookups("miss"));
+    }
+
+    private static SongMatchResult match(SongMatchPriority tier) {
+        return new SongMatchResult(TRACK, tier.name(), 30d, Map.of());
+    }
+
+    private static long lookups(String result) {
+        return Metrics.INSTANCE
+                .counter("cache_lookups_total", "cache", "track_index", "result", result)
+                .get();
+    }
+
+    private static TrackIndex index(TrackCandidate... tracks) {
+        TrackIndex index = new TrackIndex();
+        index.addAll(List.of(tracks));
+        return index;
+    }
+
+    private static TrackCandidate track(String id, String name, int popularity, String... artists) {
+        return TrackCandidate.builder()
+                .id(id)
+                .name(name)
+                .artistNames(List.of(artists))
+                .albumName(name)
+                .popularity(popularity)
+                .build();
+    }
+
+    private static SongInfo song(String name, String... artists) {
+        return SongInfo.builder()
+                .position(1)
+                .song(name)
+                .artists(List.of(artists))
+                .chartYear(1992)
+                .build();
+    }
+
+    private static List<String> ids(List<TrackCandidate> tracks) {
+        return tracks.stream().map(TrackCandidate::getId).toList();
+    }
+}
@@ -0,0 +1,59 @@
+package ch.simschla.swisstophits.text;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class FuzzySimilarityTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    void emptyStrings() {
+        assertEquals(1d, FuzzySimilarity.jaroWinkler("", "", 0.8d), DELTA);
+        assertEquals(0d, FuzzySimilarity.jaroWinkler("", "a", 0d), DELTA);
+        assertEquals(0d, FuzzySimilarity.jaroWinkler("a", "", 0d), DELTA);
+
+        long empty = FuzzySimilarity.trigramSignature("");
+        assertEquals(1, Long.bitCount(empty));
+        assertEquals(1d, FuzzySimilarity.signatureSimilarity(empty, empty), DELTA);
+        assertEquals(1d, FuzzySimilarity.signatureSimilarity(0L, 0L), DELTA);
+        assertEquals(0d, FuzzySimilarity.signatureSimilarity(empty, FuzzySimilarity.trigramSignature("a")), DELTA);
+    }
+
+    @Test
+    void singleCharacters() {
+        assertEquals(1d, FuzzySimilarity.jaroWinkler("a", "a", 0.8d), DELTA);
+        assertEquals(0d, FuzzySimilarity.jaroWinkler("a", "b", 0d), DELTA);
+        // window 0, one match, prefix 1: jaro (1 + 1/2 + 1) / 3
+        assertEquals(0.85d, FuzzySimilarity.jaroWinkler("a", "ab", 0d), DELTA);
+        // the length difference alone rules it out
+        assertEquals(0d, FuzzySimilarity.jaroWinkler("a", "abcdefghij", 0.8d), DELTA);
+
+        long a = FuzzySimilarity.trigramSignature("a");
+        assertEquals(1d, FuzzySimilarity.signatureSimilarity(a, a), DELTA);
+        assertNotEquals(a, FuzzySimilarity.trigramSignature("b"));
+    }
+
+    @Test
+    void nonAsciiCharacters() {
+        assertEquals(1d, FuzzySimilarity.jaroWinkler("東京", "東京", 0.8d), DELTA);
+        assertEquals(0d, FuzzySimilarity.jaroWinkler("東京", "大阪", 0d), DELTA);
+        // four of five match, prefix 2: jaro (4/5 + 4/5 + 1) / 3
+        double jaro = (0.8d + 0.8d + 1d) / 3d;
+        assertEquals(jaro + 0.2d * (1d - jaro), FuzzySimilarity.jaroWinkler("Αθήνα", "Αθηνα", 0d), DELTA);
+
+        long tokyo = FuzzySimilarity.trigramSignature("東京");
+        assertEquals(1d, FuzzySimilarity.signatureSimilarity(tokyo, tokyo), DELTA);
+        assertTrue(FuzzySimilarity.signatureSimilarity(tokyo, FuzzySimilarity.trigramSignature("大阪")) < 1d);
+    }
+
+    @Test
+    void allNonAsciiStringsSimplifyToNothing() {
+        // so callers must not compare the simplified strings, they would be equal
+        assertEquals("", TextNormalizer.simplify("東京"));
+        assertEquals("", TextNormalizer.simplify("Αθήνα"));
+    }
+}
@@ -0,0 +1,149 @@
+package ch.simschla.swisstophits.text;
+
+import static java.util.function.Predicate.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the folding with the regular expression and {@link Normalizer} based one searcher and matcher used before.
+ */
+class TextNormalizerTest {
+
+    private static final List<String> EDGE_CASES = List.of(
+            "",
+            " ",
+            "the-end",
+            "The End",
+            "a--b",
+            "a - b",
+            "_a__b_",
+            "feat.",
+            "Feat. DJ Bobo",
+            "Rock'n'Roll",
+            "AC/DC",
+            "P!nk",
+            "Café del Mar",
+            "Beyoncé & Jay-Z",
+            "Ärzte - Männer sind Schweine",
+            "ﬁnal ﬂight",
+            "Ⅻ Jahre",
+            "Sigur Rós – Hoppípolla",
+            "東京 Tokyo",
+            "😀 Smile",
+            "naïve café",
+            "Déjà-vu");
+
+    @Test
+    void foldsAllChartStringsAsBefore() throws IOException {
+        List<String> strings = chartStrings();
+        assertTrue(strings.size() > 10_000, "chart strings of all years: " + strings.size());
+
+        List<String> differences = new ArrayList<>();
+        for (String s : strings) {
+            compare(differences, "toAscii", s, oldToAscii(s), TextNormalizer.toAscii(s));
+            compare(differences, "simplify", s, oldSimplified(s), TextNormalizer.simplify(s));
+            compare(differences, "tokens", s, oldSelectTokens(s), TextNormalizer.tokens(s));
+        }
+        assertEquals(List.of(), differences);
+    }
+
+    @Test
+    void foldsEdgeCasesAsBefore() {
+        List<String> differences = new ArrayList<>();
+        for (String s : EDGE_CASES) {
+            compare(differences, "toAscii", s, oldToAscii(s), TextNormalizer.toAscii(s));
+            compare(differences, "simplify", s, oldSimplified(s), TextNormalizer.simplify(s));
+            compare(differences, "tokens", s, oldSelectTokens(s), TextNormalizer.tokens(s));
+        }
+        assertEquals(List.of(), differences);
+    }
+
+    @Test
+    void dropsFillWordsJoinedByPunctuation() {
+        assertEquals(List.of("end"), TextNormalizer.tokens("the-end"));
+        assertEquals("the end", TextNormalizer.simplify("the-end"));
+    }
+
+    private static void compare(List<String> differences, String function, String s, Object expected, Object actual) {
+        if (!expected.equals(actual)) {
+            differences.add(function + "(\"" + s + "\"): " + expected + " != " + actual);
+        }
+    }
+
+    /**
+     * The cells of the committed match tables, their song or track names and their artists.
+     */
+    private static List<String> chartStrings() throws IOException {
+        Set<String> strings = new LinkedHashSet<>();
+        try (Stream<Path> tables = Files.list(Paths.get("matching-results", "spotify"))) {
+            for (Path table : tables.filter(path -> path.toString().endsWith(".md"))
+                    .sorted()
+                    .toList()) {
+                for (String line : Files.readAllLines(table, StandardCharsets.UTF_8)) {
+                    String[] cells = line.split("\\|");
+                    if (cells.length < 4 || !cells[1].strip().matches("\\d+")) {
+                        continue;
+                    }
+                    for (String cell : List.of(cells[2].strip(), cells[3].strip())) {
+                        strings.add(cell);
+                        int artistsStart = cell.indexOf(" [");
+                        int artistsEnd = cell.indexOf(']', artistsStart + 1);
+                        if (artistsStart > 0 && artistsEnd > artistsStart) {
+                            strings.add(cell.substring(0, artistsStart));
+                            strings.addAll(Arrays.asList(
+                                    cell.substring(artistsStart + 2, artistsEnd).split(", ")));
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(strings);
+    }
+
+    // ---- as before
+
+    private static String oldToAscii(String s) {
+        return Normalizer.normalize(s, Normalizer.Form.NFKD).replaceAll("[^\\p{ASCII}]", "");
+    }
+
+    private static String oldSimplified(String original) {
+        String simplified = Normalizer.normalize(original, Normalizer.Form.NFKD)
+                .replaceAll("[^\\p{ASCII}]", "")
+                .toLowerCase();
+        return Arrays.stream(simplified.split("\\s"))
+                .map(String::trim)
+                .filter(not(TextNormalizerTest::oldIsFillWord))
+                .map(s -> s.replaceAll("[^a-z0-9]", " "))
+                .map(String::trim)
+                .filter(not(String::isEmpty))
+                .collect(Collectors.joining(" "));
+    }
+
+    private static List<String> oldSelectTokens(String origString) {
+        return Arrays.stream(origString.split("\\b"))
+                .map(TextNormalizerTest::oldSimplified)
+                .map(String::trim)
+                .filter(not(String::isEmpty))
+                .distinct()
+                .toList();
+    }
+
+    private static boolean oldIsFillWord(String word) {
+        return word.matches("(?i)(&|und|and|feat\\.?|featuring|the|der|die|das)");
+    }
+}